@@ -0,0 +1,133 @@
+package com.codeastras.backend.codeastras.config;
+
+import com.codeastras.backend.codeastras.service.cluster.ClusterClient;
+import com.codeastras.backend.codeastras.service.cluster.SessionDirectory;
+import com.codeastras.backend.codeastras.store.SessionRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Proxies project-scoped REST calls to the node that owns the project,
+ * after this node has authenticated them. The owner authenticates again
+ * from the same Authorization header.
+ *
+ * Session stop is addressed by session id, which says nothing about the
+ * owner: unless the session is here, every peer is asked and the first
+ * refusal is returned.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClusterForwardingFilter extends OncePerRequestFilter {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ClusterForwardingFilter.class);
+
+    private static final String UUID_RE = "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}";
+
+    private static final Pattern PROJECT_PATH =
+            Pattern.compile("^/api/projects/(" + UUID_RE + ")(/.*)?$");
+    private static final Pattern SESSION_START_PATH =
+            Pattern.compile("^/api/session/(" + UUID_RE + ")/start$");
+    private static final Pattern SESSION_STOP_PATH =
+            Pattern.compile("^/api/session/([^/]+)/stop$");
+
+    private static final List<String> PASSED_HEADERS =
+            List.of("Authorization", "Content-Type", "Accept", "Cookie");
+
+    private final SessionDirectory directory;
+    private final ClusterClient clusterClient;
+    private final SessionRegistry sessionRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return directory.peers().isEmpty()
+                || request.getHeader(ClusterClient.FORWARDED_HEADER) != null
+                || "OPTIONS".equalsIgnoreCase(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain chain
+    ) throws ServletException, IOException {
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        Matcher project = PROJECT_PATH.matcher(path);
+        Matcher start = SESSION_START_PATH.matcher(path);
+        Matcher stop = SESSION_STOP_PATH.matcher(path);
+
+        if (project.matches() || start.matches()) {
+            UUID projectId = UUID.fromString(project.matches() ? project.group(1) : start.group(1));
+
+            if (directory.isLocal(projectId)) {
+                chain.doFilter(request, response);
+            } else {
+                copy(forward(directory.ownerOf(projectId), request, request.getInputStream().readAllBytes()), response);
+            }
+            return;
+        }
+
+        if (stop.matches() && sessionRegistry.getBySessionId(stop.group(1)) == null) {
+            byte[] body = request.getInputStream().readAllBytes();
+
+            for (SessionDirectory.Node peer : directory.peers()) {
+                HttpResponse<byte[]> answer = forward(peer, request, body);
+                if (answer.statusCode() / 100 != 2) {
+                    copy(answer, response);
+                    return;
+                }
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    private HttpResponse<byte[]> forward(
+            SessionDirectory.Node node,
+            HttpServletRequest request,
+            byte[] body
+    ) throws IOException {
+
+        String target = request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : PASSED_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) headers.put(name, value);
+        }
+
+        try {
+            return clusterClient.proxy(node, request.getMethod(), target, headers, body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while forwarding to node " + node.id(), e);
+        } catch (IOException e) {
+            log.warn("Could not forward {} {} to node {}: {}", request.getMethod(), target, node.id(), e.getMessage());
+            throw e;
+        }
+    }
+
+    private void copy(HttpResponse<byte[]> from, HttpServletResponse to) throws IOException {
+        to.setStatus(from.statusCode());
+        from.headers().firstValue("Content-Type").ifPresent(to::setContentType);
+        from.headers().firstValue("Content-Disposition")
+                .ifPresent(v -> to.setHeader("Content-Disposition", v));
+        to.getOutputStream().write(from.body());
+    }
+}
@@ -0,0 +1,101 @@
+package com.codeastras.backend.codeastras.config;
+
+import com.codeastras.backend.codeastras.dto.cluster.ClusterMessage;
+import com.codeastras.backend.codeastras.service.cluster.ClusterClient;
+import com.codeastras.backend.codeastras.service.cluster.SessionDirectory;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies broker messages for {@code /topic} and {@code /user} destinations
+ * to every peer, so subscribers connected to any node receive them (each
+ * node runs its own in-memory broker). One sender per peer keeps messages
+ * in publish order; relayed messages are marked and not relayed again.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClusterRelayInterceptor implements ChannelInterceptor {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ClusterRelayInterceptor.class);
+
+    public static final String RELAYED_HEADER = "clusterRelayed";
+
+    private final SessionDirectory directory;
+    private final ClusterClient clusterClient;
+
+    private final Map<String, ExecutorService> senders = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+
+        MessageHeaders headers = message.getHeaders();
+
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(RELAYED_HEADER)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null
+                || !(destination.startsWith("/topic/") || destination.startsWith("/user/"))) {
+            return message;
+        }
+
+        Collection<SessionDirectory.Node> peers = directory.peers();
+        if (peers.isEmpty()) {
+            return message;
+        }
+
+        Object payload = message.getPayload();
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+
+        ClusterMessage relayed = new ClusterMessage(
+                destination,
+                null,
+                null,
+                contentType != null ? contentType.toString() : null,
+                payload instanceof byte[] b ? b : String.valueOf(payload).getBytes(StandardCharsets.UTF_8)
+        );
+
+        for (SessionDirectory.Node peer : peers) {
+            senderFor(peer).execute(() -> {
+                try {
+                    clusterClient.post(peer, "/internal/cluster/relay", relayed);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.warn("Could not relay {} to node {}: {}", destination, peer.id(), e.getMessage());
+                }
+            });
+        }
+
+        return message;
+    }
+
+    private ExecutorService senderFor(SessionDirectory.Node peer) {
+        return senders.computeIfAbsent(peer.id(), id ->
+                Executors.newSingleThreadExecutor(Thread.ofVirtual().name("cluster-relay-" + id).factory()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.values().forEach(ExecutorService::shutdownNow);
+    }
+}
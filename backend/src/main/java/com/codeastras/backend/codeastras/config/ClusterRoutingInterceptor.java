@@ -0,0 +1,165 @@
+package com.codeastras.backend.codeastras.config;
+
+import com.codeastras.backend.codeastras.dto.cluster.ClusterMessage;
+import com.codeastras.backend.codeastras.dto.project.ProjectErrorMessage;
+import com.codeastras.backend.codeastras.service.cluster.ClusterClient;
+import com.codeastras.backend.codeastras.service.cluster.SessionDirectory;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Sends a client's SEND for a project owned by another node to that node
+ * and drops it here. Runs after {@link WebSocketPermissionInterceptor}.
+ *
+ * The POST is not made on the thread that read the frame: each connection
+ * has a chain of forwards on {@code blockingExecutor}, so its frames reach
+ * the owner in the order they were sent without holding up the socket.
+ * A forward that fails is reported to the sender on {@code /user/queue/errors}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClusterRoutingInterceptor implements ChannelInterceptor {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ClusterRoutingInterceptor.class);
+
+    // session attribute on frames a peer forwarded to us; they are never forwarded again
+    public static final String FORWARDED_ATTR = "cluster_forwarded_from";
+
+    private final SessionDirectory directory;
+    private final ClusterClient clusterClient;
+    private final ExecutorService blockingExecutor;
+    // lazy: the template needs the broker channel, which is configured with our sibling interceptors
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    // ws session id -> last forward queued for that connection
+    private final Map<String, CompletableFuture<Void>> chains = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+
+        StompHeaderAccessor accessor =
+                MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+
+        if (accessor == null) {
+            return message;
+        }
+
+        if (accessor.getCommand() == StompCommand.DISCONNECT && accessor.getSessionId() != null) {
+            // queued forwards still run; only the chain head is forgotten
+            chains.remove(accessor.getSessionId());
+            return message;
+        }
+
+        if (accessor.getCommand() != StompCommand.SEND) {
+            return message;
+        }
+
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null && attributes.containsKey(FORWARDED_ATTR)) {
+            return message;
+        }
+
+        String destination = accessor.getDestination();
+        UUID projectId = destination == null ? null : extractProjectId(destination);
+        Principal principal = accessor.getUser();
+
+        if (projectId == null || principal == null || directory.isLocal(projectId)) {
+            return message;
+        }
+
+        SessionDirectory.Node owner = directory.ownerOf(projectId);
+
+        Object payload = message.getPayload();
+        byte[] bytes = payload instanceof byte[] b
+                ? b
+                : String.valueOf(payload).getBytes(StandardCharsets.UTF_8);
+
+        ClusterMessage forwarded = new ClusterMessage(
+                destination,
+                UUID.fromString(principal.getName()),
+                accessor.getSessionId(),
+                accessor.getContentType() != null ? accessor.getContentType().toString() : null,
+                bytes
+        );
+
+        enqueue(accessor.getSessionId(), () -> forward(owner, forwarded, projectId, principal.getName()));
+
+        return null;
+    }
+
+    // ================= FORWARDING =================
+
+    private void enqueue(String sessionId, Runnable forward) {
+        if (sessionId == null) {
+            blockingExecutor.execute(forward);
+            return;
+        }
+
+        CompletableFuture<Void> queued = chains.compute(sessionId, (id, previous) ->
+                (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                        .thenRunAsync(forward, blockingExecutor));
+
+        // drop the entry once the connection has nothing in flight
+        queued.whenComplete((ignored, error) -> chains.remove(sessionId, queued));
+    }
+
+    private void forward(SessionDirectory.Node owner, ClusterMessage forwarded, UUID projectId, String user) {
+        try {
+            clusterClient.post(owner, "/internal/cluster/inbound", forwarded);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Could not forward {} to node {}: {}", forwarded.getDestination(), owner.id(), e.getMessage());
+        }
+
+        try {
+            messagingTemplate.getObject().convertAndSendToUser(
+                    user,
+                    "/queue/errors",
+                    new ProjectErrorMessage(
+                            "forward_failed",
+                            "Project " + projectId + " is not reachable right now, message to "
+                                    + forwarded.getDestination() + " was not delivered"
+                    )
+            );
+        } catch (RuntimeException e) {
+            log.warn("Could not report failed forward to user {}: {}", user, e.getMessage());
+        }
+    }
+
+    private UUID extractProjectId(String destination) {
+
+        String[] parts = destination.split("/");
+
+        for (int i = 0; i < parts.length; i++) {
+            if ("projects".equals(parts[i]) && i + 1 < parts.length) {
+                try {
+                    return UUID.fromString(parts[i + 1]);
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -95,6 +95,9 @@ public class SecurityConfig {
                         // Health check
                         .requestMatchers("/api/health").permitAll()
 
+                        // Node-to-node traffic (shared secret, checked in ClusterController)
+                        .requestMatchers("/internal/cluster/**").permitAll()
+
                         // WebSocket handshake ONLY
                         .requestMatchers(
                                 "/ws",
@@ -0,0 +1,23 @@
+package com.codeastras.backend.codeastras.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class VirtualThreadConfig {
+
+    /**
+     * One virtual thread per task for blocking Docker, process and filesystem
+     * work. Callers bound concurrency themselves (scheduler, pools), so no
+     * pool size is needed here and a blocked task never holds a carrier.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService blockingExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("blocking-", 0).factory()
+        );
+    }
+}
@@ -1,20 +1,36 @@
 package com.codeastras.backend.codeastras.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketPermissionInterceptor permissionInterceptor;
+    private final ClusterRoutingInterceptor clusterRoutingInterceptor;
+    private final ClusterRelayInterceptor clusterRelayInterceptor;
+    private final MeterRegistry meterRegistry;
 
-    public WebSocketConfig(WebSocketPermissionInterceptor permissionInterceptor) {
+    public WebSocketConfig(
+            WebSocketPermissionInterceptor permissionInterceptor,
+            ClusterRoutingInterceptor clusterRoutingInterceptor,
+            ClusterRelayInterceptor clusterRelayInterceptor,
+            MeterRegistry meterRegistry
+    ) {
         this.permissionInterceptor = permissionInterceptor;
+        this.clusterRoutingInterceptor = clusterRoutingInterceptor;
+        this.clusterRelayInterceptor = clusterRelayInterceptor;
+        this.meterRegistry = meterRegistry;
     }
 
     // MESSAGE BROKER
@@ -32,6 +48,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
         // All client SEND must go through /app
         config.setApplicationDestinationPrefixes("/app");
+
+        // ops are published in revision order; keep that order per client on the way out
+        config.setPreservePublishOrder(true);
+
+        // each node has its own broker; peers get a copy of every broadcast
+        config.configureBrokerChannel().interceptors(clusterRelayInterceptor);
     }
 
     // STOMP ENDPOINT
@@ -50,7 +72,29 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureClientInboundChannel(
             ChannelRegistration registration) {
-        registration.interceptors(permissionInterceptor);
+        // authorize first, then hand frames for remote projects to their owner
+        registration.interceptors(permissionInterceptor, clusterRoutingInterceptor);
+
+        // same sizing as Spring's default; the decorator measures time spent queued
+        Timer queueLatency = Timer.builder("codeastras.ws.inbound.queue")
+                .description("Time an inbound STOMP message waits for a clientInboundChannel thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("clientInboundChannel-");
+        executor.setTaskDecorator(task -> {
+            long queuedAt = System.nanoTime();
+            return () -> {
+                queueLatency.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                task.run();
+            };
+        });
+        executor.initialize();
+
+        registration.taskExecutor(executor);
     }
 
     @org.springframework.web.socket.config.annotation.EnableWebSocket
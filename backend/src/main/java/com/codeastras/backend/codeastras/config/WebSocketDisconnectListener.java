@@ -1,5 +1,6 @@
 package com.codeastras.backend.codeastras.config;
 
+import com.codeastras.backend.codeastras.service.cluster.ClusterClient;
 import com.codeastras.backend.codeastras.service.session.SessionFacade;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.event.EventListener;
@@ -8,6 +9,7 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.stereotype.Component;
 
 import java.security.Principal;
+import java.util.Map;
 import java.util.UUID;
 
 @Component
@@ -15,6 +17,7 @@ import java.util.UUID;
 public class WebSocketDisconnectListener {
 
     private final SessionFacade sessionFacade;
+    private final ClusterClient clusterClient;
 
     @EventListener
     public void handleDisconnect(SessionDisconnectEvent event) {
@@ -29,5 +32,8 @@ public class WebSocketDisconnectListener {
 
         // 🔥 Correct cleanup
         sessionFacade.userLeftEverywhere(userId);
+
+        // presence for projects owned elsewhere lives on their nodes
+        clusterClient.broadcast("/internal/cluster/users/" + userId + "/left", Map.of());
     }
 }
@@ -101,6 +101,7 @@ public class WebSocketPermissionInterceptor implements ChannelInterceptor {
 
             if (destination.contains("/presence") ||
                     destination.contains("/run-output") ||
+                    destination.contains("/session") ||
                     destination.contains("/errors")) {
 
                 accessManager.require(
@@ -122,7 +123,15 @@ public class WebSocketPermissionInterceptor implements ChannelInterceptor {
         }
 
         // ---------------- SEND ----------------
-        if (destination.contains("/edit")) {
+        if (destination.contains("/edit/sync")) {
+
+            accessManager.require(
+                    projectId,
+                    userId,
+                    ProjectPermission.READ_FILE
+            );
+
+        } else if (destination.contains("/edit")) {
 
             accessManager.require(
                     projectId,
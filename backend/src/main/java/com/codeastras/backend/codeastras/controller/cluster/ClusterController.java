@@ -0,0 +1,130 @@
+package com.codeastras.backend.codeastras.controller.cluster;
+
+import com.codeastras.backend.codeastras.config.ClusterRelayInterceptor;
+import com.codeastras.backend.codeastras.config.ClusterRoutingInterceptor;
+import com.codeastras.backend.codeastras.dto.cluster.ClusterMessage;
+import com.codeastras.backend.codeastras.exception.ForbiddenException;
+import com.codeastras.backend.codeastras.service.cluster.ClusterClient;
+import com.codeastras.backend.codeastras.service.cluster.SessionDirectory;
+import com.codeastras.backend.codeastras.service.session.SessionFacade;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receiving side of node-to-node traffic; see {@link SessionDirectory}.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+public class ClusterController {
+
+    private final SessionDirectory directory;
+    private final ClusterClient clusterClient;
+    private final SessionFacade sessionFacade;
+    private final MessageChannel clientInboundChannel;
+    private final MessageChannel brokerChannel;
+
+    public ClusterController(
+            SessionDirectory directory,
+            ClusterClient clusterClient,
+            SessionFacade sessionFacade,
+            @Qualifier("clientInboundChannel") MessageChannel clientInboundChannel,
+            @Qualifier("brokerChannel") MessageChannel brokerChannel
+    ) {
+        this.directory = directory;
+        this.clusterClient = clusterClient;
+        this.sessionFacade = sessionFacade;
+        this.clientInboundChannel = clientInboundChannel;
+        this.brokerChannel = brokerChannel;
+    }
+
+    // ---------------- FORWARDED CLIENT SEND ----------------
+
+    /**
+     * Replays a client frame as if it had arrived here; the permission
+     * interceptor and the usual @MessageMapping handlers take it from there.
+     */
+    @PostMapping("/inbound")
+    public ResponseEntity<Void> inbound(
+            @RequestHeader(value = ClusterClient.SECRET_HEADER, required = false) String secret,
+            @RequestHeader(ClusterClient.FORWARDED_HEADER) String from,
+            @RequestBody ClusterMessage msg
+    ) {
+        requirePeer(secret);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination(msg.getDestination());
+        if (msg.getContentType() != null) {
+            accessor.setContentType(MimeType.valueOf(msg.getContentType()));
+        }
+
+        String userId = msg.getUserId().toString();
+        accessor.setUser((Principal) () -> userId);
+        accessor.setSessionId("cluster-" + from + "-" + msg.getWsSessionId());
+
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        attributes.put(ClusterRoutingInterceptor.FORWARDED_ATTR, from);
+        accessor.setSessionAttributes(attributes);
+        accessor.setLeaveMutable(true);
+
+        clientInboundChannel.send(
+                MessageBuilder.createMessage(msg.getPayload(), accessor.getMessageHeaders()));
+
+        return ResponseEntity.accepted().build();
+    }
+
+    // ---------------- RELAYED BROADCAST ----------------
+
+    @PostMapping("/relay")
+    public ResponseEntity<Void> relay(
+            @RequestHeader(value = ClusterClient.SECRET_HEADER, required = false) String secret,
+            @RequestBody ClusterMessage msg
+    ) {
+        requirePeer(secret);
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(msg.getDestination());
+        if (msg.getContentType() != null) {
+            accessor.setContentType(MimeType.valueOf(msg.getContentType()));
+        }
+        accessor.setHeader(ClusterRelayInterceptor.RELAYED_HEADER, true);
+
+        brokerChannel.send(
+                MessageBuilder.createMessage(msg.getPayload(), accessor.getMessageHeaders()));
+
+        return ResponseEntity.accepted().build();
+    }
+
+    // ---------------- DISCONNECT ----------------
+
+    @PostMapping("/users/{userId}/left")
+    public ResponseEntity<Void> userLeft(
+            @RequestHeader(value = ClusterClient.SECRET_HEADER, required = false) String secret,
+            @PathVariable UUID userId
+    ) {
+        requirePeer(secret);
+
+        sessionFacade.userLeftEverywhere(userId);
+        return ResponseEntity.accepted().build();
+    }
+
+    // ==================================================
+
+    private void requirePeer(String secret) {
+        if (directory.peers().isEmpty() || !clusterClient.acceptsSecret(secret)) {
+            throw new ForbiddenException("Not a cluster peer");
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.codeastras.backend.codeastras.controller.execution;
 
+import com.codeastras.backend.codeastras.dto.execution.RunCancelRequestWS;
 import com.codeastras.backend.codeastras.dto.execution.RunCodeRequestWS;
+import com.codeastras.backend.codeastras.dto.execution.RunStdinRequestWS;
 import com.codeastras.backend.codeastras.security.AuthUtil;
 import com.codeastras.backend.codeastras.service.execution.CodeExecutionService;
 import lombok.RequiredArgsConstructor;
@@ -10,12 +12,14 @@ import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 @Controller
 @RequiredArgsConstructor
 public class CodeRunController {
 
     private final CodeExecutionService codeExecutionService;
+    private final ExecutorService blockingExecutor;
 
     @MessageMapping("/projects/{projectId}/run")
     public void handleRun(
@@ -25,6 +29,30 @@ public class CodeRunController {
     ) {
         UUID userId = AuthUtil.requireUserId(principal);
 
-        codeExecutionService.run(projectId, msg, userId);
+        // return the inbound thread right away; access checks and queueing hit the DB
+        blockingExecutor.execute(() -> codeExecutionService.run(projectId, msg, userId));
+    }
+
+    @MessageMapping("/projects/{projectId}/run/cancel")
+    public void handleCancel(
+            @DestinationVariable UUID projectId,
+            RunCancelRequestWS msg,
+            Principal principal
+    ) {
+        UUID userId = AuthUtil.requireUserId(principal);
+
+        // stopping a running run talks to the container engine
+        blockingExecutor.execute(() -> codeExecutionService.cancel(projectId, msg.getRunId(), userId));
+    }
+
+    @MessageMapping("/projects/{projectId}/run/stdin")
+    public void handleStdin(
+            @DestinationVariable UUID projectId,
+            RunStdinRequestWS msg,
+            Principal principal
+    ) {
+        UUID userId = AuthUtil.requireUserId(principal);
+
+        codeExecutionService.sendInput(projectId, msg, userId);
     }
 }
@@ -1,6 +1,7 @@
 package com.codeastras.backend.codeastras.controller.execution;
 
 import com.codeastras.backend.codeastras.dto.execution.CodeEditMessage;
+import com.codeastras.backend.codeastras.dto.execution.CodeOperationMessage;
 import com.codeastras.backend.codeastras.security.AuthUtil;
 import com.codeastras.backend.codeastras.service.execution.CodeEditingService;
 import lombok.RequiredArgsConstructor;
@@ -27,4 +28,26 @@ public class CodeSyncController {
 
         codeEditingService.handleEdit(projectId, msg, userId);
     }
+
+    @MessageMapping("/projects/{projectId}/edit/ops")
+    public void handleOperation(
+            @DestinationVariable UUID projectId,
+            CodeOperationMessage msg,
+            Principal principal
+    ) {
+        UUID userId = AuthUtil.requireUserId(principal);
+
+        codeEditingService.handleOperation(projectId, msg, userId);
+    }
+
+    @MessageMapping("/projects/{projectId}/edit/sync")
+    public void sync(
+            @DestinationVariable UUID projectId,
+            CodeEditMessage msg,
+            Principal principal
+    ) {
+        UUID userId = AuthUtil.requireUserId(principal);
+
+        codeEditingService.sync(projectId, msg, userId);
+    }
 }
@@ -0,0 +1,34 @@
+package com.codeastras.backend.codeastras.controller.execution;
+
+import com.codeastras.backend.codeastras.exception.ResourceNotFoundException;
+import com.codeastras.backend.codeastras.security.AuthUtil;
+import com.codeastras.backend.codeastras.service.execution.CodeExecutionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/projects/{projectId}/runs")
+@RequiredArgsConstructor
+public class RunController {
+
+    private final CodeExecutionService codeExecutionService;
+
+    // CANCEL A QUEUED OR RUNNING RUN (RUN_CANCELLED goes out on run-output)
+    @PostMapping("/{runId}/cancel")
+    public ResponseEntity<Void> cancel(
+            @PathVariable UUID projectId,
+            @PathVariable UUID runId,
+            Authentication authentication
+    ) {
+        UUID userId = AuthUtil.requireUserId(authentication);
+
+        if (!codeExecutionService.cancel(projectId, runId, userId)) {
+            throw new ResourceNotFoundException("Run not found or already finished");
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -59,10 +59,9 @@ public class FileController {
     ) {
         UUID userId = AuthUtil.requireUserId(authentication);
 
-        ProjectFile file =
-                fileService.getFile(projectId, path, userId);
-
-        return ResponseEntity.ok(ProjectFileContentDto.from(file));
+        return ResponseEntity.ok(
+                fileService.readFile(projectId, path, userId)
+        );
     }
 
     // ------------------------------------------------
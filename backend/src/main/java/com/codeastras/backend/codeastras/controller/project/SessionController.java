@@ -11,6 +11,10 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/api/session")
@@ -20,40 +24,60 @@ public class SessionController {
             LoggerFactory.getLogger(SessionController.class);
 
     private final SessionService sessionService;
+    private final ExecutorService blockingExecutor;
 
-    public SessionController(SessionService sessionService) {
+    public SessionController(SessionService sessionService, ExecutorService blockingExecutor) {
         this.sessionService = sessionService;
+        this.blockingExecutor = blockingExecutor;
     }
 
     // START SESSION
+    // 202 + handle while the container warms up; progress on /topic/projects/{id}/session
     @PostMapping("/{projectId}/start")
     public ResponseEntity<Map<String, String>> start(
             @PathVariable UUID projectId,
             Authentication auth
-    ) throws Exception {
+    ) {
 
         UUID userId = AuthUtil.requireUserId(auth);
 
-        String sessionId = sessionService.startSession(projectId, userId);
+        SessionService.StartHandle handle =
+                sessionService.startSessionAsync(projectId, userId);
 
         return ResponseEntity
-                .status(HttpStatus.CREATED)
-                .body(Map.of("sessionId", sessionId));
+                .status(handle.isReady() ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                .body(Map.of(
+                        "sessionId", handle.sessionId(),
+                        "status", handle.isReady() ? "READY" : "STARTING"
+                ));
     }
 
 
     // STOP SESSION
     @PostMapping("/{sessionId}/stop")
-    public ResponseEntity<Void> stop(
+    public CompletableFuture<ResponseEntity<Void>> stop(
             @PathVariable String sessionId,
             Authentication auth
-    ) throws Exception {
+    ) {
 
         UUID userId = AuthUtil.requireUserId(auth);
 
         LOG.info("User {} requested stopSession {}", userId, sessionId);
 
-        sessionService.stopSession(sessionId, userId);
-        return ResponseEntity.noContent().build();
+        return async(() -> {
+            sessionService.stopSession(sessionId, userId);
+            return ResponseEntity.noContent().<Void>build();
+        });
+    }
+
+    // MVC unwraps the CompletionException, so the usual exception handlers apply
+    private <T> CompletableFuture<T> async(Callable<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return work.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, blockingExecutor);
     }
 }
@@ -0,0 +1,79 @@
+package com.codeastras.backend.codeastras.controller.project;
+
+import com.codeastras.backend.codeastras.dto.session.SessionEventType;
+import com.codeastras.backend.codeastras.security.AuthUtil;
+import com.codeastras.backend.codeastras.service.session.SessionFacade;
+import com.codeastras.backend.codeastras.service.session.SessionService;
+import com.codeastras.backend.codeastras.websocket.publisher.SessionEventPublisher;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * STOMP counterpart of {@link SessionController}; results arrive as
+ * events on /topic/projects/{id}/session.
+ */
+@Controller
+@RequiredArgsConstructor
+public class SessionWebSocketController {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(SessionWebSocketController.class);
+
+    private final SessionService sessionService;
+    private final SessionFacade sessionFacade;
+    private final SessionEventPublisher sessionEvents;
+    private final ExecutorService blockingExecutor;
+
+    // ---------------- START ----------------
+
+    @MessageMapping("/projects/{projectId}/session/start")
+    public void start(
+            @DestinationVariable UUID projectId,
+            Principal principal
+    ) {
+        UUID userId = AuthUtil.requireUserId(principal);
+
+        blockingExecutor.execute(() -> {
+            try {
+                SessionService.StartHandle handle =
+                        sessionService.startSessionAsync(projectId, userId);
+
+                // late askers only need to hear that it is already up
+                if (handle.isReady()) {
+                    sessionEvents.publish(projectId, handle.sessionId(), SessionEventType.READY, null, userId);
+                }
+            } catch (Exception e) {
+                LOG.warn("Session start for project {} rejected: {}", projectId, e.getMessage());
+                sessionEvents.publish(projectId, null, SessionEventType.FAILED, e.getMessage(), userId);
+            }
+        });
+    }
+
+    // ---------------- STOP ----------------
+
+    @MessageMapping("/projects/{projectId}/session/stop")
+    public void stop(
+            @DestinationVariable UUID projectId,
+            Principal principal
+    ) {
+        UUID userId = AuthUtil.requireUserId(principal);
+
+        blockingExecutor.execute(() ->
+                sessionFacade.getSessionIdForProject(projectId).ifPresent(sessionId -> {
+                    try {
+                        sessionService.stopSession(sessionId, userId);
+                    } catch (Exception e) {
+                        LOG.warn("Session stop for project {} failed: {}", projectId, e.getMessage());
+                        sessionEvents.publish(projectId, sessionId, SessionEventType.FAILED, e.getMessage(), userId);
+                    }
+                }));
+    }
+}
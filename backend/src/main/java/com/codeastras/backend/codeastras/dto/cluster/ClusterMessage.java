@@ -0,0 +1,23 @@
+package com.codeastras.backend.codeastras.dto.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * A STOMP message passed between nodes: an inbound SEND forwarded to the
+ * project's owner, or an outbound broker message relayed to a peer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterMessage {
+
+    private String destination;
+    private UUID userId;          // inbound only
+    private String wsSessionId;   // inbound only
+    private String contentType;
+    private byte[] payload;
+}
@@ -0,0 +1,16 @@
+package com.codeastras.backend.codeastras.dto.execution;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Full document state at a revision, sent to clients that (re)join a file.
+ */
+@Getter
+@AllArgsConstructor
+public class CodeDocumentSnapshot {
+    private final String projectId;
+    private final String path;
+    private final long revision;
+    private final String content;
+}
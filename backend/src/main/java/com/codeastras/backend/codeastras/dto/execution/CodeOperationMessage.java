@@ -0,0 +1,23 @@
+package com.codeastras.backend.codeastras.dto.execution;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Delta edit. Inbound: {@code revision} is the revision the client based the
+ * op on. Outbound: the revision the op produced on the server.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeOperationMessage {
+    private String projectId;
+    private String userId;
+    private String path;
+    private long revision;
+    private List<Object> ops;       // ot.js format: retain n | "insert" | -delete n
+    private String clientOpId;      // echoed back so the sender can ack
+}
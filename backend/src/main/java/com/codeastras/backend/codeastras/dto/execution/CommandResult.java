@@ -1,9 +1,13 @@
 package com.codeastras.backend.codeastras.dto.execution;
 
+import java.util.List;
+
 public class CommandResult {
 
     private int exitCode;
     private String output;
+    private RunUsage usage;
+    private List<OutputChunk> chunks; // output split by stream, null if not recorded
 
     public CommandResult() {}
 
@@ -12,6 +16,12 @@ public class CommandResult {
         this.output = output;
     }
 
+    public CommandResult(int exitCode, String output, RunUsage usage) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.usage = usage;
+    }
+
     public int getExitCode() {
         return exitCode;
     }
@@ -20,6 +30,14 @@ public class CommandResult {
         return output;
     }
 
+    public RunUsage getUsage() {
+        return usage;
+    }
+
+    public List<OutputChunk> getChunks() {
+        return chunks;
+    }
+
     public void setExitCode(int exitCode) {
         this.exitCode = exitCode;
     }
@@ -27,4 +45,12 @@ public class CommandResult {
     public void setOutput(String output) {
         this.output = output;
     }
-}
\ No newline at end of file
+
+    public void setUsage(RunUsage usage) {
+        this.usage = usage;
+    }
+
+    public void setChunks(List<OutputChunk> chunks) {
+        this.chunks = chunks;
+    }
+}
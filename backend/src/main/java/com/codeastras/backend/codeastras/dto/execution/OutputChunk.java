@@ -0,0 +1,8 @@
+package com.codeastras.backend.codeastras.dto.execution;
+
+/**
+ * A stretch of a run's output from one stream ("stdout" | "stderr"), in
+ * the order it was written. {@code data} may end mid-character; the next
+ * chunk of the same stream continues it.
+ */
+public record OutputChunk(String stream, byte[] data) {}
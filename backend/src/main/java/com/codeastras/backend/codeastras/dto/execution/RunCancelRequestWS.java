@@ -0,0 +1,12 @@
+package com.codeastras.backend.codeastras.dto.execution;
+
+import java.util.UUID;
+
+public class RunCancelRequestWS {
+    private UUID runId;
+
+    public RunCancelRequestWS() {}
+
+    public UUID getRunId() { return runId; }
+    public void setRunId(UUID runId) { this.runId = runId; }
+}
@@ -1,27 +1,22 @@
 package com.codeastras.backend.codeastras.dto.execution;
 
+import lombok.Builder;
 import lombok.Getter;
 
+import java.util.UUID;
+
 @Getter
+@Builder
 public class RunCodeBroadcastMessage {
 
     private final String sessionId;
-    private final String type;       // RUN_STARTED | RUN_OUTPUT | RUN_FINISHED | RUN_ERROR
+    private final String type;       // RUN_QUEUED | RUN_STARTED | RUN_OUTPUT | RUN_INPUT_REJECTED | RUN_FINISHED | RUN_CANCELLED | RUN_ERROR
     private final String output;     // only for RUN_OUTPUT
     private final Integer exitCode;  // only for RUN_FINISHED
     private final String triggeredBy;
-
-    public RunCodeBroadcastMessage(
-            String sessionId,
-            String type,
-            String output,
-            Integer exitCode,
-            String triggeredBy
-    ) {
-        this.sessionId = sessionId;
-        this.type = type;
-        this.output = output;
-        this.exitCode = exitCode;
-        this.triggeredBy = triggeredBy;
-    }
+    private final UUID runId;
+    private final Integer queuePosition; // only for RUN_QUEUED, 1 = next
+    private final RunUsage usage;        // RUN_FINISHED, or RUN_CANCELLED of a started run; null for cached results
+    private final String stream;         // only for RUN_OUTPUT: stdout | stderr, null for runner notices
+    private final Boolean partial;       // only for RUN_OUTPUT: ends mid-line, the next frame of the stream continues it
 }
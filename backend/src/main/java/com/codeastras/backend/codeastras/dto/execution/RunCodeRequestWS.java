@@ -6,6 +6,7 @@ public class RunCodeRequestWS {
     private String filename;
     private int timeoutSeconds = 10;
     private String token;
+    private boolean interactive; // attach stdin, fed through /run/stdin
 
     public RunCodeRequestWS() {}
 
@@ -23,4 +24,7 @@ public class RunCodeRequestWS {
 
     public String getToken() { return token; }
     public void setToken(String token) { this.token = token; }
+
+    public boolean isInteractive() { return interactive; }
+    public void setInteractive(boolean interactive) { this.interactive = interactive; }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.codeastras.backend.codeastras.dto.execution;
+
+import java.util.UUID;
+
+public class RunStdinRequestWS {
+    private UUID runId;
+    private String data;
+    private boolean eof; // close stdin after data
+
+    public RunStdinRequestWS() {}
+
+    public UUID getRunId() { return runId; }
+    public void setRunId(UUID runId) { this.runId = runId; }
+
+    public String getData() { return data; }
+    public void setData(String data) { this.data = data; }
+
+    public boolean isEof() { return eof; }
+    public void setEof(boolean eof) { this.eof = eof; }
+}
@@ -0,0 +1,13 @@
+package com.codeastras.backend.codeastras.dto.execution;
+
+/**
+ * What one run used. cpuMillis and peakMemoryBytes are null when the
+ * runner could not report them (e.g. the run was killed on timeout).
+ */
+public record RunUsage(
+        long wallMillis,
+        Long cpuMillis,
+        Long peakMemoryBytes,
+        long outputBytes,
+        boolean oomKilled
+) {}
@@ -12,12 +12,18 @@ public class ProjectFileContentDto {
     private UUID id;
     private String path;
     private String content;
+    private Long revision; // live revision, null for folders
 
     public static ProjectFileContentDto from(ProjectFile file) {
+        return from(file, null);
+    }
+
+    public static ProjectFileContentDto from(ProjectFile file, Long revision) {
         return new ProjectFileContentDto(
                 file.getId(),
                 file.getPath(),
-                file.getContent()
+                file.getContent(),
+                revision
         );
     }
 }
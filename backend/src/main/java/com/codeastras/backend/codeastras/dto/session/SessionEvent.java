@@ -0,0 +1,18 @@
+package com.codeastras.backend.codeastras.dto.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class SessionEvent {
+    private SessionEventType type;
+    private UUID projectId;
+    private String sessionId;
+    private String message; // why: FAILED errors, STOPPED by the idle reaper
+    private UUID triggeredBy;
+    private Instant timestamp;
+}
@@ -0,0 +1,10 @@
+package com.codeastras.backend.codeastras.dto.session;
+
+public enum SessionEventType {
+    SYNCING,
+    PULLING_IMAGE,
+    STARTING,
+    READY,
+    FAILED,
+    STOPPED
+}
@@ -1,7 +1,12 @@
 package com.codeastras.backend.codeastras.entity.file;
 
 import jakarta.persistence.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Entity
@@ -21,6 +26,9 @@ public class ProjectFile {
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // sha-256 hex of content, null for folders
+
     @Column(nullable = false)
     private String type; // FILE or FOLDER
 
@@ -37,6 +45,7 @@ public class ProjectFile {
         this.projectId = projectId;
         this.path = path;
         this.content = content;
+        this.contentHash = content == null ? null : hashOf(content);
         this.type = type;
         this.createdAt = Instant.now();
         this.updatedAt = Instant.now();
@@ -55,9 +64,22 @@ public class ProjectFile {
     public String getContent() { return content; }
     public void setContent(String content) {
         this.content = content;
+        this.contentHash = content == null ? null : hashOf(content);
         this.updatedAt = Instant.now();
     }
 
+    public String getContentHash() { return contentHash; }
+
+    public static String hashOf(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = (content == null ? "" : content).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
 
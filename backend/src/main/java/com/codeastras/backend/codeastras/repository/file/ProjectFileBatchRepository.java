@@ -0,0 +1,50 @@
+package com.codeastras.backend.codeastras.repository.file;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain JDBC writes for the hot save path.
+ * Same semantics as {@link ProjectFileRepository#updateContent}, but many rows per round-trip.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProjectFileBatchRepository {
+
+    private static final String UPDATE_CONTENT =
+            "UPDATE project_files SET content = ?, content_hash = ?, updated_at = ? " +
+            "WHERE project_id = ? AND path = ? AND type = 'FILE'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record ContentUpdate(UUID projectId, String path, String content, String contentHash) {}
+
+    /**
+     * @return rows touched per update (0 = file no longer exists)
+     */
+    public int[] updateContents(List<ContentUpdate> updates) {
+
+        Timestamp now = Timestamp.from(Instant.now());
+
+        int[][] counts = jdbcTemplate.batchUpdate(
+                UPDATE_CONTENT,
+                updates,
+                updates.size(),
+                (ps, u) -> {
+                    ps.setString(1, u.content());
+                    ps.setString(2, u.contentHash());
+                    ps.setTimestamp(3, now);
+                    ps.setObject(4, u.projectId());
+                    ps.setString(5, u.path());
+                }
+        );
+
+        return counts.length == 0 ? new int[0] : counts[0];
+    }
+}
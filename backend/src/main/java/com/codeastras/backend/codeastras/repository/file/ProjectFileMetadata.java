@@ -0,0 +1,20 @@
+package com.codeastras.backend.codeastras.repository.file;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Everything about a project file except its content.
+ */
+public interface ProjectFileMetadata {
+
+    UUID getId();
+
+    String getPath();
+
+    String getType();
+
+    String getContentHash();
+
+    Instant getUpdatedAt();
+}
@@ -6,7 +6,9 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -15,11 +17,23 @@ public interface ProjectFileRepository extends JpaRepository<ProjectFile, UUID>
 
     List<ProjectFile> findByProjectId(UUID projectId);
 
+    // closed projection → the TEXT column is never fetched
+    List<ProjectFileMetadata> findMetadataByProjectId(UUID projectId);
+
+    // closed projection → only the rows with these hashes, and only hash + content
+    List<ProjectFileSource> findSourcesByProjectIdAndContentHashIn(UUID projectId, Collection<String> contentHashes);
+
     ProjectFile findByProjectIdAndPath(UUID projectId, String path);
 
     @Modifying(clearAutomatically = true, flushAutomatically = true)
-    @Query("UPDATE ProjectFile f SET f.content = :content, f.updatedAt = CURRENT_TIMESTAMP WHERE f.projectId = :projectId AND f.path = :path")
-    void updateContent(@Param("projectId") UUID projectId, @Param("path") String path, @Param("content") String content);
+    @Query("UPDATE ProjectFile f SET f.content = :content, f.contentHash = :contentHash, f.updatedAt = CURRENT_TIMESTAMP WHERE f.projectId = :projectId AND f.path = :path")
+    void updateContent(@Param("projectId") UUID projectId, @Param("path") String path, @Param("content") String content, @Param("contentHash") String contentHash);
+
+    // rows from before content_hash existed get it the first time their content is read
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProjectFile f SET f.contentHash = :contentHash WHERE f.id = :id AND f.contentHash IS NULL")
+    int backfillContentHash(@Param("id") UUID id, @Param("contentHash") String contentHash);
 
     boolean existsByProjectIdAndPath(UUID projectId, String path);
 }
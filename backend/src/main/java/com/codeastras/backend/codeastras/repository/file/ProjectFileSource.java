@@ -0,0 +1,11 @@
+package com.codeastras.backend.codeastras.repository.file;
+
+/**
+ * Content of a project file, keyed by its hash, for source scans.
+ */
+public interface ProjectFileSource {
+
+    String getContentHash();
+
+    String getContent();
+}
@@ -1,10 +1,21 @@
 package com.codeastras.backend.codeastras.service;
 
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+
 import java.util.UUID;
 
+/**
+ * Content is read from the live document at flush time, so a save always
+ * persists the newest revision instead of a copy taken per keystroke.
+ *
+ * Times are {@link System#nanoTime()} values: {@code queuedAt} is when the
+ * file first became dirty, {@code dueAt} when the next group commit may take it.
+ */
 public record PendingEdit(
         UUID projectId,
         String path,
-        String content,
-        UUID userId
+        CollaborativeDocument document,
+        UUID userId,
+        long queuedAt,
+        long dueAt
 ) {}
@@ -0,0 +1,130 @@
+package com.codeastras.backend.codeastras.service.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * HTTP between backend nodes. Requests carry the shared
+ * {@code code.cluster.secret} and the sending node's id, which also stops
+ * a forwarded request from being forwarded again.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClusterClient {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ClusterClient.class);
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    private final SessionDirectory directory;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService blockingExecutor;
+
+    @Value("${code.cluster.secret:}")
+    private String secret;
+
+    @Value("${code.cluster.timeout:10s}")
+    private Duration timeout;
+
+    private HttpClient http;
+
+    @PostConstruct
+    public void init() {
+        if (!directory.peers().isEmpty() && secret.isBlank()) {
+            throw new IllegalStateException("code.cluster.secret is required when code.cluster.nodes has peers");
+        }
+
+        http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(2))
+                .executor(blockingExecutor)
+                .build();
+    }
+
+    public boolean acceptsSecret(String presented) {
+        return presented != null && MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8),
+                presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fire-and-forget {@link #post} to every peer.
+     */
+    public void broadcast(String path, Object body) {
+        for (SessionDirectory.Node peer : directory.peers()) {
+            blockingExecutor.execute(() -> {
+                try {
+                    post(peer, path, body);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    log.warn("Could not notify node {} ({}): {}", peer.id(), path, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * POSTs {@code body} as JSON to {@code path} on {@code node}.
+     *
+     * @throws IOException on transport failure or a non-2xx answer
+     */
+    public void post(SessionDirectory.Node node, String path, Object body)
+            throws IOException, InterruptedException {
+
+        HttpRequest request = base(node, path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+
+        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Node " + node.id() + " answered " + response.statusCode() + " for " + path);
+        }
+    }
+
+    /**
+     * Replays a client request on {@code node}, passing the given headers through.
+     */
+    public HttpResponse<byte[]> proxy(
+            SessionDirectory.Node node,
+            String method,
+            String pathAndQuery,
+            Map<String, String> headers,
+            byte[] body
+    ) throws IOException, InterruptedException {
+
+        HttpRequest.Builder request = base(node, pathAndQuery)
+                .method(method, body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.forEach(request::header);
+
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest.Builder base(SessionDirectory.Node node, String path) {
+        return HttpRequest.newBuilder(URI.create(node.url() + path))
+                .timeout(timeout)
+                .header(SECRET_HEADER, secret)
+                .header(FORWARDED_HEADER, directory.self().id());
+    }
+}
@@ -0,0 +1,107 @@
+package com.codeastras.backend.codeastras.service.cluster;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Static membership, placement by consistent hashing of the project id.
+ *
+ * {@code code.cluster.nodes} lists every node as {@code id=url}, comma
+ * separated, and must be identical on all of them; {@code code.cluster.node-id}
+ * names this one. Each node gets {@code virtual-nodes} points on the ring,
+ * so adding or removing a node only moves about 1/N of the projects.
+ *
+ * Without {@code code.cluster.nodes} this is a one-node cluster and every
+ * project is local. Several nodes fit on one host with different ports,
+ * e.g. {@code a=http://localhost:8080,b=http://localhost:8081}.
+ */
+@Component
+public class ConsistentHashSessionDirectory implements SessionDirectory {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ConsistentHashSessionDirectory.class);
+
+    @Value("${code.cluster.node-id:local}")
+    private String nodeId;
+
+    @Value("${code.cluster.nodes:}")
+    private List<String> nodeSpecs;
+
+    @Value("${code.cluster.virtual-nodes:256}")
+    private int virtualNodes;
+
+    private final NavigableMap<Long, Node> ring = new TreeMap<>();
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private Node self;
+
+    @PostConstruct
+    public void init() {
+        for (String spec : nodeSpecs) {
+            if (spec.isBlank()) continue;
+
+            int eq = spec.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalStateException("code.cluster.nodes entry must be id=url: " + spec);
+            }
+            String id = spec.substring(0, eq).trim();
+            nodes.put(id, new Node(id, URI.create(spec.substring(eq + 1).trim())));
+        }
+
+        if (nodes.isEmpty()) {
+            nodes.put(nodeId, new Node(nodeId, null));
+        }
+
+        self = nodes.get(nodeId);
+        if (self == null) {
+            throw new IllegalStateException("code.cluster.node-id " + nodeId + " is not in code.cluster.nodes");
+        }
+
+        for (Node node : nodes.values()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node.id() + "#" + i), node);
+            }
+        }
+
+        log.info("Cluster: node {} of {}", nodeId, nodes.keySet());
+    }
+
+    @Override
+    public Node self() {
+        return self;
+    }
+
+    @Override
+    public Node ownerOf(UUID projectId) {
+        if (nodes.size() == 1) return self;
+
+        Map.Entry<Long, Node> e = ring.ceilingEntry(hash(projectId.toString()));
+        return (e != null ? e : ring.firstEntry()).getValue();
+    }
+
+    @Override
+    public Collection<Node> peers() {
+        return nodes.values().stream()
+                .filter(n -> !n.id().equals(nodeId))
+                .toList();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.codeastras.backend.codeastras.service.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+/**
+ * What this node owns on a host it may share with other nodes (same
+ * Docker daemon, same {@code code.runner.base-path}): container names
+ * carry the node id, and the node's folders, content store and session
+ * registry live under {@code <base-path>/<node-id>}. Startup cleanup only
+ * looks at names and folders inside this scope.
+ */
+@Component
+public class NodeScope {
+
+    // no '_', so one node's prefix is never a prefix of another's
+    private static final Pattern NODE_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9.-]*");
+
+    private final String nodeId;
+    private final Path basePath;
+
+    public NodeScope(
+            @Value("${code.cluster.node-id:local}") String nodeId,
+            @Value("${code.runner.base-path:/var/code_sessions}") String basePath
+    ) {
+        if (!NODE_ID.matcher(nodeId).matches()) {
+            throw new IllegalStateException(
+                    "code.cluster.node-id may only contain letters, digits, '.' and '-': " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.basePath = Paths.get(basePath).toAbsolutePath().normalize().resolve(nodeId);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * {@code <code.runner.base-path>/<node-id>}
+     */
+    public Path basePath() {
+        return basePath;
+    }
+
+    public String sessionContainerPrefix() {
+        return "session_" + nodeId + "_";
+    }
+
+    public String runnerContainerPrefix() {
+        return "runner_" + nodeId + "_";
+    }
+}
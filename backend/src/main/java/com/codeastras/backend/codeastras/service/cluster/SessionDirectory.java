@@ -0,0 +1,28 @@
+package com.codeastras.backend.codeastras.service.cluster;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Decides which backend node owns a project. The owner holds the project's
+ * session container, live documents, run queue and presence; other nodes
+ * forward to it.
+ */
+public interface SessionDirectory {
+
+    record Node(String id, URI url) {}
+
+    Node self();
+
+    Node ownerOf(UUID projectId);
+
+    /**
+     * @return every node except this one
+     */
+    Collection<Node> peers();
+
+    default boolean isLocal(UUID projectId) {
+        return ownerOf(projectId).id().equals(self().id());
+    }
+}
@@ -0,0 +1,45 @@
+package com.codeastras.backend.codeastras.service.container;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process running in a container (an exec, or an attached one-off container).
+ *
+ * Someone must call {@link #pump} (usually a reader thread) for the process
+ * to make progress; {@link #waitFor} returns once the output is drained.
+ */
+public interface ContainerProcess extends AutoCloseable {
+
+    enum Stream { STDOUT, STDERR }
+
+    @FunctionalInterface
+    interface OutputHandler {
+        void onOutput(Stream stream, byte[] data, int offset, int length);
+    }
+
+    /**
+     * Delivers output until the process closes it. Blocks.
+     */
+    void pump(OutputHandler handler) throws IOException;
+
+    /**
+     * Closing the stream sends EOF to the process.
+     */
+    OutputStream stdin();
+
+    /**
+     * @return the exit code, or empty if the process is still running after {@code timeout}
+     */
+    OptionalInt waitFor(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Drops the connection to the process. Does not by itself stop an exec'd process.
+     */
+    void kill();
+
+    @Override
+    void close();
+}
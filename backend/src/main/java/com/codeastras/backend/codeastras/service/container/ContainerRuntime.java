@@ -0,0 +1,91 @@
+package com.codeastras.backend.codeastras.service.container;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What the backend needs from the container engine.
+ *
+ * {@link DockerEngineClient} talks to the Engine API over its unix socket;
+ * tests use an in-process fake that runs everything as local processes.
+ *
+ * Failures surface as {@link com.codeastras.backend.codeastras.exception.DockerCommandException}.
+ */
+public interface ContainerRuntime {
+
+    @Builder
+    record ContainerSpec(
+            String name,
+            String image,
+            List<String> entrypoint,
+            List<String> cmd,
+            String workingDir,
+            List<String> env,
+            List<String> binds,           // host:container[:ro]
+            Map<String, String> tmpfs,    // container path → mount options
+            double cpus,
+            long memoryBytes,
+            boolean networkDisabled,
+            boolean openStdin             // runAttached only: stdin via ContainerProcess#stdin
+    ) {
+        public ContainerSpec {
+            cmd = cmd == null ? List.of() : cmd;
+            env = env == null ? List.of() : env;
+            binds = binds == null ? List.of() : binds;
+            tmpfs = tmpfs == null ? Map.of() : tmpfs;
+        }
+    }
+
+    @Builder
+    record ExecSpec(
+            List<String> cmd,
+            String workingDir,
+            List<String> env,
+            boolean attachStdin
+    ) {
+        public ExecSpec {
+            env = env == null ? List.of() : env;
+        }
+    }
+
+    /**
+     * Creates and starts a detached container.
+     *
+     * @return container id
+     */
+    String run(ContainerSpec spec);
+
+    /**
+     * Creates a container, attaches to its output and starts it. The
+     * container is removed when the returned process is closed.
+     */
+    ContainerProcess runAttached(ContainerSpec spec);
+
+    ContainerProcess exec(String container, ExecSpec spec);
+
+    /**
+     * Force-removes the container; a missing container is not an error.
+     */
+    void remove(String container);
+
+    CompletableFuture<Void> removeAsync(String container);
+
+    /**
+     * @return names of all containers (running or not) starting with {@code prefix}
+     */
+    List<String> listNames(String prefix);
+
+    /**
+     * @return false if the container is stopped or does not exist
+     */
+    boolean isRunning(String container);
+
+    boolean imageExists(String image);
+
+    void pull(String image);
+
+    String logs(String container);
+}
@@ -0,0 +1,689 @@
+package com.codeastras.backend.codeastras.service.container;
+
+import com.codeastras.backend.codeastras.exception.DockerCommandException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Docker Engine API over the unix socket, no CLI in between.
+ *
+ * Plain calls use keep-alive connections from a small pool, so create,
+ * start, exec and remove are one request each on an open socket. Calls
+ * that stream (exec start, attach) upgrade a fresh connection to a raw
+ * stream, demultiplexed by {@link EngineProcess}.
+ *
+ * Plain calls give up after {@code read-timeout} without a byte from the
+ * engine (a pull gets {@code pull-timeout}); upgraded streams have no
+ * timeout, since a run may be silent for as long as it likes.
+ */
+@Component
+public class DockerEngineClient implements ContainerRuntime {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(DockerEngineClient.class);
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final int EXIT_CODE_RETRIES = 20;
+
+    private final ObjectMapper objectMapper;
+    private final UnixDomainSocketAddress address;
+    private final String apiPrefix;
+    private final long readTimeoutMillis;
+    private final long pullTimeoutMillis;
+
+    private final BlockingQueue<Connection> idle =
+            new ArrayBlockingQueue<>(MAX_IDLE_CONNECTIONS);
+
+    private final ExecutorService blockingExecutor;
+
+    public DockerEngineClient(
+            ObjectMapper objectMapper,
+            ExecutorService blockingExecutor,
+            @Value("${code.container.docker.socket:/var/run/docker.sock}") String socketPath,
+            @Value("${code.container.docker.api-version:1.41}") String apiVersion,
+            @Value("${code.container.docker.read-timeout:30s}") Duration readTimeout,
+            @Value("${code.container.docker.pull-timeout:10m}") Duration pullTimeout
+    ) {
+        this.objectMapper = objectMapper;
+        this.blockingExecutor = blockingExecutor;
+        this.address = UnixDomainSocketAddress.of(Path.of(socketPath));
+        this.apiPrefix = "/v" + apiVersion;
+        this.readTimeoutMillis = readTimeout.toMillis();
+        this.pullTimeoutMillis = pullTimeout.toMillis();
+    }
+
+    // ================= CONTAINERS =================
+
+    @Override
+    public String run(ContainerSpec spec) {
+        String id = create(spec);
+        expect(call("POST", "/containers/" + id + "/start", null), 204, 304);
+        return id;
+    }
+
+    @Override
+    public ContainerProcess runAttached(ContainerSpec spec) {
+        String id = create(spec);
+
+        try {
+            // attach before start, or early output is lost
+            Connection stream = upgrade(
+                    "/containers/" + id + "/attach?stream=1&stdout=1&stderr=1"
+                            + (spec.openStdin() ? "&stdin=1" : ""), null);
+
+            expect(call("POST", "/containers/" + id + "/start", null), 204, 304);
+
+            return new EngineProcess(
+                    stream,
+                    () -> json(expect(call("POST", "/containers/" + id + "/wait", null), 200))
+                            .path("StatusCode").asInt(),
+                    () -> remove(id)
+            );
+        } catch (RuntimeException e) {
+            remove(id);
+            throw e;
+        }
+    }
+
+    @Override
+    public ContainerProcess exec(String container, ExecSpec spec) {
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("AttachStdin", spec.attachStdin());
+        body.put("AttachStdout", true);
+        body.put("AttachStderr", true);
+        body.put("Tty", false);
+        body.put("Cmd", spec.cmd());
+        body.put("Env", spec.env());
+        if (spec.workingDir() != null) body.put("WorkingDir", spec.workingDir());
+
+        String execId = json(expect(
+                call("POST", "/containers/" + enc(container) + "/exec", body), 201
+        )).path("Id").asText();
+
+        Connection stream = upgrade(
+                "/exec/" + execId + "/start",
+                Map.of("Detach", false, "Tty", false)
+        );
+
+        return new EngineProcess(stream, () -> execExitCode(execId), () -> {});
+    }
+
+    @Override
+    public void remove(String container) {
+        expect(call("DELETE", "/containers/" + enc(container) + "?force=true&v=true", null), 204, 404);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(String container) {
+        return CompletableFuture.runAsync(() -> remove(container), blockingExecutor);
+    }
+
+    @Override
+    public List<String> listNames(String prefix) {
+        String filters = "{\"name\":[\"" + prefix + "\"]}";
+        JsonNode list = json(expect(
+                call("GET", "/containers/json?all=true&filters=" + enc(filters), null), 200));
+
+        List<String> names = new ArrayList<>();
+        for (JsonNode c : list) {
+            for (JsonNode n : c.path("Names")) {
+                String name = n.asText().replaceFirst("^/", "");
+                // the engine filter is a substring match
+                if (name.startsWith(prefix)) names.add(name);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public boolean isRunning(String container) {
+        Response r = expect(call("GET", "/containers/" + enc(container) + "/json", null), 200, 404);
+        return r.status() == 200 && json(r).path("State").path("Running").asBoolean(false);
+    }
+
+    @Override
+    public String logs(String container) {
+        Response r = expect(
+                call("GET", "/containers/" + enc(container) + "/logs?stdout=1&stderr=1", null), 200);
+
+        StringBuilder out = new StringBuilder();
+        try {
+            demux(new ByteArrayInputStream(r.body()), (s, data, off, len) ->
+                    out.append(new String(data, off, len, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new DockerCommandException("Unreadable logs for " + container);
+        }
+        return out.toString();
+    }
+
+    // ================= IMAGES =================
+
+    @Override
+    public boolean imageExists(String image) {
+        return expect(call("GET", "/images/" + image + "/json", null), 200, 404).status() == 200;
+    }
+
+    @Override
+    public void pull(String image) {
+        Response r = expect(
+                call("POST", "/images/create?" + pullQuery(image), null, pullTimeoutMillis), 200);
+
+        // progress stream; failures arrive as {"error": ...} lines with a 200
+        String progress = new String(r.body(), StandardCharsets.UTF_8);
+        if (progress.contains("\"error\"")) {
+            throw new DockerCommandException("Pull failed for " + image + ": " + progress.strip());
+        }
+    }
+
+    /**
+     * {@code repo[:tag][@digest]} → fromImage/tag; a digest wins over a tag,
+     * and a colon before the last slash is a registry port, not a tag.
+     */
+    static String pullQuery(String image) {
+        String from = image;
+        String ref = "latest";
+
+        int at = image.indexOf('@');
+        if (at >= 0) {
+            from = image.substring(0, at);
+            ref = image.substring(at + 1);
+        }
+
+        int slash = from.lastIndexOf('/');
+        int colon = from.lastIndexOf(':');
+        if (colon > slash) {
+            if (at < 0) ref = from.substring(colon + 1);
+            from = from.substring(0, colon);
+        }
+
+        return "fromImage=" + enc(from) + "&tag=" + enc(ref);
+    }
+
+    // ================= INTERNAL =================
+
+    private String create(ContainerSpec spec) {
+
+        Map<String, Object> host = new LinkedHashMap<>();
+        if (!spec.binds().isEmpty()) host.put("Binds", spec.binds());
+        if (!spec.tmpfs().isEmpty()) host.put("Tmpfs", spec.tmpfs());
+        if (spec.cpus() > 0) host.put("NanoCpus", (long) (spec.cpus() * 1_000_000_000L));
+        if (spec.memoryBytes() > 0) host.put("Memory", spec.memoryBytes());
+        if (spec.networkDisabled()) host.put("NetworkMode", "none");
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("Image", spec.image());
+        if (spec.entrypoint() != null) body.put("Entrypoint", spec.entrypoint());
+        if (!spec.cmd().isEmpty()) body.put("Cmd", spec.cmd());
+        if (spec.workingDir() != null) body.put("WorkingDir", spec.workingDir());
+        body.put("Env", spec.env());
+        body.put("AttachStdout", true);
+        body.put("AttachStderr", true);
+        if (spec.openStdin()) {
+            // closing our end of the attach sends EOF
+            body.put("AttachStdin", true);
+            body.put("OpenStdin", true);
+            body.put("StdinOnce", true);
+        }
+        body.put("Tty", false);
+        body.put("HostConfig", host);
+
+        String path = "/containers/create" + (spec.name() == null ? "" : "?name=" + enc(spec.name()));
+        return json(expect(call("POST", path, body), 201)).path("Id").asText();
+    }
+
+    private int execExitCode(String execId) {
+        // the stream can close a moment before the engine records the exit
+        for (int i = 0; i < EXIT_CODE_RETRIES; i++) {
+            JsonNode info = json(expect(call("GET", "/exec/" + execId + "/json", null), 200));
+            if (!info.path("Running").asBoolean() && !info.path("ExitCode").isNull()) {
+                return info.path("ExitCode").asInt();
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private Response call(String method, String path, Object body) {
+        return call(method, path, body, readTimeoutMillis);
+    }
+
+    private Response call(String method, String path, Object body, long timeoutMillis) {
+        byte[] payload = encode(body);
+
+        Connection pooled = idle.poll();
+        if (pooled != null) {
+            try {
+                pooled.timeoutMillis = timeoutMillis;
+                return exchange(pooled, method, path, payload);
+            } catch (SocketTimeoutException e) {
+                throw timedOut(method, path);
+            } catch (IOException stale) {
+                // the engine closed an idle keep-alive connection; retry on a fresh one
+                pooled.close();
+            }
+        }
+
+        try {
+            Connection fresh = open();
+            fresh.timeoutMillis = timeoutMillis;
+            return exchange(fresh, method, path, payload);
+        } catch (SocketTimeoutException e) {
+            throw timedOut(method, path);
+        } catch (IOException e) {
+            throw new DockerCommandException(
+                    "Docker engine unreachable (" + method + " " + path + "): " + e.getMessage());
+        }
+    }
+
+    private static DockerCommandException timedOut(String method, String path) {
+        return new DockerCommandException("Docker engine did not answer in time (" + method + " " + path + ")");
+    }
+
+    private Response exchange(Connection c, String method, String path, byte[] payload)
+            throws IOException {
+        try {
+            c.send(method, apiPrefix + path, payload, false);
+            Response r = c.readResponse();
+
+            if (r.keepAlive() && idle.offer(c)) {
+                return r;
+            }
+            c.close();
+            return r;
+        } catch (IOException | RuntimeException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    // hijacked connection: after the headers it is a raw stream for this call only
+    private Connection upgrade(String path, Object body) {
+        Connection c = null;
+        try {
+            c = new Connection(SocketChannel.open(address), false);
+            c.send("POST", apiPrefix + path, encode(body), true);
+
+            Response head = c.readHead();
+            if (head.status() != 101 && head.status() != 200) {
+                Response full = c.readBody(head);
+                c.close();
+                throw failure(full);
+            }
+            return c;
+        } catch (IOException e) {
+            if (c != null) c.close();
+            throw new DockerCommandException("Docker engine stream failed (" + path + "): " + e.getMessage());
+        }
+    }
+
+    private Connection open() throws IOException {
+        return new Connection(SocketChannel.open(address), true);
+    }
+
+    private Response expect(Response r, int... accepted) {
+        for (int code : accepted) {
+            if (r.status() == code) return r;
+        }
+        throw failure(r);
+    }
+
+    private DockerCommandException failure(Response r) {
+        String message = new String(r.body(), StandardCharsets.UTF_8);
+        try {
+            message = objectMapper.readTree(r.body()).path("message").asText(message);
+        } catch (IOException ignored) {
+            // not JSON, keep the raw body
+        }
+        return new DockerCommandException("Docker engine error " + r.status() + ": " + message);
+    }
+
+    private JsonNode json(Response r) {
+        try {
+            return objectMapper.readTree(r.body());
+        } catch (IOException e) {
+            throw new DockerCommandException("Malformed engine response: " + e.getMessage());
+        }
+    }
+
+    private byte[] encode(Object body) {
+        if (body == null) return new byte[0];
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new DockerCommandException("Unserializable request: " + e.getMessage());
+        }
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    // stdcopy framing: [stream, 0, 0, 0, size(4, big endian)] + payload
+    private static void demux(InputStream in, ContainerProcess.OutputHandler handler)
+            throws IOException {
+
+        byte[] header = new byte[8];
+        byte[] buf = new byte[8192];
+
+        while (in.readNBytes(header, 0, 8) == 8) {
+            ContainerProcess.Stream stream = header[0] == 2
+                    ? ContainerProcess.Stream.STDERR
+                    : ContainerProcess.Stream.STDOUT;
+
+            int remaining = ((header[4] & 0xff) << 24)
+                    | ((header[5] & 0xff) << 16)
+                    | ((header[6] & 0xff) << 8)
+                    | (header[7] & 0xff);
+
+            while (remaining > 0) {
+                int n = in.read(buf, 0, Math.min(buf.length, remaining));
+                if (n < 0) return;
+                handler.onOutput(stream, buf, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Connection c;
+        while ((c = idle.poll()) != null) {
+            c.close();
+        }
+    }
+
+    // ================= PROCESS =================
+
+    private final class EngineProcess implements ContainerProcess {
+
+        private final Connection stream;
+        private final Callable<Integer> exitCode;
+        private final Runnable onClose;
+        private final CountDownLatch drained = new CountDownLatch(1);
+
+        EngineProcess(Connection stream, Callable<Integer> exitCode, Runnable onClose) {
+            this.stream = stream;
+            this.exitCode = exitCode;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void pump(OutputHandler handler) throws IOException {
+            try {
+                demux(stream.in, handler);
+            } finally {
+                drained.countDown();
+            }
+        }
+
+        @Override
+        public OutputStream stdin() {
+            return new FilterOutputStream(stream.out) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                    stream.channel.shutdownOutput();
+                }
+            };
+        }
+
+        @Override
+        public OptionalInt waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+            if (!drained.await(timeout, unit)) {
+                return OptionalInt.empty();
+            }
+            try {
+                return OptionalInt.of(exitCode.call());
+            } catch (Exception e) {
+                log.warn("Could not read exit code: {}", e.getMessage());
+                return OptionalInt.of(-1);
+            }
+        }
+
+        @Override
+        public void kill() {
+            stream.close();
+        }
+
+        @Override
+        public void close() {
+            stream.close();
+            try {
+                onClose.run();
+            } catch (RuntimeException e) {
+                log.warn("Cleanup after container process failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // ================= HTTP/1.1 =================
+
+    private record Response(int status, Map<String, String> headers, byte[] body, boolean keepAlive) {}
+
+    private static final class Connection implements Closeable {
+
+        final SocketChannel channel;
+        final InputStream in;
+        final OutputStream out;
+
+        // plain connections only; a blocking channel ignores SO_TIMEOUT, so they wait in a selector
+        private final Selector selector;
+        long timeoutMillis;
+
+        Connection(SocketChannel channel, boolean timed) throws IOException {
+            this.channel = channel;
+            if (timed) {
+                try {
+                    channel.configureBlocking(false);
+                    this.selector = Selector.open();
+                    channel.register(selector, 0);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+            } else {
+                this.selector = null;
+            }
+            this.in = new BufferedInputStream(new ChannelInput(this), 16 * 1024);
+            this.out = new ChannelOutput(this);
+        }
+
+        // non-blocking channels only: wait until the operation can make progress
+        void await(int op) throws IOException {
+            SelectionKey key = channel.keyFor(selector);
+            key.interestOps(op);
+            selector.selectedKeys().clear();
+
+            if (selector.select(timeoutMillis) == 0) {
+                throw new SocketTimeoutException("No response from engine in " + timeoutMillis + " ms");
+            }
+        }
+
+        void send(String method, String path, byte[] payload, boolean upgrade) throws IOException {
+            StringBuilder head = new StringBuilder()
+                    .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: docker\r\n");
+
+            if (upgrade) {
+                head.append("Connection: Upgrade\r\nUpgrade: tcp\r\n");
+            }
+            if (payload.length > 0) {
+                head.append("Content-Type: application/json\r\n");
+            }
+            head.append("Content-Length: ").append(payload.length).append("\r\n\r\n");
+
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+            byte[] request = Arrays.copyOf(headBytes, headBytes.length + payload.length);
+            System.arraycopy(payload, 0, request, headBytes.length, payload.length);
+
+            out.write(request);
+        }
+
+        Response readResponse() throws IOException {
+            return readBody(readHead());
+        }
+
+        Response readHead() throws IOException {
+            String statusLine = readLine();
+            if (statusLine == null) {
+                throw new EOFException("Connection closed by engine");
+            }
+
+            String[] parts = statusLine.split(" ", 3);
+            int status = Integer.parseInt(parts[1]);
+
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                            line.substring(colon + 1).trim());
+                }
+            }
+
+            boolean keepAlive = !"close".equalsIgnoreCase(headers.get("connection"));
+            return new Response(status, headers, new byte[0], keepAlive);
+        }
+
+        Response readBody(Response head) throws IOException {
+            Map<String, String> headers = head.headers();
+
+            if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                while (true) {
+                    String sizeLine = readLine();
+                    if (sizeLine == null) throw new EOFException("Truncated chunked body");
+                    int size = Integer.parseInt(sizeLine.split(";", 2)[0].trim(), 16);
+                    if (size == 0) {
+                        // trailers until the empty line
+                        String trailer;
+                        while ((trailer = readLine()) != null && !trailer.isEmpty()) { }
+                        break;
+                    }
+                    body.write(in.readNBytes(size));
+                    readLine();
+                }
+                return new Response(head.status(), headers, body.toByteArray(), head.keepAlive());
+            }
+
+            String length = headers.get("content-length");
+            if (length != null) {
+                byte[] body = in.readNBytes(Integer.parseInt(length));
+                return new Response(head.status(), headers, body, head.keepAlive());
+            }
+
+            if (head.status() == 204 || head.status() == 304) {
+                return head;
+            }
+
+            // no framing: body runs to EOF and the connection is spent
+            return new Response(head.status(), headers, in.readAllBytes(), false);
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    int len = bytes.length > 0 && bytes[bytes.length - 1] == '\r'
+                            ? bytes.length - 1
+                            : bytes.length;
+                    return new String(bytes, 0, len, StandardCharsets.US_ASCII);
+                }
+                line.write(b);
+            }
+            return line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // direct channel streams: reads and writes lock independently, so stdin can be written while output is read
+    private static final class ChannelInput extends InputStream {
+        private final Connection connection;
+
+        ChannelInput(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+
+            ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+            int n;
+            while ((n = connection.channel.read(buf)) == 0) {
+                connection.await(SelectionKey.OP_READ);
+            }
+            return n;
+        }
+    }
+
+    private static final class ChannelOutput extends OutputStream {
+        private final Connection connection;
+
+        ChannelOutput(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+            while (buf.hasRemaining()) {
+                if (connection.channel.write(buf) == 0) {
+                    connection.await(SelectionKey.OP_WRITE);
+                }
+            }
+        }
+    }
+}
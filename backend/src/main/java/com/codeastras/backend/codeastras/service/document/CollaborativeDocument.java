@@ -0,0 +1,253 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.exception.ValidationException;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Server-authoritative state of one file while it is hot.
+ *
+ * Every accepted operation bumps {@code revision} by one and is kept in a
+ * bounded history, so an operation based on an older revision can be
+ * transformed over whatever landed in between. The text lives in a piece
+ * table; the flat string is only built when someone reads it.
+ *
+ * Callers that broadcast what was applied pass a listener: it runs under
+ * the document's monitor, so listeners see operations in revision order.
+ *
+ * Eviction closes the instance under the same monitor; edits of a closed
+ * instance fail with {@link ClosedException} and must go to a reopened one.
+ */
+public class CollaborativeDocument {
+
+    private final UUID fileId;
+    private final UUID projectId;
+    private final String path;
+    private final Instant createdAt;
+    private final int maxHistory;
+
+    private final PieceTable buffer;
+    private long revision;
+    private long persistedRevision;
+    private Instant updatedAt;
+
+    // history.peekFirst() produced revision (revision - history.size() + 1)
+    private final Deque<TextOperation> history = new ArrayDeque<>();
+
+    private volatile Instant lastAccess = Instant.now();
+    private boolean closed;
+
+    public CollaborativeDocument(
+            ProjectFile file,
+            long initialRevision,
+            int maxHistory
+    ) {
+        this.fileId = file.getId();
+        this.projectId = file.getProjectId();
+        this.path = file.getPath();
+        this.createdAt = file.getCreatedAt();
+        this.updatedAt = file.getUpdatedAt();
+        this.buffer = new PieceTable(file.getContent());
+        this.revision = initialRevision;
+        this.persistedRevision = initialRevision;
+        this.maxHistory = maxHistory;
+    }
+
+    public record Applied(TextOperation operation, long revision) {}
+
+    public record Snapshot(String content, long revision) {}
+
+    /**
+     * The instance was evicted; its edits would never be saved.
+     */
+    public static class ClosedException extends RuntimeException {
+        ClosedException(String path) {
+            super("Document closed: " + path);
+        }
+    }
+
+    /**
+     * Transforms {@code op} from {@code baseRevision} up to the current revision,
+     * applies it and records it.
+     *
+     * @throws IllegalStateException if the base revision is no longer in history
+     * @throws IllegalArgumentException if the operation does not fit the document
+     * @throws ValidationException if the result would grow past {@code maxLength}
+     * @throws ClosedException if the document was evicted
+     */
+    public synchronized Applied apply(long baseRevision, TextOperation op, int maxLength) {
+        return apply(baseRevision, op, maxLength, applied -> {});
+    }
+
+    /**
+     * Same as {@link #apply(long, TextOperation, int)}; {@code onApplied} runs
+     * before the next operation can be applied.
+     */
+    public synchronized Applied apply(
+            long baseRevision,
+            TextOperation op,
+            int maxLength,
+            Consumer<Applied> onApplied
+    ) {
+
+        lastAccess = Instant.now();
+        ensureOpen();
+
+        if (baseRevision > revision) {
+            throw new IllegalStateException("Unknown revision " + baseRevision);
+        }
+
+        long behind = revision - baseRevision;
+        if (behind > history.size()) {
+            throw new IllegalStateException("Revision " + baseRevision + " is too old");
+        }
+
+        TextOperation transformed = op;
+        if (behind > 0) {
+            Iterator<TextOperation> it = history.iterator();
+            long skip = history.size() - behind;
+            for (long i = 0; i < skip; i++) it.next();
+            while (it.hasNext()) {
+                transformed = TextOperation.transform(transformed, it.next())[0];
+            }
+        }
+
+        if (transformed.getTargetLength() > maxLength) {
+            throw new ValidationException("Content too large");
+        }
+
+        buffer.apply(transformed);
+        record(transformed);
+
+        Applied applied = new Applied(transformed, revision);
+        onApplied.accept(applied);
+        return applied;
+    }
+
+    /**
+     * Full-content replacement (legacy edit / REST save). Folded into the
+     * history as a minimal diff so delta clients can still transform against it.
+     *
+     * @return the applied diff, or null when nothing changed
+     * @throws ClosedException if the document was evicted
+     */
+    public synchronized Applied replace(String newContent) {
+        return replace(newContent, applied -> {});
+    }
+
+    /**
+     * Same as {@link #replace(String)}; {@code onApplied} runs, only when
+     * something changed, before the next operation can be applied.
+     */
+    public synchronized Applied replace(String newContent, Consumer<Applied> onApplied) {
+        lastAccess = Instant.now();
+        ensureOpen();
+        return diffInto(newContent, onApplied);
+    }
+
+    private Applied diffInto(String newContent, Consumer<Applied> onApplied) {
+        TextOperation diff = TextOperation.diff(buffer.toString(), newContent);
+        if (diff.isNoop()) {
+            return null;
+        }
+
+        buffer.apply(diff);
+        record(diff);
+
+        Applied applied = new Applied(diff, revision);
+        onApplied.accept(applied);
+        return applied;
+    }
+
+    /**
+     * Puts back {@code storedContent}, what the DB holds, as a new revision
+     * and marks the document clean. For pending edits that must not be saved.
+     *
+     * @return the revision the document is clean at
+     */
+    public synchronized long revert(String storedContent, Consumer<Applied> onApplied) {
+        // a closed instance is clean already and no longer served
+        if (!closed) {
+            diffInto(storedContent, onApplied);
+        }
+        persistedRevision = revision;
+        return revision;
+    }
+
+    public synchronized Snapshot snapshot() {
+        lastAccess = Instant.now();
+        return new Snapshot(buffer.toString(), revision);
+    }
+
+    /**
+     * Detached entity view for readers that expect a {@link ProjectFile}.
+     */
+    public synchronized ProjectFile toProjectFile() {
+        lastAccess = Instant.now();
+
+        ProjectFile file = new ProjectFile(fileId, projectId, path, buffer.toString(), "FILE");
+        file.setCreatedAt(createdAt);
+        file.setUpdatedAt(updatedAt);
+        return file;
+    }
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Called after the content at {@code savedRevision} reached the DB.
+     */
+    public synchronized void markPersisted(long savedRevision) {
+        if (savedRevision > persistedRevision) {
+            persistedRevision = savedRevision;
+        }
+    }
+
+    public synchronized boolean isDirty() {
+        return persistedRevision < revision;
+    }
+
+    /**
+     * Closes the document if nobody touched it since {@code cutoff} and
+     * everything is persisted; checked and closed under the monitor, so no
+     * edit can land in between.
+     */
+    synchronized boolean closeIfIdle(Instant cutoff) {
+        if (lastAccess.isBefore(cutoff) && !isDirty()) {
+            closed = true;
+        }
+        return closed;
+    }
+
+    public UUID getProjectId() {
+        return projectId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Instant getLastAccess() {
+        return lastAccess;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new ClosedException(path);
+    }
+
+    private void record(TextOperation op) {
+        revision++;
+        updatedAt = Instant.now();
+        history.addLast(op);
+        while (history.size() > maxHistory) {
+            history.pollFirst();
+        }
+    }
+}
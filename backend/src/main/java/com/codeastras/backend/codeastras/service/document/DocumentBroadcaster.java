@@ -0,0 +1,41 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import com.codeastras.backend.codeastras.dto.execution.CodeOperationMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Fans accepted operations out to every delta client of a project.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * @param userId author of the operation, null for server-made ones
+     */
+    public void publish(
+            UUID projectId,
+            UUID userId,
+            String path,
+            CollaborativeDocument.Applied applied,
+            String clientOpId
+    ) {
+        messagingTemplate.convertAndSend(
+                "/topic/projects/" + projectId + "/code/ops",
+                new CodeOperationMessage(
+                        projectId.toString(),
+                        userId != null ? userId.toString() : null,
+                        path,
+                        applied.revision(),
+                        applied.operation().toWire(),
+                        clientOpId
+                )
+        );
+    }
+}
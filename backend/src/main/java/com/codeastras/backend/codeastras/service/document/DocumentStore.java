@@ -0,0 +1,136 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.exception.ResourceNotFoundException;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Live documents of files that are currently hot.
+ * Loaded from the DB on first use, dropped again once idle AND persisted,
+ * so unsaved edits can never be lost to eviction.
+ */
+@Component
+@RequiredArgsConstructor
+public class DocumentStore {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(DocumentStore.class);
+
+    private final ProjectFileRepository fileRepo;
+
+    @Value("${code.editor.history-size:200}")
+    private int historySize;
+
+    @Value("${code.editor.document-idle-seconds:600}")
+    private long idleSeconds;
+
+    private final Map<DocumentKey, CollaborativeDocument> documents =
+            new ConcurrentHashMap<>();
+
+    // revisions of a reloaded document must never collide with ones handed out before eviction
+    private final AtomicLong revisionEpoch = new AtomicLong();
+
+    public record DocumentKey(UUID projectId, String path) {}
+
+    /**
+     * @param safePath already sanitized path
+     */
+    public CollaborativeDocument open(UUID projectId, String safePath) {
+
+        DocumentKey key = new DocumentKey(projectId, safePath);
+
+        CollaborativeDocument doc = documents.get(key);
+        if (doc != null) return doc;
+
+        // load outside the map so a slow query never blocks other keys
+        ProjectFile file = fileRepo.findByProjectIdAndPath(projectId, safePath);
+
+        if (file == null) {
+            throw new ResourceNotFoundException("File not found: " + safePath);
+        }
+        return open(file);
+    }
+
+    /**
+     * Makes an already loaded row hot (or returns the live document if it won the race).
+     */
+    public CollaborativeDocument open(ProjectFile file) {
+
+        if (!"FILE".equalsIgnoreCase(file.getType())) {
+            throw new ResourceNotFoundException("File not found: " + file.getPath());
+        }
+
+        DocumentKey key = new DocumentKey(file.getProjectId(), file.getPath());
+
+        CollaborativeDocument loaded = new CollaborativeDocument(
+                file,
+                nextEpoch(),
+                historySize
+        );
+
+        CollaborativeDocument raced = documents.putIfAbsent(key, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    public record Edited(CollaborativeDocument document, CollaborativeDocument.Applied applied) {}
+
+    /**
+     * Runs {@code change} against the live document. An instance evicted
+     * between lookup and edit is closed, so the edit is retried on a freshly
+     * loaded one instead of landing where it would never be saved.
+     */
+    public Edited edit(
+            UUID projectId,
+            String safePath,
+            Function<CollaborativeDocument, CollaborativeDocument.Applied> change
+    ) {
+        DocumentKey key = new DocumentKey(projectId, safePath);
+
+        while (true) {
+            CollaborativeDocument doc = open(projectId, safePath);
+            try {
+                return new Edited(doc, change.apply(doc));
+            } catch (CollaborativeDocument.ClosedException evicted) {
+                documents.remove(key, doc);
+            }
+        }
+    }
+
+    public Optional<CollaborativeDocument> find(UUID projectId, String safePath) {
+        return Optional.ofNullable(documents.get(new DocumentKey(projectId, safePath)));
+    }
+
+    private long nextEpoch() {
+        long now = System.currentTimeMillis() * 1000;
+        return revisionEpoch.updateAndGet(prev -> Math.max(now, prev + 1));
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+
+        Instant cutoff = Instant.now().minusSeconds(idleSeconds);
+
+        // closed under the document's monitor, so a concurrent edit either lands first or reopens
+        documents.entrySet().removeIf(e -> {
+            boolean idle = e.getValue().closeIfIdle(cutoff);
+            if (idle) {
+                log.debug("Evicting idle document {}", e.getKey());
+            }
+            return idle;
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Piece table text buffer.
+ *
+ * Edits only touch the piece list and append to the add buffer, so a
+ * keystroke costs O(pieces) instead of copying the whole file. The flat
+ * string is built lazily and cached until the next edit.
+ */
+class PieceTable {
+
+    // compact once the piece list gets long enough to slow down lookups
+    private static final int MAX_PIECES = 512;
+
+    private record Piece(boolean added, int start, int length) {}
+
+    private String original;
+    private final StringBuilder added = new StringBuilder();
+    private final List<Piece> pieces = new ArrayList<>();
+
+    private int length;
+    private String cached;
+
+    PieceTable(String text) {
+        reset(text == null ? "" : text);
+    }
+
+    int length() {
+        return length;
+    }
+
+    int pieceCount() {
+        return pieces.size();
+    }
+
+    void apply(TextOperation op) {
+
+        if (op.getBaseLength() != length) {
+            throw new IllegalArgumentException(
+                    "Operation base length " + op.getBaseLength()
+                            + " does not match document length " + length
+            );
+        }
+
+        int pos = 0;
+        for (Object c : op.components()) {
+            if (c instanceof String s) {
+                insert(pos, s);
+                pos += s.length();
+            } else {
+                int n = (Integer) c;
+                if (n > 0) pos += n;
+                else delete(pos, -n);
+            }
+        }
+
+        if (pieces.size() > MAX_PIECES) {
+            reset(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (cached == null) {
+            StringBuilder sb = new StringBuilder(length);
+            for (Piece p : pieces) {
+                if (p.added()) {
+                    sb.append(added, p.start(), p.start() + p.length());
+                } else {
+                    sb.append(original, p.start(), p.start() + p.length());
+                }
+            }
+            cached = sb.toString();
+        }
+        return cached;
+    }
+
+    // ================= INTERNAL =================
+
+    private void reset(String text) {
+        original = text;
+        added.setLength(0);
+        pieces.clear();
+        if (!text.isEmpty()) {
+            pieces.add(new Piece(false, 0, text.length()));
+        }
+        length = text.length();
+        cached = text;
+    }
+
+    private void insert(int pos, String text) {
+
+        int addStart = added.length();
+        added.append(text);
+        Piece inserted = new Piece(true, addStart, text.length());
+
+        int idx = 0;
+        int offset = pos;
+        while (idx < pieces.size() && offset > pieces.get(idx).length()) {
+            offset -= pieces.get(idx).length();
+            idx++;
+        }
+
+        if (idx == pieces.size()) {
+            pieces.add(inserted);
+        } else {
+            Piece p = pieces.get(idx);
+            if (offset == 0) {
+                pieces.add(idx, inserted);
+            } else if (offset == p.length()) {
+                // typing at the end of the previous insert just grows that piece
+                if (p.added() && p.start() + p.length() == addStart) {
+                    pieces.set(idx, new Piece(true, p.start(), p.length() + text.length()));
+                } else {
+                    pieces.add(idx + 1, inserted);
+                }
+            } else {
+                pieces.set(idx, new Piece(p.added(), p.start(), offset));
+                pieces.add(idx + 1, inserted);
+                pieces.add(idx + 2, new Piece(p.added(), p.start() + offset, p.length() - offset));
+            }
+        }
+
+        length += text.length();
+        cached = null;
+    }
+
+    private void delete(int pos, int count) {
+
+        int idx = 0;
+        int offset = pos;
+        while (idx < pieces.size() && offset >= pieces.get(idx).length()) {
+            offset -= pieces.get(idx).length();
+            idx++;
+        }
+
+        int remaining = count;
+        while (remaining > 0) {
+            Piece p = pieces.get(idx);
+
+            if (offset == 0) {
+                if (remaining >= p.length()) {
+                    pieces.remove(idx);
+                    remaining -= p.length();
+                } else {
+                    pieces.set(idx, new Piece(p.added(), p.start() + remaining, p.length() - remaining));
+                    remaining = 0;
+                }
+                continue;
+            }
+
+            int tail = p.length() - offset;
+            if (remaining >= tail) {
+                pieces.set(idx, new Piece(p.added(), p.start(), offset));
+                remaining -= tail;
+                idx++;
+                offset = 0;
+            } else {
+                pieces.set(idx, new Piece(p.added(), p.start(), offset));
+                pieces.add(idx + 1, new Piece(p.added(), p.start() + offset + remaining, tail - remaining));
+                remaining = 0;
+            }
+        }
+
+        length -= count;
+        cached = null;
+    }
+}
@@ -0,0 +1,436 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Delta edit over a plain-text document.
+ *
+ * Wire format (same as ot.js):
+ *   positive int  -> retain n chars
+ *   string        -> insert text
+ *   negative int  -> delete n chars
+ *
+ * Lengths are UTF-16 code units, so they line up with JS editors.
+ */
+public final class TextOperation {
+
+    private final List<Object> ops = new ArrayList<>();
+
+    private int baseLength;
+    private int targetLength;
+
+    // ================= BUILDERS =================
+
+    public TextOperation retain(int n) {
+        if (n < 0) throw new IllegalArgumentException("retain expects a positive length");
+        if (n == 0) return this;
+
+        baseLength += n;
+        targetLength += n;
+
+        Object last = last();
+        if (isRetain(last)) {
+            ops.set(ops.size() - 1, (Integer) last + n);
+        } else {
+            ops.add(n);
+        }
+        return this;
+    }
+
+    public TextOperation insert(String text) {
+        if (text == null || text.isEmpty()) return this;
+
+        targetLength += text.length();
+
+        Object last = last();
+        if (isInsert(last)) {
+            ops.set(ops.size() - 1, last + text);
+        } else if (isDelete(last)) {
+            // keep inserts before deletes so equal ops have one canonical form
+            Object beforeLast = ops.size() > 1 ? ops.get(ops.size() - 2) : null;
+            if (isInsert(beforeLast)) {
+                ops.set(ops.size() - 2, beforeLast + text);
+            } else {
+                ops.add(ops.size() - 1, text);
+            }
+        } else {
+            ops.add(text);
+        }
+        return this;
+    }
+
+    public TextOperation delete(int n) {
+        if (n < 0) n = -n;
+        if (n == 0) return this;
+
+        baseLength += n;
+
+        Object last = last();
+        if (isDelete(last)) {
+            ops.set(ops.size() - 1, (Integer) last - n);
+        } else {
+            ops.add(-n);
+        }
+        return this;
+    }
+
+    // ================= WIRE FORMAT =================
+
+    public static TextOperation fromWire(List<?> wire) {
+        if (wire == null) {
+            throw new IllegalArgumentException("Operation must not be null");
+        }
+
+        TextOperation op = new TextOperation();
+        for (Object c : wire) {
+            if (c instanceof String s) {
+                op.insert(s);
+            } else if (c instanceof Number n) {
+                int v = n.intValue();
+                if (v > 0) op.retain(v);
+                else if (v < 0) op.delete(v);
+                else throw new IllegalArgumentException("Zero-length component");
+            } else {
+                throw new IllegalArgumentException("Invalid operation component: " + c);
+            }
+        }
+        return op;
+    }
+
+    public List<Object> toWire() {
+        return Collections.unmodifiableList(new ArrayList<>(ops));
+    }
+
+    // read-only view for buffers in this package
+    List<Object> components() {
+        return Collections.unmodifiableList(ops);
+    }
+
+    /**
+     * Smallest single-hunk operation that turns {@code from} into {@code to}.
+     * Used to fold legacy full-content edits into the revision history.
+     */
+    public static TextOperation diff(String from, String to) {
+        String a = from == null ? "" : from;
+        String b = to == null ? "" : to;
+
+        int prefix = 0;
+        int max = Math.min(a.length(), b.length());
+        while (prefix < max && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < max - prefix
+                && a.charAt(a.length() - 1 - suffix) == b.charAt(b.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        return new TextOperation()
+                .retain(prefix)
+                .delete(a.length() - prefix - suffix)
+                .insert(b.substring(prefix, b.length() - suffix))
+                .retain(suffix);
+    }
+
+    // ================= APPLY =================
+
+    public String apply(String doc) {
+        String source = doc == null ? "" : doc;
+
+        if (source.length() != baseLength) {
+            throw new IllegalArgumentException(
+                    "Operation base length " + baseLength
+                            + " does not match document length " + source.length()
+            );
+        }
+
+        StringBuilder out = new StringBuilder(targetLength);
+        int index = 0;
+
+        for (Object op : ops) {
+            if (isRetain(op)) {
+                int n = (Integer) op;
+                out.append(source, index, index + n);
+                index += n;
+            } else if (isInsert(op)) {
+                out.append((String) op);
+            } else {
+                index -= (Integer) op;
+            }
+        }
+
+        return out.toString();
+    }
+
+    // ================= TRANSFORM =================
+
+    /**
+     * Transforms two concurrent operations over the same base.
+     *
+     * @return [a', b'] such that apply(apply(S, a), b') == apply(apply(S, b), a')
+     */
+    public static TextOperation[] transform(TextOperation a, TextOperation b) {
+
+        if (a.baseLength != b.baseLength) {
+            throw new IllegalArgumentException("Both operations must share the same base length");
+        }
+
+        TextOperation aPrime = new TextOperation();
+        TextOperation bPrime = new TextOperation();
+
+        List<Object> ops1 = a.ops;
+        List<Object> ops2 = b.ops;
+        int i1 = 0;
+        int i2 = 0;
+        Object op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+        Object op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+
+        while (op1 != null || op2 != null) {
+
+            // inserts on either side go straight through; a wins ties
+            if (isInsert(op1)) {
+                aPrime.insert((String) op1);
+                bPrime.retain(((String) op1).length());
+                op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                continue;
+            }
+            if (isInsert(op2)) {
+                aPrime.retain(((String) op2).length());
+                bPrime.insert((String) op2);
+                op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                continue;
+            }
+
+            if (op1 == null || op2 == null) {
+                throw new IllegalArgumentException("Operations have incompatible lengths");
+            }
+
+            int v1 = (Integer) op1;
+            int v2 = (Integer) op2;
+            int min;
+
+            if (v1 > 0 && v2 > 0) {
+                // retain / retain
+                if (v1 > v2) {
+                    min = v2;
+                    op1 = v1 - v2;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (v1 == v2) {
+                    min = v2;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    min = v1;
+                    op2 = v2 - v1;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+                aPrime.retain(min);
+                bPrime.retain(min);
+
+            } else if (v1 < 0 && v2 < 0) {
+                // delete / delete: both already removed the overlap
+                if (-v1 > -v2) {
+                    op1 = v1 - v2;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (v1 == v2) {
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    op2 = v2 - v1;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+
+            } else if (v1 < 0) {
+                // delete / retain
+                if (-v1 > v2) {
+                    min = v2;
+                    op1 = v1 + v2;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (-v1 == v2) {
+                    min = v2;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    min = -v1;
+                    op2 = v2 + v1;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+                aPrime.delete(min);
+
+            } else {
+                // retain / delete
+                if (v1 > -v2) {
+                    min = -v2;
+                    op1 = v1 + v2;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (v1 == -v2) {
+                    min = v1;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    min = v1;
+                    op2 = v2 + v1;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+                bPrime.delete(min);
+            }
+        }
+
+        return new TextOperation[]{aPrime, bPrime};
+    }
+
+    // ================= COMPOSE =================
+
+    /**
+     * One operation with the effect of this one followed by {@code next}.
+     *
+     * @return c such that apply(S, c) == apply(apply(S, this), next)
+     */
+    public TextOperation compose(TextOperation next) {
+
+        if (targetLength != next.baseLength) {
+            throw new IllegalArgumentException("The second operation must start where the first one ends");
+        }
+
+        TextOperation out = new TextOperation();
+
+        List<Object> ops1 = ops;
+        List<Object> ops2 = next.ops;
+        int i1 = 0;
+        int i2 = 0;
+        Object op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+        Object op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+
+        while (op1 != null || op2 != null) {
+
+            // what the first deletes the second never sees; what the second inserts the first never had
+            if (isDelete(op1)) {
+                out.delete((Integer) op1);
+                op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                continue;
+            }
+            if (isInsert(op2)) {
+                out.insert((String) op2);
+                op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                continue;
+            }
+
+            if (op1 == null || op2 == null) {
+                throw new IllegalArgumentException("Operations have incompatible lengths");
+            }
+
+            if (isRetain(op1) && isRetain(op2)) {
+                int v1 = (Integer) op1;
+                int v2 = (Integer) op2;
+                out.retain(Math.min(v1, v2));
+                if (v1 > v2) {
+                    op1 = v1 - v2;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (v1 == v2) {
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    op2 = v2 - v1;
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+
+            } else if (isInsert(op1) && isDelete(op2)) {
+                // inserted, then deleted again: neither survives
+                String s = (String) op1;
+                int d = -(Integer) op2;
+                if (s.length() > d) {
+                    op1 = s.substring(d);
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (s.length() == d) {
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    op2 = -(d - s.length());
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+
+            } else if (isInsert(op1)) {
+                // insert / retain
+                String s = (String) op1;
+                int r = (Integer) op2;
+                if (s.length() > r) {
+                    out.insert(s.substring(0, r));
+                    op1 = s.substring(r);
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (s.length() == r) {
+                    out.insert(s);
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    out.insert(s);
+                    op2 = r - s.length();
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+
+            } else {
+                // retain / delete
+                int r = (Integer) op1;
+                int d = -(Integer) op2;
+                out.delete(Math.min(r, d));
+                if (r > d) {
+                    op1 = r - d;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else if (r == d) {
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                    op2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                } else {
+                    op2 = -(d - r);
+                    op1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                }
+            }
+        }
+
+        return out;
+    }
+
+    // ================= INSPECTION =================
+
+    public boolean isNoop() {
+        return ops.isEmpty() || (ops.size() == 1 && isRetain(ops.get(0)));
+    }
+
+    public int getBaseLength() {
+        return baseLength;
+    }
+
+    public int getTargetLength() {
+        return targetLength;
+    }
+
+    /**
+     * Number of inserted chars — what the wire payload actually scales with.
+     */
+    public int insertedLength() {
+        int n = 0;
+        for (Object op : ops) {
+            if (isInsert(op)) n += ((String) op).length();
+        }
+        return n;
+    }
+
+    // ================= INTERNAL =================
+
+    private Object last() {
+        return ops.isEmpty() ? null : ops.get(ops.size() - 1);
+    }
+
+    private static boolean isRetain(Object op) {
+        return op instanceof Integer i && i > 0;
+    }
+
+    private static boolean isInsert(Object op) {
+        return op instanceof String;
+    }
+
+    private static boolean isDelete(Object op) {
+        return op instanceof Integer i && i < 0;
+    }
+}
@@ -1,12 +1,21 @@
 package com.codeastras.backend.codeastras.service.execution;
 
+import com.codeastras.backend.codeastras.dto.execution.CodeDocumentSnapshot;
 import com.codeastras.backend.codeastras.dto.execution.CodeEditMessage;
+import com.codeastras.backend.codeastras.dto.execution.CodeOperationMessage;
 import com.codeastras.backend.codeastras.dto.project.ProjectErrorMessage;
 import com.codeastras.backend.codeastras.exception.ForbiddenException;
+import com.codeastras.backend.codeastras.exception.ResourceNotFoundException;
+import com.codeastras.backend.codeastras.exception.ValidationException;
 import com.codeastras.backend.codeastras.security.ProjectAccessManager;
 import com.codeastras.backend.codeastras.security.ProjectPermission;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.DocumentBroadcaster;
+import com.codeastras.backend.codeastras.service.document.DocumentStore;
+import com.codeastras.backend.codeastras.service.document.TextOperation;
 import com.codeastras.backend.codeastras.service.file.DebouncedFileSaveManager;
 import com.codeastras.backend.codeastras.service.file.FileSyncService;
+import com.codeastras.backend.codeastras.store.SessionRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
@@ -23,55 +32,156 @@ public class CodeEditingService {
     private final FileSyncService fileSyncService;
     private final SimpMessagingTemplate messagingTemplate;
     private final ProjectAccessManager accessManager;
+    private final DocumentStore documentStore;
+    private final DocumentBroadcaster documentBroadcaster;
+    private final SessionRegistry sessionRegistry;
 
-    // MAIN ENTRY
+    // MAIN ENTRY (LEGACY FULL-CONTENT EDIT)
     public void handleEdit(UUID projectId, CodeEditMessage msg, UUID userId) {
 
         // 🔐 AUTHORIZATION
+        if (!authorize(projectId, userId, ProjectPermission.UPDATE_FILE)) return;
+
+        // PATH VALIDATION
+        final String path = sanitize(projectId, msg.getPath());
+        if (path == null) return;
+
+        // PAYLOAD VALIDATION
+        String content = msg.getContent();
+        if (content != null && content.length() > MAX_CONTENT_SIZE) {
+            publishError(projectId, "payload_too_large", "Content too large");
+            return;
+        }
+
+        // Keep the live document in step so delta clients can transform against it
+        CollaborativeDocument doc;
+        CollaborativeDocument.Applied applied;
         try {
-            accessManager.require(
-                    projectId,
-                    userId,
-                    ProjectPermission.UPDATE_FILE
-            );
-        } catch (ForbiddenException e) {
-            publishError(projectId, "forbidden", "Not authorized");
+            // REAL-TIME BROADCAST, in revision order
+            DocumentStore.Edited edited = documentStore.edit(projectId, path, d -> d.replace(content, a -> {
+                messagingTemplate.convertAndSend(
+                        "/topic/projects/" + projectId + "/code",
+                        new CodeEditMessage(
+                                projectId.toString(),
+                                userId.toString(),
+                                path,
+                                content,
+                                null
+                        )
+                );
+                documentBroadcaster.publish(projectId, userId, path, a, null);
+            }));
+            doc = edited.document();
+            applied = edited.applied();
+        } catch (ResourceNotFoundException e) {
+            publishError(projectId, "not_found", e.getMessage());
             return;
         }
 
-        // PATH VALIDATION
-        final String path;
+        // ASYNC DURABLE SAVE (DB + FS + SESSION handled later)
+        debouncedFileSaveManager.scheduleSave(doc, applied, userId);
+        sessionRegistry.touch(projectId);
+    }
+
+    // DELTA EDIT
+    public void handleOperation(UUID projectId, CodeOperationMessage msg, UUID userId) {
+
+        if (!authorize(projectId, userId, ProjectPermission.UPDATE_FILE)) return;
+
+        final String path = sanitize(projectId, msg.getPath());
+        if (path == null) return;
+
+        TextOperation operation;
         try {
-            path = fileSyncService.sanitizeUserPath(msg.getPath());
-        } catch (IllegalArgumentException e) {
-            publishError(projectId, "invalid_path", e.getMessage());
+            operation = TextOperation.fromWire(msg.getOps());
+        } catch (IllegalArgumentException | ClassCastException e) {
+            publishError(projectId, "invalid_operation", e.getMessage());
             return;
         }
 
-        // PAYLOAD VALIDATION
-        String content = msg.getContent();
-        if (content != null && content.length() > MAX_CONTENT_SIZE) {
+        if (operation.insertedLength() > MAX_CONTENT_SIZE) {
             publishError(projectId, "payload_too_large", "Content too large");
             return;
         }
 
-        // ASYNC DURABLE SAVE (DB + FS + SESSION handled later)
-        debouncedFileSaveManager.scheduleSave(
-                projectId,
-                path,
-                content,
-                userId
-        );
+        CollaborativeDocument doc;
+        CollaborativeDocument.Applied applied;
+        try {
+            // published under the document's monitor, so ops go out in revision order
+            DocumentStore.Edited edited = documentStore.edit(projectId, path, d ->
+                    d.apply(msg.getRevision(), operation, MAX_CONTENT_SIZE, a ->
+                            documentBroadcaster.publish(projectId, userId, path, a, msg.getClientOpId())));
+            doc = edited.document();
+            applied = edited.applied();
+        } catch (ResourceNotFoundException e) {
+            publishError(projectId, "not_found", e.getMessage());
+            return;
+        } catch (ValidationException e) {
+            publishError(projectId, "payload_too_large", e.getMessage());
+            return;
+        } catch (IllegalStateException e) {
+            // base revision fell out of history → client must reload
+            publishError(projectId, "resync_required", e.getMessage());
+            sendSnapshot(projectId, path, userId);
+            return;
+        } catch (IllegalArgumentException e) {
+            publishError(projectId, "invalid_operation", e.getMessage());
+            sendSnapshot(projectId, path, userId);
+            return;
+        }
 
-        // REAL-TIME BROADCAST
-        messagingTemplate.convertAndSend(
-                "/topic/projects/" + projectId + "/code",
-                new CodeEditMessage(
+        debouncedFileSaveManager.scheduleSave(doc, applied, userId);
+        sessionRegistry.touch(projectId);
+    }
+
+    // SYNC (JOIN / RESYNC)
+    public void sync(UUID projectId, CodeEditMessage msg, UUID userId) {
+
+        if (!authorize(projectId, userId, ProjectPermission.READ_FILE)) return;
+
+        final String path = sanitize(projectId, msg.getPath());
+        if (path == null) return;
+
+        try {
+            sendSnapshot(projectId, path, userId);
+        } catch (ResourceNotFoundException e) {
+            publishError(projectId, "not_found", e.getMessage());
+        }
+    }
+
+    // INTERNAL
+
+    private boolean authorize(UUID projectId, UUID userId, ProjectPermission permission) {
+        try {
+            accessManager.require(projectId, userId, permission);
+            return true;
+        } catch (ForbiddenException e) {
+            publishError(projectId, "forbidden", "Not authorized");
+            return false;
+        }
+    }
+
+    private String sanitize(UUID projectId, String rawPath) {
+        try {
+            return fileSyncService.sanitizeUserPath(rawPath);
+        } catch (IllegalArgumentException e) {
+            publishError(projectId, "invalid_path", e.getMessage());
+            return null;
+        }
+    }
+
+    private void sendSnapshot(UUID projectId, String path, UUID userId) {
+        CollaborativeDocument.Snapshot snapshot =
+                documentStore.open(projectId, path).snapshot();
+
+        messagingTemplate.convertAndSendToUser(
+                userId.toString(),
+                "/queue/code-sync",
+                new CodeDocumentSnapshot(
                         projectId.toString(),
-                        userId.toString(),
                         path,
-                        content,
-                        null
+                        snapshot.revision(),
+                        snapshot.content()
                 )
         );
     }
@@ -3,16 +3,23 @@ package com.codeastras.backend.codeastras.service.execution;
 import com.codeastras.backend.codeastras.dto.execution.CommandResult;
 import com.codeastras.backend.codeastras.dto.execution.RunCodeBroadcastMessage;
 import com.codeastras.backend.codeastras.dto.execution.RunCodeRequestWS;
+import com.codeastras.backend.codeastras.dto.execution.RunStdinRequestWS;
 import com.codeastras.backend.codeastras.exception.ForbiddenException;
 import com.codeastras.backend.codeastras.security.ProjectAccessManager;
 import com.codeastras.backend.codeastras.security.ProjectPermission;
+import com.codeastras.backend.codeastras.service.container.ContainerProcess;
 import com.codeastras.backend.codeastras.service.session.SessionFacade;
 import com.codeastras.backend.codeastras.store.SessionRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +29,17 @@ public class CodeExecutionService {
     private final SessionFacade sessionFacade;
     private final SimpMessagingTemplate messagingTemplate;
     private final ProjectAccessManager accessManager;
+    private final ExecutionScheduler executionScheduler;
+
+    // stdin not yet written to an interactive run; input beyond this is refused
+    @Value("${code.runner.stdin.buffer-bytes:65536}")
+    private int stdinBufferBytes;
+
+    // input is null unless the run is interactive
+    private record ActiveRun(UUID projectId, String sessionId, RunInput input, RunCancellation cancellation) {}
+
+    // runs that have left the queue and not yet finished
+    private final Map<UUID, ActiveRun> activeRuns = new ConcurrentHashMap<>();
 
     public void run(UUID projectId, RunCodeRequestWS msg, UUID userId) {
 
@@ -33,13 +51,12 @@ public class CodeExecutionService {
                     ProjectPermission.EXECUTE_CODE
             );
         } catch (ForbiddenException e) {
-            send(projectId, new RunCodeBroadcastMessage(
-                    null,
-                    "RUN_ERROR",
-                    "Not authorized to execute code",
-                    -1,
-                    userId.toString()
-            ));
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .type("RUN_ERROR")
+                    .output("Not authorized to execute code")
+                    .exitCode(-1)
+                    .triggeredBy(userId.toString())
+                    .build());
             return;
         }
 
@@ -47,13 +64,12 @@ public class CodeExecutionService {
                 sessionFacade.getSessionByProject(projectId);
 
         if (session == null) {
-            send(projectId, new RunCodeBroadcastMessage(
-                    null,
-                    "RUN_ERROR",
-                    "No active session. Start session first.",
-                    -1,
-                    userId.toString()
-            ));
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .type("RUN_ERROR")
+                    .output("No active session. Start session first.")
+                    .exitCode(-1)
+                    .triggeredBy(userId.toString())
+                    .build());
             return;
         }
 
@@ -62,53 +78,203 @@ public class CodeExecutionService {
                         ? "main.py"
                         : msg.getFilename();
 
+        UUID runId = UUID.randomUUID();
+
+        // ⏳ Queue; Docker work happens on a scheduler worker, never on the inbound thread
+        try {
+            executionScheduler.submit(
+                    runId,
+                    projectId,
+                    userId,
+                    () -> execute(projectId, runId, filename, msg.getTimeoutSeconds(), msg.isInteractive(), userId),
+                    new ExecutionScheduler.RunListener() {
+                        @Override
+                        public void onQueued(int position) {
+                            send(projectId, RunCodeBroadcastMessage.builder()
+                                    .sessionId(session.getSessionId())
+                                    .type("RUN_QUEUED")
+                                    .triggeredBy(userId.toString())
+                                    .runId(runId)
+                                    .queuePosition(position)
+                                    .build());
+                        }
+
+                        @Override
+                        public void onCancelled() {
+                            send(projectId, RunCodeBroadcastMessage.builder()
+                                    .sessionId(session.getSessionId())
+                                    .type("RUN_CANCELLED")
+                                    .triggeredBy(userId.toString())
+                                    .runId(runId)
+                                    .build());
+                        }
+                    }
+            );
+        } catch (RejectedExecutionException e) {
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .sessionId(session.getSessionId())
+                    .type("RUN_ERROR")
+                    .output(e.getMessage())
+                    .exitCode(-1)
+                    .triggeredBy(userId.toString())
+                    .runId(runId)
+                    .build());
+        }
+    }
+
+    /**
+     * Cancels a queued run, or stops a running one: its processes are
+     * killed (in a runner container, the container is removed) and the run
+     * ends with RUN_CANCELLED instead of RUN_FINISHED.
+     *
+     * @return false if the run already finished or is unknown
+     */
+    public boolean cancel(UUID projectId, UUID runId, UUID userId) {
+        accessManager.require(
+                projectId,
+                userId,
+                ProjectPermission.EXECUTE_CODE
+        );
+
+        if (executionScheduler.cancel(projectId, runId)) {
+            return true;
+        }
+
+        ActiveRun run = activeRuns.get(runId);
+        if (run == null || !run.projectId().equals(projectId)) {
+            return false;
+        }
+        return run.cancellation().cancel();
+    }
+
+    /**
+     * Feeds an interactive run's stdin. Input for a run that has not
+     * started, has finished or is not interactive is ignored.
+     */
+    public void sendInput(UUID projectId, RunStdinRequestWS msg, UUID userId) {
+        accessManager.require(
+                projectId,
+                userId,
+                ProjectPermission.EXECUTE_CODE
+        );
+
+        ActiveRun run = activeRuns.get(msg.getRunId());
+        if (run == null || !run.projectId().equals(projectId) || run.input() == null) {
+            return;
+        }
+
+        String data = msg.getData();
+        if (data != null && !data.isEmpty()
+                && !run.input().offer(data.getBytes(StandardCharsets.UTF_8))) {
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .sessionId(run.sessionId())
+                    .type("RUN_INPUT_REJECTED")
+                    .output("Input not delivered: the program is not reading it")
+                    .triggeredBy(userId.toString())
+                    .runId(msg.getRunId())
+                    .build());
+        }
+
+        if (msg.isEof()) {
+            run.input().endOfInput();
+        }
+    }
+
+    private void execute(
+            UUID projectId,
+            UUID runId,
+            String filename,
+            int timeoutSeconds,
+            boolean interactive,
+            UUID userId
+    ) {
+        // the session may have been stopped while the run was queued
+        SessionRegistry.SessionInfo session =
+                sessionFacade.getSessionByProject(projectId);
+
+        if (session == null) {
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .type("RUN_ERROR")
+                    .output("No active session. Start session first.")
+                    .exitCode(-1)
+                    .triggeredBy(userId.toString())
+                    .runId(runId)
+                    .build());
+            return;
+        }
+
         // 🔥 RUN STARTED (single authoritative signal)
-        send(projectId, new RunCodeBroadcastMessage(
-                session.getSessionId(),
-                "RUN_STARTED",
-                null,
-                null,
-                userId.toString()
-        ));
+        send(projectId, RunCodeBroadcastMessage.builder()
+                .sessionId(session.getSessionId())
+                .type("RUN_STARTED")
+                .triggeredBy(userId.toString())
+                .runId(runId)
+                .build());
+
+        RunInput input = interactive ? new RunInput(stdinBufferBytes) : null;
+        RunCancellation cancellation = new RunCancellation();
+        activeRuns.put(runId, new ActiveRun(projectId, session.getSessionId(), input, cancellation));
 
         try {
             CommandResult result =
                     runCodeService.runPythonInSession(
                             session.getSessionId(),
                             filename,
-                            msg.getTimeoutSeconds(),
+                            timeoutSeconds,
                             userId,
-                            line -> send(
-                                    projectId,
-                                    new RunCodeBroadcastMessage(
-                                            session.getSessionId(),
-                                            "RUN_OUTPUT",
-                                            line,
-                                            null,
-                                            userId.toString()
-                                    )
-                            )
+                            input,
+                            cancellation,
+                            new RunOutputSink() {
+                                @Override
+                                public void onOutput(String notice) {
+                                    sendOutput(notice, null, null);
+                                }
+
+                                @Override
+                                public void onOutput(ContainerProcess.Stream stream, String output, boolean partial) {
+                                    sendOutput(output, stream == ContainerProcess.Stream.STDERR ? "stderr" : "stdout", partial);
+                                }
+
+                                private void sendOutput(String output, String stream, Boolean partial) {
+                                    send(projectId, RunCodeBroadcastMessage.builder()
+                                            .sessionId(session.getSessionId())
+                                            .type("RUN_OUTPUT")
+                                            .output(output)
+                                            .triggeredBy(userId.toString())
+                                            .runId(runId)
+                                            .stream(stream)
+                                            .partial(partial)
+                                            .build());
+                                }
+                            }
                     );
 
-            //  RUN FINISHED
-            send(projectId, new RunCodeBroadcastMessage(
-                    session.getSessionId(),
-                    "RUN_FINISHED",
-                    null,
-                    result.getExitCode(),
-                    userId.toString()
-            ));
+            //  RUN FINISHED (or cancelled while running)
+            boolean cancelled = cancellation.isCancelled();
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .sessionId(session.getSessionId())
+                    .type(cancelled ? "RUN_CANCELLED" : "RUN_FINISHED")
+                    .exitCode(cancelled ? null : result.getExitCode())
+                    .triggeredBy(userId.toString())
+                    .runId(runId)
+                    .usage(result.getUsage())
+                    .build());
 
         } catch (Exception ex) {
-            send(projectId, new RunCodeBroadcastMessage(
-                    session.getSessionId(),
-                    "RUN_ERROR",
-                    ex.getMessage() != null
-                            ? ex.getMessage()
-                            : "Execution failed",
-                    -1,
-                    userId.toString()
-            ));
+            boolean cancelled = cancellation.isCancelled();
+            send(projectId, RunCodeBroadcastMessage.builder()
+                    .sessionId(session.getSessionId())
+                    .type(cancelled ? "RUN_CANCELLED" : "RUN_ERROR")
+                    .output(cancelled ? null : ex.getMessage() != null ? ex.getMessage() : "Execution failed")
+                    .exitCode(cancelled ? null : -1)
+                    .triggeredBy(userId.toString())
+                    .runId(runId)
+                    .build());
+        } finally {
+            activeRuns.remove(runId);
+            if (input != null) {
+                input.close();
+            }
         }
     }
 
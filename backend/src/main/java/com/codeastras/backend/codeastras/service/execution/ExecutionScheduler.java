@@ -0,0 +1,442 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, fair queue in front of code execution.
+ *
+ * Runs are queued per project and, inside a project, per user. Dispatch is
+ * stride scheduling at both levels: every project has an equal share of the
+ * workers and splits it equally between its users, so one busy project (or
+ * one busy user) cannot starve the rest. A project runs one thing at a
+ * time; global concurrency defaults to the number of cores. Runs execute on
+ * virtual threads.
+ *
+ * Runs over the per-project rate limit are not refused: {@link RunRateLimiter}
+ * hands out a start time and the run waits in the queue until then.
+ */
+@Service
+public class ExecutionScheduler {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ExecutionScheduler.class);
+
+    private final RunRateLimiter runRateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService blockingExecutor;
+    private final Clock clock;
+
+    private int maxConcurrent;
+    private final int queueCapacity;
+    private final int maxQueuedPerProject;
+
+    @Autowired
+    public ExecutionScheduler(
+            RunRateLimiter runRateLimiter,
+            MeterRegistry meterRegistry,
+            ExecutorService blockingExecutor,
+            @Value("${code.execution.max-concurrent:0}") int maxConcurrent,
+            @Value("${code.execution.queue-capacity:200}") int queueCapacity,
+            @Value("${code.execution.max-queued-per-project:10}") int maxQueuedPerProject
+    ) {
+        this(runRateLimiter, meterRegistry, blockingExecutor, maxConcurrent, queueCapacity,
+                maxQueuedPerProject, Clock.systemUTC(), null);
+    }
+
+    // tests: a fixed clock, and a timer whose wake-ups they fire themselves
+    ExecutionScheduler(
+            RunRateLimiter runRateLimiter,
+            MeterRegistry meterRegistry,
+            ExecutorService blockingExecutor,
+            int maxConcurrent,
+            int queueCapacity,
+            int maxQueuedPerProject,
+            Clock clock,
+            ScheduledExecutorService timer
+    ) {
+        this.runRateLimiter = runRateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.blockingExecutor = blockingExecutor;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.maxQueuedPerProject = maxQueuedPerProject;
+        this.clock = clock;
+        this.timer = timer;
+    }
+
+    /**
+     * Callbacks for a queued run. Always invoked outside the scheduler lock.
+     */
+    public interface RunListener {
+        /** 1-based estimated position among runs still waiting */
+        void onQueued(int position);
+
+        void onCancelled();
+    }
+
+    private static final class Job {
+        final UUID runId;
+        final UUID projectId;
+        final UUID userId;
+        final Runnable task;
+        final RunListener listener;
+        final Instant notBefore;
+        final long queuedAt = System.nanoTime();
+        int lastPosition;
+
+        Job(UUID runId, UUID projectId, UUID userId, Runnable task, RunListener listener, Instant notBefore) {
+            this.runId = runId;
+            this.projectId = projectId;
+            this.userId = userId;
+            this.task = task;
+            this.listener = listener;
+            this.notBefore = notBefore;
+        }
+    }
+
+    private static final class UserQueue {
+        double pass;
+        final Deque<Job> jobs = new ArrayDeque<>();
+    }
+
+    private static final class ProjectQueue {
+        double pass;
+        double userClock;
+        boolean running;
+        int queued;
+        final Map<UUID, UserQueue> users = new LinkedHashMap<>();
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private final Map<UUID, ProjectQueue> projects = new HashMap<>();
+    private final Map<UUID, Job> byRunId = new HashMap<>();
+    private double virtualTime;
+    private int running;
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private ScheduledExecutorService timer;
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void start() {
+        if (maxConcurrent <= 0) {
+            maxConcurrent = Runtime.getRuntime().availableProcessors();
+        }
+
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "run-scheduler");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        Gauge.builder("codeastras.execution.queue.depth", depth, AtomicInteger::get)
+                .description("Runs waiting for a worker")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("codeastras.execution.queue.wait")
+                .description("Time from submit to start of a run")
+                .register(meterRegistry);
+
+        log.info("Execution scheduler: {} workers, queue capacity {}", maxConcurrent, queueCapacity);
+    }
+
+    // ================= API =================
+
+    /**
+     * Queues {@code task}; it runs on a worker thread, never on the caller's.
+     *
+     * @throws RejectedExecutionException when the global or per-project queue is full
+     */
+    public void submit(
+            UUID runId,
+            UUID projectId,
+            UUID userId,
+            Runnable task,
+            RunListener listener
+    ) {
+        lock.lock();
+        try {
+            ProjectQueue project = projects.get(projectId);
+
+            if (byRunId.size() >= queueCapacity) {
+                throw new RejectedExecutionException("Execution queue is full, try again shortly");
+            }
+            if (project != null && project.queued >= maxQueuedPerProject) {
+                throw new RejectedExecutionException("Too many runs queued for this project");
+            }
+
+            if (project == null) {
+                project = new ProjectQueue();
+                project.pass = virtualTime; // no credit for time spent idle
+                projects.put(projectId, project);
+            }
+
+            UserQueue user = project.users.get(userId);
+            if (user == null) {
+                user = new UserQueue();
+                user.pass = project.userClock;
+                project.users.put(userId, user);
+            }
+
+            Job job = new Job(runId, projectId, userId, task, listener,
+                    runRateLimiter.reserve(projectId));
+
+            user.jobs.addLast(job);
+            project.queued++;
+            byRunId.put(runId, job);
+            depth.incrementAndGet();
+
+        } finally {
+            lock.unlock();
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Removes a run that has not started yet.
+     *
+     * @return false if the run is unknown, already running or finished
+     */
+    public boolean cancel(UUID projectId, UUID runId) {
+        Job job;
+
+        lock.lock();
+        try {
+            job = byRunId.get(runId);
+            if (job == null || !job.projectId.equals(projectId)) {
+                return false;
+            }
+            remove(job);
+        } finally {
+            lock.unlock();
+        }
+
+        runRateLimiter.release(projectId, job.notBefore);
+        job.listener.onCancelled();
+        publishPositions();
+        return true;
+    }
+
+    public boolean isQueued(UUID runId) {
+        lock.lock();
+        try {
+            return byRunId.containsKey(runId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ================= DISPATCH =================
+
+    private void dispatch() {
+        Instant now = clock.instant();
+        Instant nextWakeUp = null;
+
+        lock.lock();
+        try {
+            while (running < maxConcurrent) {
+                Job job = pick(now);
+                if (job == null) break;
+
+                // mark busy first so remove() keeps the project's pass
+                projects.get(job.projectId).running = true;
+                remove(job);
+                running++;
+
+                waitTimer.record(System.nanoTime() - job.queuedAt, TimeUnit.NANOSECONDS);
+                // virtual thread per run; `running` is the concurrency bound
+                blockingExecutor.execute(() -> runJob(job));
+            }
+
+            // runs held back by the rate limiter
+            for (Job job : byRunId.values()) {
+                if (job.notBefore.isAfter(now)
+                        && (nextWakeUp == null || job.notBefore.isBefore(nextWakeUp))) {
+                    nextWakeUp = job.notBefore;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (nextWakeUp != null) {
+            long delay = Math.max(1, nextWakeUp.toEpochMilli() - now.toEpochMilli());
+            timer.schedule(this::dispatch, delay, TimeUnit.MILLISECONDS);
+        }
+
+        publishPositions();
+    }
+
+    // caller holds the lock
+    private Job pick(Instant now) {
+        ProjectQueue bestProject = null;
+        UserQueue bestUser = null;
+
+        for (ProjectQueue project : projects.values()) {
+            if (project.running) continue;
+            if (bestProject != null && project.pass >= bestProject.pass) continue;
+
+            UserQueue user = pickUser(project, now);
+            if (user != null) {
+                bestProject = project;
+                bestUser = user;
+            }
+        }
+
+        if (bestProject == null) return null;
+
+        virtualTime = bestProject.pass;
+        bestProject.pass += 1;
+        bestProject.userClock = bestUser.pass;
+        bestUser.pass += 1;
+
+        return bestUser.jobs.peekFirst();
+    }
+
+    // caller holds the lock
+    private UserQueue pickUser(ProjectQueue project, Instant now) {
+        UserQueue best = null;
+        for (UserQueue user : project.users.values()) {
+            Job head = user.jobs.peekFirst();
+            if (head == null || head.notBefore.isAfter(now)) continue;
+            if (best == null || user.pass < best.pass) best = user;
+        }
+        return best;
+    }
+
+    // caller holds the lock
+    private void remove(Job job) {
+        byRunId.remove(job.runId);
+        depth.decrementAndGet();
+
+        ProjectQueue project = projects.get(job.projectId);
+        UserQueue user = project.users.get(job.userId);
+
+        user.jobs.remove(job);
+        project.queued--;
+
+        if (user.jobs.isEmpty()) {
+            project.users.remove(job.userId);
+        }
+        if (project.queued == 0 && !project.running) {
+            projects.remove(job.projectId);
+        }
+    }
+
+    private void runJob(Job job) {
+        try {
+            job.task.run();
+        } catch (Exception e) {
+            log.error("Run {} failed", job.runId, e);
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                ProjectQueue project = projects.get(job.projectId);
+                if (project != null) {
+                    project.running = false;
+                    if (project.queued == 0) {
+                        projects.remove(job.projectId);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+        }
+    }
+
+    // ================= POSITIONS =================
+
+    /**
+     * Replays the stride order on copies of the queues (ignoring rate-limit
+     * holds and busy projects) and tells every run whose estimate moved.
+     */
+    private void publishPositions() {
+        List<Map.Entry<Job, Integer>> changed = new ArrayList<>();
+
+        lock.lock();
+        try {
+            Map<ProjectQueue, Double> projectPass = new HashMap<>();
+            Map<UserQueue, Double> userPass = new HashMap<>();
+            Map<UserQueue, Iterator<Job>> cursors = new HashMap<>();
+
+            for (ProjectQueue p : projects.values()) {
+                projectPass.put(p, p.pass);
+                for (UserQueue u : p.users.values()) {
+                    userPass.put(u, u.pass);
+                    cursors.put(u, u.jobs.iterator());
+                }
+            }
+
+            int position = 0;
+            int remaining = byRunId.size();
+
+            while (remaining > 0) {
+                ProjectQueue bestProject = null;
+                for (ProjectQueue p : projects.values()) {
+                    boolean hasMore = p.users.values().stream().anyMatch(u -> cursors.get(u).hasNext());
+                    if (hasMore && (bestProject == null || projectPass.get(p) < projectPass.get(bestProject))) {
+                        bestProject = p;
+                    }
+                }
+                if (bestProject == null) break;
+
+                UserQueue bestUser = null;
+                for (UserQueue u : bestProject.users.values()) {
+                    if (cursors.get(u).hasNext()
+                            && (bestUser == null || userPass.get(u) < userPass.get(bestUser))) {
+                        bestUser = u;
+                    }
+                }
+
+                Job job = cursors.get(bestUser).next();
+                projectPass.merge(bestProject, 1.0, Double::sum);
+                userPass.merge(bestUser, 1.0, Double::sum);
+
+                position++;
+                remaining--;
+                if (job.lastPosition != position) {
+                    job.lastPosition = position;
+                    changed.add(Map.entry(job, position));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Map.Entry<Job, Integer> e : changed) {
+            try {
+                e.getKey().listener.onQueued(e.getValue());
+            } catch (Exception ex) {
+                log.warn("Queue position update failed for run {}", e.getKey().runId, ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
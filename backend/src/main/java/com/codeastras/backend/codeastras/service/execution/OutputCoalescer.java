@@ -0,0 +1,384 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.dto.execution.OutputChunk;
+import com.codeastras.backend.codeastras.service.container.ContainerProcess.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sits between a run's output pipe and its {@link RunOutputSink}.
+ *
+ * The reader thread writes raw bytes into a fixed-size ring; a flusher
+ * thread drains it every {@code flushMs}, or as soon as {@code frameBytes}
+ * are waiting, and hands the sink one frame of complete lines (joined by
+ * '\n', no trailing newline, as single lines used to be). A line longer
+ * than a frame is cut at a UTF-8 character boundary.
+ *
+ * stdout and stderr keep their own frames. An unterminated line that has
+ * seen no new output for a whole flush interval (an {@code input()} prompt,
+ * a progress bar) goes out as a partial frame, continued by the next one.
+ *
+ * When the sink lags and the ring is full, the writer blocks for up to
+ * {@code blockMs} (which backs up into the program's stdout), then drops
+ * what does not fit and the sink is told how much was lost.
+ *
+ * Limits count bytes. Past {@code maxBytes} the rest of the output is
+ * drained and discarded so the process never blocks on a full pipe.
+ *
+ * A sink that throws loses that frame only; the flusher keeps going. Should
+ * the flusher itself die, the coalescer closes, so the writer never blocks
+ * on a ring nobody drains; the transcript stays complete either way.
+ */
+final class OutputCoalescer implements AutoCloseable {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(OutputCoalescer.class);
+
+    static final String TRUNCATED_NOTICE = "[Output truncated]";
+
+    private final RunOutputSink sink;
+    private final long maxBytes;
+    private final int frameBytes;
+    private final long flushNanos;
+    private final long blockNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition frameReady = lock.newCondition();
+
+    // guarded by lock
+    private final byte[] ring;
+    private int head;
+    private int size;
+    private long accepted;
+    private long dropped;
+    private boolean dropping; // gave up waiting; drop until the flusher makes room
+    private boolean truncated;
+    private boolean closed;
+    private final ByteArrayOutputStream transcript = new ByteArrayOutputStream();
+    private final List<Segment> transcriptSegments = new ArrayList<>(); // which stream each run of transcript bytes came from
+    private final List<Segment> segments = new ArrayList<>(); // which stream each run of ring bytes came from
+
+    // flusher thread only
+    private final byte[][] pending = {new byte[0], new byte[0]};
+    private boolean truncationReported;
+
+    private final Thread flusher;
+
+    private static final class Segment {
+        final Stream stream;
+        int length;
+
+        Segment(Stream stream, int length) {
+            this.stream = stream;
+            this.length = length;
+        }
+    }
+
+    OutputCoalescer(
+            RunOutputSink sink,
+            long maxBytes,
+            int bufferBytes,
+            int frameBytes,
+            long flushMs,
+            long blockMs,
+            String name
+    ) {
+        this.sink = sink;
+        this.maxBytes = maxBytes;
+        this.ring = new byte[bufferBytes];
+        this.frameBytes = Math.min(frameBytes, bufferBytes);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMs);
+        this.blockNanos = TimeUnit.MILLISECONDS.toNanos(blockMs);
+
+        this.flusher = Thread.ofVirtual()
+                .name("OutputFlusher-" + name)
+                .start(this::flushLoop);
+    }
+
+    // ================= WRITER =================
+
+    void write(Stream stream, byte[] data, int off, int len) {
+        lock.lock();
+        try {
+            if (truncated) return;
+
+            long room = maxBytes - accepted;
+            if (len > room) {
+                len = (int) room;
+                truncated = true;
+            }
+            accepted += len;
+            transcript.write(data, off, len);
+            append(transcriptSegments, stream, len);
+
+            if (closed) return; // nobody drains the ring any more
+
+            long deadline = System.nanoTime() + blockNanos;
+            while (len > 0) {
+                if (size == ring.length) {
+                    frameReady.signal();
+                    long left = deadline - System.nanoTime();
+                    if (dropping || left <= 0) {
+                        dropping = true;
+                        dropped += len;
+                        break;
+                    }
+                    try {
+                        notFull.awaitNanos(left);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped += len;
+                        break;
+                    }
+                    continue;
+                }
+
+                int tail = (head + size) % ring.length;
+                int n = Math.min(len, Math.min(ring.length - size, ring.length - tail));
+                System.arraycopy(data, off, ring, tail, n);
+                size += n;
+                append(segments, stream, n);
+                off += n;
+                len -= n;
+            }
+
+            if (size >= frameBytes || truncated) {
+                frameReady.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes what is left and waits for the sink to receive it.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            frameReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+    }
+
+    /**
+     * Everything accepted (up to {@code maxBytes}), plus a notice if truncated.
+     */
+    String transcript() {
+        lock.lock();
+        try {
+            byte[] bytes = transcript.toByteArray();
+            String text = new String(bytes, 0, boundary(bytes, bytes.length), StandardCharsets.UTF_8);
+            return truncated ? text + "\n" + TRUNCATED_NOTICE + "\n" : text;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The transcript split where the stream changes, without the truncation
+     * notice; enough to replay the run with stdout and stderr apart.
+     */
+    List<OutputChunk> chunks() {
+        lock.lock();
+        try {
+            byte[] bytes = transcript.toByteArray();
+            List<OutputChunk> chunks = new ArrayList<>(transcriptSegments.size());
+            int pos = 0;
+            for (Segment seg : transcriptSegments) {
+                String stream = seg.stream == Stream.STDERR ? "stderr" : "stdout";
+                chunks.add(new OutputChunk(stream, Arrays.copyOfRange(bytes, pos, pos + seg.length)));
+                pos += seg.length;
+            }
+            return chunks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ================= FLUSHER =================
+
+    private void flushLoop() {
+        try {
+            boolean done = false;
+            while (!done) {
+                byte[] chunk;
+                List<Segment> chunkSegments;
+                long lost;
+                boolean cut;
+
+                lock.lock();
+                try {
+                    long wait = flushNanos;
+                    boolean report = truncated && !truncationReported;
+                    while (!closed && size < frameBytes && !report && wait > 0) {
+                        wait = frameReady.awaitNanos(wait);
+                    }
+
+                    chunk = drain();
+                    chunkSegments = new ArrayList<>(segments);
+                    segments.clear();
+                    dropping = false;
+                    lost = dropped;
+                    dropped = 0;
+                    cut = truncated;
+                    done = closed;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                boolean[] fed = new boolean[pending.length];
+                int pos = 0;
+                for (Segment seg : chunkSegments) {
+                    emit(seg.stream, Arrays.copyOfRange(chunk, pos, pos + seg.length), false);
+                    fed[seg.stream.ordinal()] = true;
+                    pos += seg.length;
+                }
+                for (Stream stream : Stream.values()) {
+                    if (done || cut) {
+                        emit(stream, new byte[0], true);
+                    } else if (!fed[stream.ordinal()]) {
+                        emitPartial(stream);
+                    }
+                }
+
+                if (lost > 0) {
+                    deliver(() -> sink.onOutput("[" + lost + " bytes of output dropped: viewers could not keep up]"));
+                }
+                if (cut && !truncationReported) {
+                    truncationReported = true;
+                    deliver(() -> sink.onOutput(TRUNCATED_NOTICE));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+        } catch (Exception e) {
+            log.error("Error flushing run output", e);
+            stop();
+        }
+    }
+
+    // one failed frame (a broker hiccup) must not end the run's output
+    private void deliver(Runnable frame) {
+        try {
+            frame.run();
+        } catch (RuntimeException e) {
+            log.warn("Run output sink failed, frame dropped: {}", e.toString());
+        }
+    }
+
+    // the flusher is gone: the writer must neither block nor fill the ring
+    private void stop() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock
+    private byte[] drain() {
+        byte[] out = new byte[size];
+        int first = Math.min(size, ring.length - head);
+        System.arraycopy(ring, head, out, 0, first);
+        System.arraycopy(ring, 0, out, first, size - first);
+        head = 0;
+        size = 0;
+        return out;
+    }
+
+    private void emit(Stream stream, byte[] chunk, boolean flushAll) {
+        int s = stream.ordinal();
+        byte[] buf = concat(pending[s], chunk);
+        int newline = lastIndexOf(buf, (byte) '\n');
+
+        int end;
+        boolean partial = false;
+        if (newline >= 0 && (!flushAll || newline == buf.length - 1)) {
+            end = newline;                      // complete lines only
+        } else if (flushAll && buf.length > 0) {
+            end = buf.length;                   // unterminated last line
+        } else if (buf.length >= frameBytes) {
+            end = boundary(buf, buf.length);    // over-long line
+            partial = true;
+        } else {
+            pending[s] = buf;
+            return;
+        }
+
+        int resume = end < buf.length && buf[end] == '\n' ? end + 1 : end;
+        pending[s] = Arrays.copyOfRange(buf, resume, buf.length);
+
+        String frame = new String(buf, 0, end, StandardCharsets.UTF_8);
+        boolean cutMidLine = partial;
+        deliver(() -> sink.onOutput(stream, frame, cutMidLine));
+    }
+
+    // an unterminated line that stopped growing, e.g. a prompt waiting for input
+    private void emitPartial(Stream stream) {
+        int s = stream.ordinal();
+        int end = boundary(pending[s], pending[s].length);
+        if (end == 0) return;
+
+        String frame = new String(pending[s], 0, end, StandardCharsets.UTF_8);
+        pending[s] = Arrays.copyOfRange(pending[s], end, pending[s].length);
+        deliver(() -> sink.onOutput(stream, frame, true));
+    }
+
+    /**
+     * Largest cut ≤ {@code end} that does not split a UTF-8 sequence.
+     */
+    private static int boundary(byte[] b, int end) {
+        int i = end;
+        // back up over continuation bytes (10xxxxxx) to the lead byte
+        while (i > 0 && i > end - 4 && (b[i - 1] & 0xC0) == 0x80) i--;
+        if (i == 0) return end;
+
+        int lead = b[i - 1] & 0xFF;
+        int need = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return (end - (i - 1)) >= need ? end : i - 1;
+    }
+
+    private static void append(List<Segment> segments, Stream stream, int length) {
+        if (length <= 0) return;
+
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.stream == stream) {
+            last.length += length;
+        } else {
+            segments.add(new Segment(stream, length));
+        }
+    }
+
+    private static int lastIndexOf(byte[] b, byte v) {
+        for (int i = b.length - 1; i >= 0; i--) {
+            if (b[i] == v) return i;
+        }
+        return -1;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        if (a.length == 0) return b;
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+}
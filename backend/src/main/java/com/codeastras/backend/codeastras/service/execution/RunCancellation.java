@@ -0,0 +1,46 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+/**
+ * Cancel switch of a started run. The runner registers how to stop what
+ * it started; {@link #cancel} runs that on the caller's thread, or the
+ * registration runs it right away if the run was already cancelled.
+ */
+final class RunCancellation {
+
+    private boolean cancelled;
+    private Runnable stop;
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    void onCancel(Runnable stop) {
+        boolean now;
+        synchronized (this) {
+            this.stop = stop;
+            now = cancelled;
+        }
+        if (now) stop.run();
+    }
+
+    /**
+     * Forgets the stop action once what it stops is gone.
+     */
+    synchronized void clear() {
+        stop = null;
+    }
+
+    /**
+     * @return false if already cancelled
+     */
+    boolean cancel() {
+        Runnable action;
+        synchronized (this) {
+            if (cancelled) return false;
+            cancelled = true;
+            action = stop;
+        }
+        if (action != null) action.run();
+        return true;
+    }
+}
@@ -1,12 +1,16 @@
 package com.codeastras.backend.codeastras.service.execution;
 
 import com.codeastras.backend.codeastras.dto.execution.CommandResult;
+import com.codeastras.backend.codeastras.dto.execution.OutputChunk;
 import com.codeastras.backend.codeastras.entity.file.ProjectFile;
 import com.codeastras.backend.codeastras.exception.ResourceNotFoundException;
 import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
 import com.codeastras.backend.codeastras.security.ProjectAccessManager;
 import com.codeastras.backend.codeastras.security.ProjectPermission;
+import com.codeastras.backend.codeastras.service.container.ContainerProcess;
+import com.codeastras.backend.codeastras.service.container.ContainerRuntime;
 import com.codeastras.backend.codeastras.service.file.FileSyncService;
+import com.codeastras.backend.codeastras.service.session.SessionContainerPool;
 import com.codeastras.backend.codeastras.store.SessionRegistry;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -14,13 +18,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -35,21 +38,98 @@ public class RunCodeService {
     private final ProjectAccessManager accessManager;
     private final FileSyncService fileSyncService;
     private final ProjectFileRepository fileRepo;
-    private final RunRateLimiter runRateLimiter;
     private final ExecutionLockService executionLockService;
     private final ExecutionCoordinator executionCoordinator;
+    private final RunnerPool runnerPool;
+    private final ContainerRuntime containerRuntime;
+    private final RunResultCache resultCache;
+    private final RunTelemetry runTelemetry;
+    private final SessionContainerPool sessionContainerPool;
+
+    private static final String RUNNER_FILE = "__runner__.py";
+    private static final int EXEC_GRACE_SEC = 5;
+    private static final String CANCELLED_NOTICE = "[Run cancelled]";
+    private static final String CACHED_MARKER = "[cached result: code unchanged since last run]";
+
+    private static final String USAGE_ENV = "CODEASTRAS_USAGE_MARKER";
+
+    // set iteration order follows str hashes, salted per process unless pinned
+    private static final String FIXED_HASH_SEED = "PYTHONHASHSEED=0";
+
+    // The program runs in a forked child; the parent reports the child's
+    // rusage and any cgroup OOM kill as the last line of stderr (see UsageTrailer).
+    private static final String RUNNER_SOURCE = """
+            import os, runpy, sys
+            print('[runner] running:', sys.argv[1], flush=True)
+
+            def oom_kills():
+                for path in ('/sys/fs/cgroup/memory.events', '/sys/fs/cgroup/memory/memory.oom_control'):
+                    try:
+                        with open(path) as f:
+                            for line in f:
+                                key, _, value = line.partition(' ')
+                                if key == 'oom_kill':
+                                    return int(value)
+                    except (OSError, ValueError):
+                        pass
+                return None
+
+            marker = os.environ.pop('%s', None)
+            if marker is None:
+                runpy.run_path(sys.argv[1], run_name='__main__')
+            else:
+                before = oom_kills()
+                pid = os.fork()
+                if pid == 0:
+                    runpy.run_path(sys.argv[1], run_name='__main__')
+                else:
+                    _, status, ru = os.wait4(pid, 0)
+                    after = oom_kills()
+                    oom = before is not None and after is not None and after > before
+                    code = os.WEXITSTATUS(status) if os.WIFEXITED(status) else 128 + os.WTERMSIG(status)
+                    sys.stderr.flush()
+                    os.write(2, ('%%s %%d %%d %%d\\n' %% (marker, (ru.ru_utime + ru.ru_stime) * 1000,
+                                                  ru.ru_maxrss * 1024, oom)).encode())
+                    os._exit(code)
+            """.formatted(USAGE_ENV);
 
     @Value("${code.runner.max-output-bytes:131072}")
     private int maxOutputBytes;
 
+    // output is coalesced into frames: every flush-ms, or once frame-bytes are waiting
+    @Value("${code.runner.output.buffer-bytes:65536}")
+    private int outputBufferBytes;
+
+    @Value("${code.runner.output.frame-bytes:8192}")
+    private int outputFrameBytes;
+
+    @Value("${code.runner.output.flush-ms:30}")
+    private long outputFlushMs;
+
+    // how long a full buffer holds the program back before output is dropped
+    @Value("${code.runner.output.block-ms:2000}")
+    private long outputBlockMs;
+
     @Value("${code.runner.python-image:codeastras-python-runner}")
     private String pythonRunnerImage;
 
+    @Value("${code.session.image-name:codeastras-collab}")
+    private String sessionImage;
+
+    @Value("${code.runner.python-command:python}")
+    private String pythonCommand;
+
+    // session: exec in the live session container; snapshot: pooled/one-off runner
+    @Value("${code.runner.mode:session}")
+    private String runnerMode;
+
     public CommandResult runPythonInSession(
             String sessionId,
             String filename,
             int timeoutSeconds,
             UUID userId,
+            RunInput input,
+            RunCancellation cancellation,
             RunOutputSink sink
     ) throws Exception {
 
@@ -62,16 +142,13 @@ public class RunCodeService {
 
         UUID projectId = session.getProjectId();
 
-        if (!runRateLimiter.allow(projectId)) {
-            return new CommandResult(-1, "Run limit exceeded");
-        }
-
         if (!executionLockService.tryLock(projectId)) {
             return new CommandResult(-1, "Another execution is running");
         }
 
         try {
             accessManager.require(projectId, userId, ProjectPermission.EXECUTE_CODE);
+            sessionRegistry.touch(projectId);
 
             final String safePath =
                     fileSyncService.sanitizeUserPath(filename);
@@ -86,130 +163,352 @@ public class RunCodeService {
                 );
             }
 
-            Path jobDir = Files.createTempDirectory("codeastras-run-");
-            log.info("🧪 Execution jobDir = {}", jobDir.toAbsolutePath());
+            // Flush editor → DB → FS
+            executionCoordinator.flushBeforeExecution(projectId);
+
+            // same sources, entry file and runner → same output
+            String runner = runnerIdentity();
+            Optional<String> cacheKey = input == null
+                    ? resultCache.key(projectId, safePath, runner)
+                    : Optional.empty();
+            Optional<RunResultCache.Entry> cached = cacheKey.flatMap(resultCache::get);
+            if (cached.isPresent()) {
+                return replay(cached.get(), projectId, sink);
+            }
 
-            try {
-                // Flush editor → DB → FS
-                executionCoordinator.flushBeforeExecution(projectId);
-
-                // Snapshot DB → execution FS
-                fileSyncService.writeProjectSnapshot(projectId, jobDir);
-
-                Path targetFile = jobDir.resolve(safePath);
-                if (!Files.exists(targetFile)) {
-                    throw new ResourceNotFoundException(
-                            "File missing in snapshot: " + safePath
-                    );
-                }
-
-                // Runner bootstrap
-                Path runner = jobDir.resolve("__runner__.py");
-                Files.writeString(
-                        runner,
-                        """
-                        import runpy, sys
-                        print('[runner] running:', sys.argv[1])
-                        runpy.run_path(sys.argv[1], run_name='__main__')
-                        """,
-                        StandardCharsets.UTF_8
-                );
+            if (cancellation.isCancelled()) {
+                return new CommandResult(-1, CANCELLED_NOTICE);
+            }
 
-                // Docker execution
-                List<String> cmd = List.of(
-                        "docker", "run", "--rm",
-                        "--cpus=0.5",
-                        "--memory=256m",
-                        "--network=none",
-                        "-w", "/workspace",
-                        "-v", jobDir.toAbsolutePath() + ":/workspace",
-                        pythonRunnerImage,
-                        "__runner__.py",
-                        safePath
-                );
+            // a stored result must be what every later run of this code would print
+            List<String> extraEnv = cacheKey.isPresent() ? List.of(FIXED_HASH_SEED) : List.of();
 
-                log.info("🐳 Docker command:\n{}", String.join(" ", cmd));
+            boolean inSession = "session".equalsIgnoreCase(runnerMode);
+            CommandResult ran = inSession
+                    ? runInSessionContainer(session, safePath, timeoutSeconds, input, extraEnv, cancellation, sink)
+                    : runInSnapshot(projectId, safePath, timeoutSeconds, input, extraEnv, cancellation, sink);
 
-                Process process = new ProcessBuilder(cmd)
-                        .redirectErrorStream(true)
-                        .start();
+            CommandResult result = cancellation.isCancelled()
+                    ? new CommandResult(-1, ran.getOutput() + "\n" + CANCELLED_NOTICE, ran.getUsage())
+                    : ran;
 
-                StringBuilder output = new StringBuilder();
+            runTelemetry.record(
+                    result.getUsage(),
+                    inSession ? "session" : "snapshot",
+                    inSession ? sessionContainerPool.cpusPerSession() : RunnerPool.RUNNER_CPUS,
+                    inSession ? sessionContainerPool.memoryBytesPerSession() : RunnerPool.RUNNER_MEMORY_BYTES,
+                    projectId,
+                    userId
+            );
 
-                Thread reader = new Thread(
-                        () -> streamOutput(process, output, sink),
-                        "OutputReader-" + projectId
-                );
-                reader.start();
+            cacheKey.ifPresent(key -> resultCache.put(key, projectId, safePath, runner, result));
+            return result;
 
-                boolean finished =
-                        process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        } finally {
+            // a long run counts as activity until it ends
+            sessionRegistry.touch(projectId);
+            executionLockService.unlock(projectId);
+        }
+    }
 
-                if (!finished) {
-                    process.destroyForcibly();
-                    reader.join();
-                    appendTruncatedNotice(output);
-                    return new CommandResult(-1, output + "\n[Process killed]");
-                }
+    // ================= SNAPSHOT EXEC =================
 
-                reader.join();
-                return new CommandResult(process.exitValue(), output.toString());
+    private CommandResult runInSnapshot(
+            UUID projectId,
+            String safePath,
+            int timeoutSeconds,
+            RunInput input,
+            List<String> extraEnv,
+            RunCancellation cancellation,
+            RunOutputSink sink
+    ) throws Exception {
 
-            } finally {
-                safeDeleteDirectory(jobDir);
-            }
+        // Warm container if the pool has one, cold `docker run` otherwise
+        Optional<RunnerPool.Lease> lease =
+                runnerPool.acquire(pythonRunnerImage, projectId);
+
+        try {
+            // Snapshot DB → execution FS (hard links, only changed files touched)
+            Path jobDir = lease.isPresent()
+                    ? fileSyncService.prepareSnapshot(projectId, lease.get().workspace(), Map.of(RUNNER_FILE, RUNNER_SOURCE))
+                    : fileSyncService.prepareSnapshot(projectId, Map.of(RUNNER_FILE, RUNNER_SOURCE));
+            lease.ifPresent(l -> runnerPool.bind(l, projectId));
+            log.info("🧪 Execution jobDir = {}", jobDir.toAbsolutePath());
+
+            requireInTree(jobDir, safePath);
+            String usageMarker = usageMarker();
+            String containerName = lease.isPresent()
+                    ? lease.get().containerName()
+                    : runnerPool.newContainerName();
+
+            // Docker execution
+            ContainerProcess process = lease.isPresent()
+                    ? containerRuntime.exec(
+                            containerName,
+                            ContainerRuntime.ExecSpec.builder()
+                                    .cmd(List.of(pythonCommand, "-u", RUNNER_FILE, safePath))
+                                    .workingDir("/workspace")
+                                    .env(env(extraEnv, USAGE_ENV + "=" + usageMarker))
+                                    .attachStdin(input != null)
+                                    .build())
+                    : containerRuntime.runAttached(
+                            ContainerRuntime.ContainerSpec.builder()
+                                    .name(containerName)
+                                    .image(pythonRunnerImage)
+                                    .cmd(List.of(RUNNER_FILE, safePath))
+                                    .workingDir("/workspace")
+                                    .env(env(extraEnv, "PYTHONDONTWRITEBYTECODE=1", "PYTHONUNBUFFERED=1", USAGE_ENV + "=" + usageMarker))
+                                    // read-only: the tree shares inodes with the content store
+                                    .binds(List.of(jobDir.toAbsolutePath() + ":/workspace:ro"))
+                                    .cpus(RunnerPool.RUNNER_CPUS)
+                                    .memoryBytes(RunnerPool.RUNNER_MEMORY_BYTES)
+                                    .networkDisabled(true)
+                                    .openStdin(input != null)
+                                    .build());
+
+            // the runner container holds only this run
+            cancellation.onCancel(() -> {
+                containerRuntime.remove(containerName);
+                process.kill();
+            });
+
+            return execute(process, projectId, usageMarker, input, timeoutSeconds, sink);
 
         } finally {
-            executionLockService.unlock(projectId);
+            cancellation.clear();
+            // pooled containers are single use
+            lease.ifPresent(runnerPool::release);
         }
     }
 
-    private void streamOutput(
-            Process process,
-            StringBuilder output,
+    // ================= SESSION EXEC =================
+
+    /**
+     * Runs inside the project's live session container. The session folder
+     * is already kept in sync by the save path, so only an incremental sync
+     * runs here, and the container's own cpu/memory/network limits apply.
+     *
+     * Each run gets its own scratch directory on the container's /tmp tmpfs
+     * (TMPDIR and HOME point there), removed afterwards. {@code timeout}
+     * inside the container bounds the run even if the exec client dies.
+     *
+     * The scratch directory is the only per-run isolation: the run shares the
+     * session's network setting and can write to /workspace, which is the
+     * session folder. The next sync restores any project file a run changed.
+     *
+     * {@code timeout} leads its own process group and records its pid in
+     * the scratch directory, so cancelling kills the run's processes and
+     * leaves the rest of the container alone.
+     */
+    private CommandResult runInSessionContainer(
+            SessionRegistry.SessionInfo session,
+            String safePath,
+            int timeoutSeconds,
+            RunInput input,
+            List<String> extraEnv,
+            RunCancellation cancellation,
             RunOutputSink sink
-    ) {
-        try (BufferedReader reader =
-                     new BufferedReader(
-                             new InputStreamReader(
-                                     process.getInputStream(),
-                                     StandardCharsets.UTF_8))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (output.length() + line.length() > maxOutputBytes) {
-                    appendTruncatedNotice(output);
-                    break;
-                }
-                output.append(line).append("\n");
-                sink.onOutput(line);
+    ) throws Exception {
+
+        UUID projectId = session.getProjectId();
+
+        fileSyncService.syncProjectToSession(projectId, session.getSessionId());
+        requireInTree(fileSyncService.getSessionDir(session.getSessionId()), safePath);
+
+        String scratch = "/tmp/run-" + UUID.randomUUID();
+        String usageMarker = usageMarker();
+
+        ContainerProcess process = containerRuntime.exec(
+                session.getContainerName(),
+                ContainerRuntime.ExecSpec.builder()
+                        .cmd(List.of(
+                                "sh", "-c",
+                                "mkdir -p \"$TMPDIR\" && echo $$ > \"$TMPDIR/.pid\""
+                                        + " && exec timeout -s KILL \"$1\" \"$2\" -u -c \"$3\" \"$4\"",
+                                "sh",
+                                String.valueOf(timeoutSeconds),
+                                pythonCommand,
+                                RUNNER_SOURCE,
+                                safePath
+                        ))
+                        .workingDir("/workspace")
+                        .env(env(
+                                extraEnv,
+                                "TMPDIR=" + scratch,
+                                "HOME=" + scratch,
+                                "PYTHONDONTWRITEBYTECODE=1",
+                                USAGE_ENV + "=" + usageMarker
+                        ))
+                        .attachStdin(input != null)
+                        .build());
+
+        cancellation.onCancel(() -> {
+            killRun(session.getContainerName(), scratch);
+            process.kill();
+        });
+
+        try {
+            CommandResult result = execute(process, projectId, usageMarker, input, timeoutSeconds + EXEC_GRACE_SEC, sink);
+
+            // timeout -s KILL exits with 128 + 9, so does a program the kernel OOM-kills
+            if (result.getExitCode() == 137 && !cancellation.isCancelled()) {
+                String reason = result.getUsage().oomKilled() ? "[Process killed: out of memory]" : "[Process killed]";
+                return new CommandResult(-1, result.getOutput() + "\n" + reason, result.getUsage());
             }
+            return result;
+
+        } finally {
+            cancellation.clear();
+            removeScratch(session.getContainerName(), scratch);
+        }
+    }
+
+    private void killRun(String containerName, String scratch) {
+        try (ContainerProcess kill = containerRuntime.exec(
+                containerName,
+                ContainerRuntime.ExecSpec.builder()
+                        .cmd(List.of(
+                                "sh", "-c",
+                                "p=$(cat \"$1/.pid\") && { kill -9 -\"$p\" 2>/dev/null || kill -9 \"$p\"; }",
+                                "sh",
+                                scratch
+                        ))
+                        .build())) {
+            kill.pump((stream, data, off, len) -> {});
         } catch (Exception e) {
-            log.error("Error streaming output", e);
+            log.warn("Failed to kill run {} in {}: {}", scratch, containerName, e.getMessage());
         }
     }
 
-    private void appendTruncatedNotice(StringBuilder sb) {
-        if (!sb.toString().contains("[Output truncated]")) {
-            sb.append("\n[Output truncated]\n");
+    private void removeScratch(String containerName, String scratch) {
+        try (ContainerProcess rm = containerRuntime.exec(
+                containerName,
+                ContainerRuntime.ExecSpec.builder()
+                        .cmd(List.of("rm", "-rf", scratch))
+                        .build())) {
+            rm.pump((stream, data, off, len) -> {});
+        } catch (Exception e) {
+            log.warn("Failed to remove scratch {} in {}", scratch, containerName);
         }
     }
 
-    private void safeDeleteDirectory(Path dir) {
-        if (dir == null || !Files.exists(dir)) return;
+    // ================= CACHE =================
+
+    private String runnerIdentity() {
+        return "session".equalsIgnoreCase(runnerMode)
+                ? "session:" + sessionImage + ":" + pythonCommand
+                : "snapshot:" + pythonRunnerImage + ":" + pythonCommand;
+    }
+
+    // cached output goes through the same framing as live output
+    private CommandResult replay(RunResultCache.Entry entry, UUID projectId, RunOutputSink sink) throws Exception {
+        sink.onOutput(CACHED_MARKER);
+
+        try (OutputCoalescer output = new OutputCoalescer(
+                sink, Long.MAX_VALUE, outputBufferBytes, outputFrameBytes, outputFlushMs, outputBlockMs,
+                projectId.toString())) {
+            for (OutputChunk chunk : entry.chunks()) {
+                ContainerProcess.Stream stream = "stderr".equals(chunk.stream())
+                        ? ContainerProcess.Stream.STDERR
+                        : ContainerProcess.Stream.STDOUT;
+                output.write(stream, chunk.data(), 0, chunk.data().length);
+            }
+        }
+
+        return new CommandResult(entry.exitCode(), entry.output());
+    }
 
+    // ================= INTERNAL =================
+
+    private static List<String> env(List<String> extra, String... vars) {
+        List<String> env = new ArrayList<>(List.of(vars));
+        env.addAll(extra);
+        return env;
+    }
+
+    private static String usageMarker() {
+        return "##codeastras-usage-" + UUID.randomUUID();
+    }
+
+    private void requireInTree(Path root, String safePath) {
+        if (!Files.exists(root.resolve(safePath))) {
+            throw new ResourceNotFoundException(
+                    "File missing in snapshot: " + safePath
+            );
+        }
+    }
+
+    private CommandResult execute(
+            ContainerProcess process,
+            UUID projectId,
+            String usageMarker,
+            RunInput input,
+            int timeoutSeconds,
+            RunOutputSink sink
+    ) throws Exception {
+
+        try (process) {
+            OutputCoalescer output = new OutputCoalescer(
+                    sink,
+                    maxOutputBytes,
+                    outputBufferBytes,
+                    outputFrameBytes,
+                    outputFlushMs,
+                    outputBlockMs,
+                    projectId.toString()
+            );
+
+            UsageTrailer usage = new UsageTrailer(
+                    usageMarker,
+                    output::write
+            );
+
+            long started = System.nanoTime();
+
+            Thread reader = Thread.ofVirtual()
+                    .name("OutputReader-" + projectId)
+                    .start(() -> streamOutput(process, usage, output));
+
+            if (input != null) {
+                input.connect(process.stdin(), projectId.toString());
+            }
+
+            OptionalInt exitCode =
+                    process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+
+            if (exitCode.isEmpty()) {
+                process.kill();
+                reader.join();
+                return new CommandResult(-1, output.transcript() + "\n[Process killed]", usage.usage(elapsedMillis(started)));
+            }
+
+            reader.join();
+            CommandResult result = new CommandResult(exitCode.getAsInt(), output.transcript(), usage.usage(elapsedMillis(started)));
+            result.setChunks(output.chunks());
+            return result;
+
+        } finally {
+            // the program is done: stop feeding it, even if the user never sent EOF
+            if (input != null) input.close();
+        }
+    }
+
+    private void streamOutput(ContainerProcess process, UsageTrailer usage, OutputCoalescer output) {
         try {
-            Files.walk(dir)
-                    .sorted(Comparator.reverseOrder())
-                    .forEach(p -> {
-                        try {
-                            Files.deleteIfExists(p);
-                        } catch (IOException e) {
-                            log.warn("Failed to delete {}", p);
-                        }
-                    });
-        } catch (IOException e) {
-            log.warn("Cleanup failed for {}", dir, e);
+            process.pump(usage);
+        } catch (Exception e) {
+            log.error("Error streaming output", e);
+        } finally {
+            usage.finish();
+            try {
+                output.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
 }
@@ -0,0 +1,94 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stdin of an interactive run.
+ *
+ * Input is buffered up to {@code maxBytes} until the process exists and
+ * while it is not reading; past that, {@link #offer} refuses instead of
+ * blocking the caller. Once {@link #connect}ed, a writer thread copies the
+ * buffer into the process. {@link #endOfInput} closes stdin after what is
+ * already buffered.
+ */
+final class RunInput implements AutoCloseable {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(RunInput.class);
+
+    // sentinels, compared by identity
+    private static final byte[] EOF = new byte[0];
+    private static final byte[] STOP = new byte[0];
+
+    private final int maxBytes;
+    private final LinkedBlockingDeque<byte[]> queue = new LinkedBlockingDeque<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private volatile boolean ended;
+
+    RunInput(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return false if stdin is closed or the buffer is full
+     */
+    boolean offer(byte[] data) {
+        if (ended) return false;
+
+        if (buffered.addAndGet(data.length) > maxBytes) {
+            buffered.addAndGet(-data.length);
+            return false;
+        }
+        queue.addLast(data);
+        return true;
+    }
+
+    void endOfInput() {
+        if (ended) return;
+        ended = true;
+        queue.addLast(EOF);
+    }
+
+    void connect(OutputStream stdin, String name) {
+        Thread.ofVirtual()
+                .name("StdinWriter-" + name)
+                .start(() -> pump(stdin));
+    }
+
+    /**
+     * Stops the writer; anything still buffered is discarded.
+     */
+    @Override
+    public void close() {
+        ended = true;
+        queue.addFirst(STOP);
+    }
+
+    private void pump(OutputStream stdin) {
+        try {
+            while (true) {
+                byte[] data = queue.takeFirst();
+                if (data == STOP) return;
+                if (data == EOF) {
+                    stdin.close();
+                    return;
+                }
+
+                stdin.write(data);
+                stdin.flush();
+                buffered.addAndGet(-data.length);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the process is gone or closed its stdin
+            log.debug("Stdin closed: {}", e.getMessage());
+        }
+    }
+}
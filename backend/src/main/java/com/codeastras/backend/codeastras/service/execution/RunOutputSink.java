@@ -1,6 +1,17 @@
 package com.codeastras.backend.codeastras.service.execution;
 
+import com.codeastras.backend.codeastras.service.container.ContainerProcess;
+
 @FunctionalInterface
 public interface RunOutputSink {
     void onOutput(String output);
+
+    /**
+     * Program output. {@code partial} frames end mid-line (e.g. an
+     * {@code input()} prompt) and are continued by the next frame of the
+     * same stream. Notices from the runner itself come through {@link #onOutput(String)}.
+     */
+    default void onOutput(ContainerProcess.Stream stream, String output, boolean partial) {
+        onOutput(output);
+    }
 }
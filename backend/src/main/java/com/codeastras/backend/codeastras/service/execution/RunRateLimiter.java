@@ -2,13 +2,22 @@ package com.codeastras.backend.codeastras.service.execution;
 
 import org.springframework.stereotype.Component;
 
+import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
+/**
+ * At most {@value #MAX_RUNS_PER_MINUTE} run starts per project per sliding minute.
+ *
+ * Instead of refusing a burst, {@link #reserve} books the earliest start
+ * that stays inside the limit; {@link ExecutionScheduler} holds the run
+ * until then.
+ */
 @Component
 public class RunRateLimiter {
 
@@ -16,30 +25,62 @@ public class RunRateLimiter {
     private static final int MAX_RUNS_PER_MINUTE = 5;
     private static final long WINDOW_SECONDS = 60;
 
-    // projectId -> timestamps
+    // projectId -> reserved start times, ascending
     private final Map<UUID, Deque<Instant>> runs = new ConcurrentHashMap<>();
 
-    public boolean allow(UUID projectId) {
-        Instant now = Instant.now();
+    private final Clock clock;
 
-        Deque<Instant> timestamps =
-                runs.computeIfAbsent(projectId, k -> new ConcurrentLinkedDeque<>());
+    public RunRateLimiter() {
+        this(Clock.systemUTC());
+    }
+
+    RunRateLimiter(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return when the run may start (now, or later if the window is full)
+     */
+    public Instant reserve(UUID projectId) {
+        Instant now = clock.instant();
+
+        Deque<Instant> starts =
+                runs.computeIfAbsent(projectId, k -> new ArrayDeque<>());
 
-        synchronized (timestamps) {
+        synchronized (starts) {
             // remove old entries
-            while (!timestamps.isEmpty() &&
-                    timestamps.peekFirst()
+            while (!starts.isEmpty() &&
+                    starts.peekFirst()
                             .plusSeconds(WINDOW_SECONDS)
                             .isBefore(now)) {
-                timestamps.pollFirst();
+                starts.pollFirst();
             }
 
-            if (timestamps.size() >= MAX_RUNS_PER_MINUTE) {
-                return false;
+            Instant start = now;
+            if (starts.size() >= MAX_RUNS_PER_MINUTE) {
+                // the start MAX_RUNS_PER_MINUTE back must leave the window first
+                Iterator<Instant> newestFirst = starts.descendingIterator();
+                Instant anchor = null;
+                for (int i = 0; i < MAX_RUNS_PER_MINUTE; i++) {
+                    anchor = newestFirst.next();
+                }
+                start = anchor.plusSeconds(WINDOW_SECONDS);
             }
 
-            timestamps.addLast(now);
-            return true;
+            starts.addLast(start);
+            return start;
+        }
+    }
+
+    /**
+     * Gives back a reservation whose run never started.
+     */
+    public void release(UUID projectId, Instant start) {
+        Deque<Instant> starts = runs.get(projectId);
+        if (starts == null) return;
+
+        synchronized (starts) {
+            starts.removeLastOccurrence(start);
         }
     }
 }
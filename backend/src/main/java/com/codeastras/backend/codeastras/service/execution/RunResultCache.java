@@ -0,0 +1,238 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.dto.execution.CommandResult;
+import com.codeastras.backend.codeastras.dto.execution.OutputChunk;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileMetadata;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Output of earlier runs of identical code ({@code code.runner.cache.enabled}).
+ *
+ * The key is a hash over every file's (path, type, content hash), sorted by
+ * path, plus the entry file and the runner. Entries are evicted LRU once
+ * their output exceeds {@code max-bytes} in total.
+ *
+ * Only complete runs are stored, and only if no Python source in the
+ * project looks nondeterministic: clocks, randomness, stdin, network,
+ * subprocesses, threads, or files written at run time. The verdict is
+ * kept per content hash, and only sources without one are loaded, so
+ * unchanged files are neither fetched nor scanned again.
+ *
+ * Output is kept per stream in the order it was written, so a replay
+ * frames stdout and stderr apart just like the original run.
+ *
+ * Runs that may be stored execute with {@code PYTHONHASHSEED=0}, so the
+ * iteration order of sets of strings is the same every time.
+ */
+@Component
+public class RunResultCache {
+
+    public record Entry(int exitCode, List<OutputChunk> chunks) {
+
+        public String output() {
+            return new String(bytes(), StandardCharsets.UTF_8);
+        }
+
+        private byte[] bytes() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            chunks.forEach(chunk -> out.writeBytes(chunk.data()));
+            return out.toByteArray();
+        }
+
+        long size() {
+            long size = 0;
+            for (OutputChunk chunk : chunks) size += chunk.data().length;
+            return size;
+        }
+    }
+
+    // hashes per lookup, well below the bind-parameter limit
+    private static final int SCAN_BATCH = 500;
+
+    private static final Pattern NONDETERMINISTIC = Pattern.compile(
+            "\\b(?:import|from)\\s+(?:random|secrets|time|datetime|uuid|socket|requests|urllib|http"
+                    + "|subprocess|threading|multiprocessing|asyncio|select)\\b"
+                    + "|\\brandom\\."                       // numpy.random and friends
+                    + "|\\binput\\s*\\("
+                    + "|\\bsys\\.stdin\\b"
+                    + "|\\bos\\.(?:urandom|getpid|environ|listdir|scandir|walk)\\b"
+                    + "|\\bopen\\s*\\([^)]*['\"][wax+]"
+                    + "|\\bhash\\s*\\("                   // object hashes derive from id()
+                    + "|\\bid\\s*\\(");
+
+    private final ProjectFileRepository fileRepo;
+    private final boolean enabled;
+    private final long maxBytes;
+
+    // guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    // content hash -> true if the file defeats caching
+    private final Map<String, Boolean> verdicts;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter uncacheable;
+
+    public RunResultCache(
+            ProjectFileRepository fileRepo,
+            MeterRegistry meterRegistry,
+            @Value("${code.runner.cache.enabled:false}") boolean enabled,
+            @Value("${code.runner.cache.max-bytes:16MB}") DataSize maxBytes
+    ) {
+        this.fileRepo = fileRepo;
+        this.enabled = enabled;
+        this.maxBytes = maxBytes.toBytes();
+        this.verdicts = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > 10_000;
+            }
+        });
+
+        this.hits = Counter.builder("codeastras.runner.cache.hit")
+                .description("Runs answered from the result cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("codeastras.runner.cache.miss")
+                .description("Cacheable runs that had to execute")
+                .register(meterRegistry);
+        this.uncacheable = Counter.builder("codeastras.runner.cache.uncacheable")
+                .description("Runs not stored because the code looks nondeterministic")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return empty if caching is off or a file has no content hash yet
+     */
+    public Optional<String> key(UUID projectId, String entryPath, String runner) {
+        if (!enabled) return Optional.empty();
+
+        List<ProjectFileMetadata> files = new ArrayList<>(fileRepo.findMetadataByProjectId(projectId));
+        files.sort(Comparator.comparing(ProjectFileMetadata::getPath));
+
+        MessageDigest root = sha256();
+        for (ProjectFileMetadata f : files) {
+            boolean isFile = "FILE".equalsIgnoreCase(f.getType());
+            if (isFile && f.getContentHash() == null) return Optional.empty();
+
+            MessageDigest leaf = sha256();
+            leaf.update(f.getPath().getBytes(StandardCharsets.UTF_8));
+            leaf.update((byte) 0);
+            leaf.update(isFile ? f.getContentHash().getBytes(StandardCharsets.US_ASCII) : new byte[0]);
+            root.update(leaf.digest());
+        }
+
+        root.update((byte) 0);
+        root.update(entryPath.getBytes(StandardCharsets.UTF_8));
+        root.update((byte) 0);
+        root.update(runner.getBytes(StandardCharsets.UTF_8));
+
+        return Optional.of(HexFormat.of().formatHex(root.digest()));
+    }
+
+    public Optional<Entry> get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        (entry != null ? hits : misses).increment();
+        return Optional.ofNullable(entry);
+    }
+
+    /**
+     * Stores a finished run unless it was killed, truncated or looks
+     * nondeterministic, or the project changed while it ran.
+     */
+    public void put(String key, UUID projectId, String entryPath, String runner, CommandResult result) {
+        String output = result.getOutput() == null ? "" : result.getOutput();
+
+        if (result.getExitCode() < 0 || output.contains(OutputCoalescer.TRUNCATED_NOTICE)) {
+            return;
+        }
+        // the sources scanned below must be the ones that ran
+        if (!key.equals(key(projectId, entryPath, runner).orElse(null))) {
+            return;
+        }
+        if (isNondeterministic(projectId)) {
+            uncacheable.increment();
+            return;
+        }
+
+        // results that come without a per-stream record replay as stdout
+        List<OutputChunk> chunks = result.getChunks() != null
+                ? List.copyOf(result.getChunks())
+                : List.of(new OutputChunk("stdout", output.getBytes(StandardCharsets.UTF_8)));
+        Entry entry = new Entry(result.getExitCode(), chunks);
+
+        long size = entry.size();
+        if (size > maxBytes) return;
+
+        synchronized (entries) {
+            Entry old = entries.put(key, entry);
+            if (old != null) bytes -= old.size();
+            bytes += size;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    // ================= INTERNAL =================
+
+    private boolean isNondeterministic(UUID projectId) {
+        List<ProjectFileMetadata> files = fileRepo.findMetadataByProjectId(projectId);
+
+        List<String> unknown = files.stream()
+                .filter(f -> isPython(f.getType(), f.getPath(), f.getContentHash()))
+                .map(ProjectFileMetadata::getContentHash)
+                .filter(hash -> !verdicts.containsKey(hash))
+                .distinct()
+                .toList();
+
+        // only the sources never scanned, not the whole project
+        for (int from = 0; from < unknown.size(); from += SCAN_BATCH) {
+            List<String> hashes = unknown.subList(from, Math.min(unknown.size(), from + SCAN_BATCH));
+            for (ProjectFileSource f : fileRepo.findSourcesByProjectIdAndContentHashIn(projectId, hashes)) {
+                if (f.getContent() != null) {
+                    verdicts.computeIfAbsent(f.getContentHash(),
+                            h -> NONDETERMINISTIC.matcher(f.getContent()).find());
+                }
+            }
+        }
+
+        // a source that could not be scanned counts against caching
+        return files.stream().anyMatch(f ->
+                isPython(f.getType(), f.getPath(), f.getContentHash())
+                        && verdicts.getOrDefault(f.getContentHash(), true));
+    }
+
+    private static boolean isPython(String type, String path, String contentHash) {
+        return "FILE".equalsIgnoreCase(type) && path.endsWith(".py") && contentHash != null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.dto.execution.RunUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Histograms of what runs use, per runner mode, for sizing the cpu and
+ * memory limits. Utilisation is relative to the limits the run had.
+ *
+ * Runs that get close to a limit are logged with project and user, which
+ * would be too many tags for the meters themselves.
+ */
+@Component
+@RequiredArgsConstructor
+public class RunTelemetry {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(RunTelemetry.class);
+
+    private final MeterRegistry meterRegistry;
+
+    // fraction of a limit from which a run is logged as saturating
+    @Value("${code.runner.telemetry.saturation:0.9}")
+    private double saturation;
+
+    public void record(
+            RunUsage usage,
+            String mode,
+            double cpus,
+            long memoryBytes,
+            UUID projectId,
+            UUID userId
+    ) {
+        if (usage == null) return;
+
+        Timer.builder("codeastras.run.wall")
+                .description("Wall time of a run")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofMillis(usage.wallMillis()));
+
+        DistributionSummary.builder("codeastras.run.output")
+                .description("Bytes a run wrote to stdout and stderr")
+                .baseUnit("bytes")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(usage.outputBytes());
+
+        if (usage.oomKilled()) {
+            meterRegistry.counter("codeastras.run.oom.killed", "mode", mode).increment();
+        }
+
+        Double cpuShare = null;
+        if (usage.cpuMillis() != null) {
+            Timer.builder("codeastras.run.cpu")
+                    .description("CPU time of a run, user plus system")
+                    .tag("mode", mode)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(Duration.ofMillis(usage.cpuMillis()));
+
+            if (usage.wallMillis() > 0 && cpus > 0) {
+                cpuShare = usage.cpuMillis() / (usage.wallMillis() * cpus);
+                DistributionSummary.builder("codeastras.run.cpu.utilization")
+                        .description("CPU time over wall time times the cpu limit")
+                        .tag("mode", mode)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(cpuShare);
+            }
+        }
+
+        Double memoryShare = null;
+        if (usage.peakMemoryBytes() != null) {
+            DistributionSummary.builder("codeastras.run.memory.peak")
+                    .description("Peak resident memory of a run")
+                    .baseUnit("bytes")
+                    .tag("mode", mode)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(usage.peakMemoryBytes());
+
+            if (memoryBytes > 0) {
+                memoryShare = (double) usage.peakMemoryBytes() / memoryBytes;
+                DistributionSummary.builder("codeastras.run.memory.utilization")
+                        .description("Peak resident memory over the memory limit")
+                        .tag("mode", mode)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(memoryShare);
+            }
+        }
+
+        boolean saturated = usage.oomKilled()
+                || (cpuShare != null && cpuShare >= saturation)
+                || (memoryShare != null && memoryShare >= saturation);
+
+        if (saturated) {
+            log.info("🔥 Run in project {} by user {} near its limits: wall={}ms cpu={}ms peak={}B oom={} (limits {} cpus, {}B)",
+                    projectId, userId, usage.wallMillis(), usage.cpuMillis(),
+                    usage.peakMemoryBytes(), usage.oomKilled(), cpus, memoryBytes);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.container.ContainerRuntime;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pre-started runner containers, one pool per image.
+ *
+ * Every container is bound (read-only) to its own slot directory and kept
+ * alive with {@code tail}. A run fills the slot with the project snapshot
+ * and execs the interpreter in it, so it skips image resolution,
+ * container creation and namespace setup. Containers are single use: they
+ * are removed after the run and the pool refills in the background.
+ *
+ * A slot remembers the last project it held, and leases prefer that slot,
+ * so a repeated run of the same project only re-links changed files.
+ */
+@Component
+@RequiredArgsConstructor
+public class RunnerPool {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(RunnerPool.class);
+
+    static final double RUNNER_CPUS = 0.5;
+    static final long RUNNER_MEMORY_BYTES = DataSize.ofMegabytes(256).toBytes();
+
+    private final MeterRegistry meterRegistry;
+    private final ContainerRuntime containerRuntime;
+    private final ExecutorService blockingExecutor;
+    private final NodeScope nodeScope;
+
+    @Value("${code.runner.pool.enabled:true}")
+    private boolean enabled;
+
+    // only the snapshot mode takes runners from the pool
+    @Value("${code.runner.mode:session}")
+    private String runnerMode;
+
+    @Value("${code.runner.pool.min-idle:2}")
+    private int minIdle;
+
+    @Value("${code.runner.pool.max-size:8}")
+    private int maxSize;
+
+    @Value("${code.runner.pool.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Value("${code.runner.python-image:codeastras-python-runner}")
+    private String pythonRunnerImage;
+
+    private final Map<String, ImagePool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * A leased container; return it with {@link #release(Lease)}.
+     */
+    public record Lease(String image, String containerName, Slot slot) {
+
+        public Path workspace() {
+            return slot.dir;
+        }
+    }
+
+    public static final class Slot {
+        private final Path dir;
+        private volatile UUID lastProject;
+
+        private Slot(Path dir) {
+            this.dir = dir;
+        }
+    }
+
+    private record Runner(String containerName, Slot slot) {}
+
+    @PostConstruct
+    public void start() {
+        enabled = enabled && "snapshot".equalsIgnoreCase(runnerMode);
+        if (!enabled) return;
+
+        blockingExecutor.submit(() -> {
+            removeOrphans();
+            pool(pythonRunnerImage).refill();
+        });
+    }
+
+    // ================= LEASE =================
+
+    /**
+     * @return a warm container, or empty when the pool is disabled or
+     *         exhausted for longer than the acquire timeout (caller cold-starts)
+     */
+    public Optional<Lease> acquire(String image, UUID projectId) {
+        if (!enabled) return Optional.empty();
+        return pool(image).acquire(projectId);
+    }
+
+    public void release(Lease lease) {
+        pool(lease.image()).retire(lease);
+    }
+
+    /**
+     * Records which project the slot now holds, for affinity on the next lease.
+     */
+    public void bind(Lease lease, UUID projectId) {
+        lease.slot().lastProject = projectId;
+    }
+
+    // keeps pools topped up after failed starts
+    @Scheduled(fixedDelay = 10_000)
+    public void maintain() {
+        if (!enabled) return;
+        pools.values().forEach(ImagePool::refill);
+    }
+
+    private ImagePool pool(String image) {
+        return pools.computeIfAbsent(image, ImagePool::new);
+    }
+
+    // ================= PER IMAGE =================
+
+    private final class ImagePool {
+
+        private final String image;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+
+        private final Deque<Runner> idle = new ArrayDeque<>();
+        private final Deque<Slot> freeSlots = new ArrayDeque<>();
+        private int total;     // idle + leased + starting
+        private int starting;
+        private int waiting;
+
+        private final Timer waitTimer;
+        private final Counter hits;
+        private final Counter misses;
+
+        ImagePool(String image) {
+            this.image = image;
+
+            this.waitTimer = Timer.builder("codeastras.runner.pool.wait")
+                    .description("Time to get a runner container from the pool")
+                    .tag("image", image)
+                    .register(meterRegistry);
+            this.hits = meterRegistry.counter("codeastras.runner.pool.hit", "image", image);
+            this.misses = meterRegistry.counter("codeastras.runner.pool.miss", "image", image);
+        }
+
+        Optional<Lease> acquire(UUID projectId) {
+            long startNanos = System.nanoTime();
+            long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+            boolean waited = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    Runner runner = takeIdle(projectId);
+                    if (runner != null) {
+                        (waited ? misses : hits).increment();
+                        return Optional.of(new Lease(image, runner.containerName(), runner.slot()));
+                    }
+
+                    // nothing idle: make sure a container is on its way for every waiter
+                    if (starting <= waiting && total < maxSize) {
+                        startOne();
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        misses.increment();
+                        return Optional.empty();
+                    }
+
+                    waited = true;
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                misses.increment();
+                return Optional.empty();
+            } finally {
+                lock.unlock();
+                waitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                blockingExecutor.submit(this::refill);
+            }
+        }
+
+        // prefers the slot that already holds this project
+        private Runner takeIdle(UUID projectId) {
+            Iterator<Runner> it = idle.iterator();
+            while (it.hasNext()) {
+                Runner r = it.next();
+                if (projectId.equals(r.slot().lastProject)) {
+                    it.remove();
+                    return r;
+                }
+            }
+            return idle.pollFirst();
+        }
+
+        void retire(Lease lease) {
+            containerRuntime.removeAsync(lease.containerName())
+                    .exceptionally(e -> {
+                        log.warn("Failed to remove runner {}", lease.containerName());
+                        return null;
+                    })
+                    .thenRun(() -> {
+                        lock.lock();
+                        try {
+                            total--;
+                            freeSlots.push(lease.slot());
+                        } finally {
+                            lock.unlock();
+                        }
+                        refill();
+                    });
+        }
+
+        void refill() {
+            lock.lock();
+            try {
+                while (idle.size() + starting < minIdle && total < maxSize) {
+                    startOne();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // caller holds the lock
+        private void startOne() {
+            total++;
+            starting++;
+
+            Slot slot = freeSlots.isEmpty()
+                    ? new Slot(nodeScope.basePath().resolve(".slots").resolve(UUID.randomUUID().toString()))
+                    : freeSlots.pop();
+            String name = newContainerName();
+
+            blockingExecutor.submit(() -> {
+                boolean ok = false;
+                try {
+                    Files.createDirectories(slot.dir);
+                    containerRuntime.run(ContainerRuntime.ContainerSpec.builder()
+                            .name(name)
+                            .image(image)
+                            .entrypoint(List.of("tail"))
+                            .cmd(List.of("-f", "/dev/null"))
+                            .workingDir("/workspace")
+                            .env(List.of("PYTHONDONTWRITEBYTECODE=1"))
+                            // read-only: the slot is hard-linked from the content store
+                            .binds(List.of(slot.dir.toAbsolutePath() + ":/workspace:ro"))
+                            .cpus(RUNNER_CPUS)
+                            .memoryBytes(RUNNER_MEMORY_BYTES)
+                            .networkDisabled(true)
+                            .build());
+                    ok = true;
+                } catch (Exception e) {
+                    log.warn("Could not start pooled runner for {}: {}", image, e.getMessage());
+                }
+
+                lock.lock();
+                try {
+                    starting--;
+                    if (ok) {
+                        idle.addLast(new Runner(name, slot));
+                    } else {
+                        total--;
+                        freeSlots.push(slot);
+                    }
+                    available.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+
+        void shutdown() {
+            lock.lock();
+            try {
+                idle.forEach(r -> removeContainer(r.containerName()));
+                idle.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ================= DOCKER =================
+
+    /**
+     * Name for a runner container of this node; {@link #removeOrphans}
+     * only removes names it handed out.
+     */
+    String newContainerName() {
+        return nodeScope.runnerContainerPrefix() + UUID.randomUUID();
+    }
+
+    private void removeOrphans() {
+        try {
+            for (String name : containerRuntime.listNames(nodeScope.runnerContainerPrefix())) {
+                log.warn("🧹 Removing orphan runner {}", name);
+                removeContainer(name);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to clean up orphan runners: {}", e.getMessage());
+        }
+    }
+
+    private void removeContainer(String name) {
+        try {
+            containerRuntime.remove(name);
+        } catch (Exception e) {
+            log.warn("Failed to remove runner {}", name);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(ImagePool::shutdown);
+    }
+}
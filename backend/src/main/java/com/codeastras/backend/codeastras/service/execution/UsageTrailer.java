@@ -0,0 +1,127 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.dto.execution.RunUsage;
+import com.codeastras.backend.codeastras.service.container.ContainerProcess;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Takes the runner's usage report out of a run's stderr.
+ *
+ * The runner ends stderr with one line {@code <marker> <cpu ms> <peak rss bytes> <oom 0|1>}.
+ * The marker is random per run, so a program cannot forge it by accident.
+ * Everything else is passed on unchanged; at most a marker's length of
+ * stderr is held back while it might be the start of the report.
+ *
+ * Called from the reader thread only.
+ */
+final class UsageTrailer implements ContainerProcess.OutputHandler {
+
+    private static final int MAX_REPORT_BYTES = 256;
+
+    private final byte[] marker;
+    private final ContainerProcess.OutputHandler next;
+
+    private byte[] held = new byte[0];
+    private long outputBytes;
+    private String report;
+
+    UsageTrailer(String marker, ContainerProcess.OutputHandler next) {
+        this.marker = marker.getBytes(StandardCharsets.US_ASCII);
+        this.next = next;
+    }
+
+    @Override
+    public void onOutput(ContainerProcess.Stream stream, byte[] data, int off, int len) {
+        if (stream != ContainerProcess.Stream.STDERR || report != null) {
+            pass(stream, data, off, len);
+            return;
+        }
+
+        byte[] buf = concat(held, data, off, len);
+        held = new byte[0];
+
+        int at = indexOf(buf, marker, 0);
+        if (at >= 0) {
+            int end = indexOf(buf, new byte[]{'\n'}, at);
+            if (end < 0 && buf.length - at <= MAX_REPORT_BYTES) {
+                pass(stream, buf, 0, at);
+                held = Arrays.copyOfRange(buf, at, buf.length);
+                return;
+            }
+            if (end >= 0) {
+                report = new String(buf, at + marker.length, end - at - marker.length, StandardCharsets.US_ASCII).trim();
+                pass(stream, buf, 0, at);
+                pass(stream, buf, end + 1, buf.length - end - 1);
+                return;
+            }
+        }
+
+        int keep = partialMarker(buf);
+        pass(stream, buf, 0, buf.length - keep);
+        held = Arrays.copyOfRange(buf, buf.length - keep, buf.length);
+    }
+
+    /**
+     * Releases stderr still held back. Call once the process output has ended.
+     */
+    void finish() {
+        if (held.length > 0) {
+            pass(ContainerProcess.Stream.STDERR, held, 0, held.length);
+            held = new byte[0];
+        }
+    }
+
+    RunUsage usage(long wallMillis) {
+        Long cpuMillis = null;
+        Long peakMemoryBytes = null;
+        boolean oomKilled = false;
+
+        if (report != null) {
+            String[] f = report.split(" ");
+            try {
+                cpuMillis = Long.parseLong(f[0]);
+                peakMemoryBytes = Long.parseLong(f[1]);
+                oomKilled = "1".equals(f[2]);
+            } catch (RuntimeException ignored) {
+                // a malformed report only costs the numbers
+            }
+        }
+
+        return new RunUsage(wallMillis, cpuMillis, peakMemoryBytes, outputBytes, oomKilled);
+    }
+
+    // ================= INTERNAL =================
+
+    private void pass(ContainerProcess.Stream stream, byte[] data, int off, int len) {
+        if (len <= 0) return;
+        outputBytes += len;
+        next.onOutput(stream, data, off, len);
+    }
+
+    // length of the longest suffix of buf that is a proper prefix of the marker
+    private int partialMarker(byte[] buf) {
+        for (int n = Math.min(marker.length - 1, buf.length); n > 0; n--) {
+            if (Arrays.equals(buf, buf.length - n, buf.length, marker, 0, n)) return n;
+        }
+        return 0;
+    }
+
+    private static int indexOf(byte[] buf, byte[] needle, int from) {
+        outer:
+        for (int i = from; i <= buf.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buf[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b, int off, int len) {
+        byte[] out = Arrays.copyOf(a, a.length + len);
+        System.arraycopy(b, off, out, a.length, len);
+        return out;
+    }
+}
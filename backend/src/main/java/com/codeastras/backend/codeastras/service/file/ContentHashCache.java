@@ -0,0 +1,65 @@
+package com.codeastras.backend.codeastras.service.file;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hash of the content last written through to DB, project disk and session,
+ * per file. A save whose hash matches is a no-op on every layer.
+ */
+@Component
+public class ContentHashCache {
+
+    private record Key(UUID projectId, String path) {}
+
+    private final Map<Key, String> hashes;
+
+    private final Counter skipped;
+    private final Counter skippedChars;
+
+    public ContentHashCache(
+            MeterRegistry meterRegistry,
+            @Value("${code.editor.save.hash-cache-size:10000}") int maxEntries
+    ) {
+        this.hashes = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > maxEntries;
+            }
+        });
+
+        this.skipped = Counter.builder("codeastras.file.save.skipped")
+                .description("Saves dropped because the content hash did not change")
+                .register(meterRegistry);
+
+        this.skippedChars = Counter.builder("codeastras.file.save.skipped.chars")
+                .description("Content not rewritten thanks to unchanged hashes")
+                .baseUnit("chars")
+                .register(meterRegistry);
+    }
+
+    public boolean isUnchanged(UUID projectId, String path, String hash) {
+        return hash != null && hash.equals(hashes.get(new Key(projectId, path)));
+    }
+
+    public void remember(UUID projectId, String path, String hash) {
+        if (hash == null) return;
+        hashes.put(new Key(projectId, path), hash);
+    }
+
+    public void forget(UUID projectId, String path) {
+        hashes.remove(new Key(projectId, path));
+    }
+
+    public void recordSkip(int length) {
+        skipped.increment();
+        skippedChars.increment(length);
+    }
+}
@@ -0,0 +1,161 @@
+package com.codeastras.backend.codeastras.service.file;
+
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed copy of every file body the runner has needed,
+ * stored once as {@code .cas/ab/abcdef...} (sha-256 hex).
+ *
+ * Snapshot directories hard-link these objects, so an unchanged file
+ * costs one link() instead of a write, and deleting a snapshot never
+ * touches the data. Objects are never modified in place; anything that
+ * mounts a linked tree must do so read-only.
+ *
+ * Linking holds the read side of {@code gcLock} and garbage collection the
+ * write side, so an object is never collected between being found and
+ * being linked.
+ */
+@Component
+public class ContentStore {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ContentStore.class);
+
+    private static final Duration GC_GRACE = Duration.ofHours(1);
+
+    private final Path root;
+    private final ReadWriteLock gcLock = new ReentrantReadWriteLock();
+
+    public ContentStore(NodeScope nodeScope) {
+        this.root = nodeScope.basePath().resolve(".cas");
+
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create content store", e);
+        }
+    }
+
+    public boolean contains(String hash) {
+        return hash != null && Files.isRegularFile(objectPath(hash));
+    }
+
+    /**
+     * Makes {@code target} the stored object for {@code hash}.
+     *
+     * @return false, linking nothing, if the object is not (or no longer)
+     *         stored; the caller then has to supply the content
+     */
+    public boolean linkInto(String hash, Path target) throws IOException {
+        gcLock.readLock().lock();
+        try {
+            Path object = objectPath(hash);
+            if (!Files.isRegularFile(object)) return false;
+
+            link(object, target);
+            return true;
+        } finally {
+            gcLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores {@code content} under {@code hash} unless it is already there,
+     * then makes {@code target} that object.
+     */
+    public void linkInto(String hash, String content, Path target) throws IOException {
+        gcLock.readLock().lock();
+        try {
+            put(hash, content);
+            link(objectPath(hash), target);
+        } finally {
+            gcLock.readLock().unlock();
+        }
+    }
+
+    private void put(String hash, String content) throws IOException {
+        Path object = objectPath(hash);
+        if (Files.isRegularFile(object)) return;
+
+        Files.createDirectories(object.getParent());
+
+        Path tmp = Files.createTempFile(object.getParent(), hash, ".tmp");
+        try {
+            Files.writeString(tmp, content == null ? "" : content, StandardCharsets.UTF_8);
+            Files.move(tmp, object, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException raced) {
+            // someone else stored the same bytes first
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // a hard link when the filesystem allows it, a plain copy otherwise
+    private void link(Path object, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+
+        try {
+            Files.createLink(target, object);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(object, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // objects no snapshot links to any more (link count 1) are dropped after a grace period
+    @Scheduled(fixedDelay = 3_600_000)
+    public void collectGarbage() {
+        Instant cutoff = Instant.now().minus(GC_GRACE);
+        int removed = 0;
+
+        try (Stream<Path> objects = Files.walk(root, 2)) {
+            for (Path object : objects.filter(Files::isRegularFile).toList()) {
+                try {
+                    Object links = Files.getAttribute(object, "unix:nlink");
+                    boolean orphan = links instanceof Integer n && n <= 1;
+
+                    if (orphan && Files.getLastModifiedTime(object).toInstant().isBefore(cutoff)
+                            && deleteIfOrphan(object)) {
+                        removed++;
+                    }
+                } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                    return; // no link counts on this platform → keep everything
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Content store GC failed", e);
+        }
+
+        if (removed > 0) {
+            log.info("Content store GC removed {} objects", removed);
+        }
+    }
+
+    // re-checked under the write lock: a link may have been made since the scan looked
+    private boolean deleteIfOrphan(Path object) throws IOException {
+        gcLock.writeLock().lock();
+        try {
+            Object links = Files.getAttribute(object, "unix:nlink");
+            return links instanceof Integer n && n <= 1 && Files.deleteIfExists(object);
+        } finally {
+            gcLock.writeLock().unlock();
+        }
+    }
+
+    private Path objectPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -1,16 +1,55 @@
 package com.codeastras.backend.codeastras.service.file;
 
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.exception.ForbiddenException;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileBatchRepository.ContentUpdate;
+import com.codeastras.backend.codeastras.security.ProjectAccessManager;
+import com.codeastras.backend.codeastras.security.ProjectPermission;
 import com.codeastras.backend.codeastras.service.PendingEdit;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.DocumentBroadcaster;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * Debounces edits per file and writes them in group commits.
+ *
+ * Projects are spread over {@code shards} single-threaded schedulers by
+ * hash, so a slow commit only holds up the projects of its own shard while
+ * each project's saves stay in order.
+ *
+ * Each shard's ticker collects every edit that is due (quiet for
+ * {@code debounce-ms}, or dirty for {@code max-latency-ms} while typing
+ * continues) across its projects and commits up to {@code max-batch-size} of them in a single
+ * JDBC batch. Filesystem and session writes follow once the batch is committed.
+ *
+ * Access was checked when each edit was accepted, but a collaborator can be
+ * removed while their edit waits. A commit therefore re-checks UPDATE_FILE
+ * for the last editor of each file, once per project and user per batch.
+ * If that editor lost it, the live document is reverted to what the DB holds
+ * and the revert is broadcast, so the refused content is neither served nor
+ * saved later by someone else.
+ */
 @Component
 @RequiredArgsConstructor
 public class DebouncedFileSaveManager {
@@ -18,65 +57,72 @@ public class DebouncedFileSaveManager {
     private static final Logger log =
             LoggerFactory.getLogger(DebouncedFileSaveManager.class);
 
-    private static final long DEBOUNCE_MS = 500;
-
     private final FileService fileService;
+    private final EditJournal journal;
+    private final ContentHashCache hashCache;
+    private final MeterRegistry meterRegistry;
+    private final ProjectAccessManager accessManager;
+    private final DocumentBroadcaster documentBroadcaster;
 
-    private final ScheduledExecutorService scheduler =
-            Executors.newSingleThreadScheduledExecutor(r -> {
-                Thread t = new Thread(r, "debounced-file-save");
-                t.setDaemon(true);
-                return t;
-            });
+    @Value("${code.editor.save.debounce-ms:500}")
+    private long debounceMs;
 
-    /**
-     * key = projectId:path
-     */
-    private final Map<String, PendingEdit> pendingEdits = new ConcurrentHashMap<>();
-    private final Map<String, ScheduledFuture<?>> pendingTasks = new ConcurrentHashMap<>();
+    @Value("${code.editor.save.max-latency-ms:2000}")
+    private long maxLatencyMs;
+
+    @Value("${code.editor.save.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${code.editor.save.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${code.editor.save.shards:4}")
+    private int shardCount;
+
+    private Shard[] shards;
+
+    private DistributionSummary batchSize;
+    private Timer commitTimer;
+
+    @PostConstruct
+    public void start() {
+        batchSize = DistributionSummary.builder("codeastras.file.save.batch.size")
+                .description("Files written per group commit")
+                .register(meterRegistry);
+
+        commitTimer = Timer.builder("codeastras.file.save.batch.commit")
+                .description("Time spent committing one save batch")
+                .register(meterRegistry);
+
+        shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
 
     // DEBOUNCED SAVE
     public void scheduleSave(
-            UUID projectId,
-            String path,
-            String content,
+            CollaborativeDocument document,
+            CollaborativeDocument.Applied applied,
             UUID userId
     ) {
-        if (projectId == null || path == null || path.isBlank()) return;
-
-        // Normalize path ONCE
-        String safePath = path.replace("\\", "/").replaceAll("/{2,}", "/");
-        String key = projectId + ":" + safePath;
 
-        pendingEdits.put(
-                key,
-                new PendingEdit(projectId, safePath, content, userId)
-        );
+        if (document == null) return;
 
-        ScheduledFuture<?> existing = pendingTasks.remove(key);
-        if (existing != null) {
-            existing.cancel(false);
+        // full-content resend of what is already stored
+        if (applied == null && !document.isDirty()) {
+            hashCache.recordSkip(document.snapshot().content().length());
+            return;
         }
 
-        ScheduledFuture<?> future = scheduler.schedule(() -> {
-            try {
-                PendingEdit edit = pendingEdits.remove(key);
-                if (edit != null) {
-                    fileService.save(
-                            edit.projectId(),
-                            edit.path(),
-                            edit.content(),
-                            edit.userId()
-                    );
-                }
-            } catch (Exception e) {
-                log.error("Debounced save failed", e);
-            } finally {
-                pendingTasks.remove(key);
-            }
-        }, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        boolean becameDirty = shardFor(document.getProjectId()).schedule(document, userId);
 
-        pendingTasks.put(key, future);
+        // WAL: full content once per dirty period, just the delta after that
+        if (becameDirty) {
+            journal.appendBase(document);
+        } else {
+            journal.appendOperation(document, applied);
+        }
     }
 
     // HARD GUARANTEE BEFORE EXECUTION
@@ -84,42 +130,345 @@ public class DebouncedFileSaveManager {
 
         log.info("Flushing pending edits for project {}", projectId);
 
-        var keysToFlush = pendingEdits.keySet().stream()
-                .filter(key -> key.startsWith(projectId.toString() + ":"))
-                .toList();
+        Shard shard = shardFor(projectId);
 
-        for (String key : keysToFlush) {
+        // runs on the shard thread, so it also waits for a tick already committing this project
+        Future<?> flush = shard.executor.submit(() -> shard.flush(projectId));
 
-            PendingEdit edit = pendingEdits.remove(key);
-            if (edit == null) continue;
+        try {
+            flush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Flush failed for project {}", projectId, e.getCause());
+        }
+    }
 
-            ScheduledFuture<?> task = pendingTasks.remove(key);
-            if (task != null) task.cancel(false);
+    // EXPLICIT SAVE OF A HOT FILE
+    /**
+     * Writes the document's current content right away, on its project's
+     * shard: a group commit already running for the project finishes first,
+     * so an older snapshot can never overwrite this one.
+     */
+    public ProjectFile saveNow(CollaborativeDocument document, UUID userId) {
 
-            try {
-                fileService.save(
-                        edit.projectId(),
-                        edit.path(),
-                        edit.content(),
-                        edit.userId()
+        Future<ProjectFile> save = shardFor(document.getProjectId()).executor.submit(() -> {
+            CollaborativeDocument.Snapshot snapshot = document.snapshot();
+            ProjectFile saved = fileService.persist(
+                    document.getProjectId(), document.getPath(), snapshot.content(), userId);
+
+            document.markPersisted(snapshot.revision());
+            journal.markCommitted(document, snapshot.revision());
+            return saved;
+        });
+
+        try {
+            return save.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while saving " + document.getPath(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Save of " + document.getPath() + " failed", e.getCause());
+        }
+    }
+
+    private Shard shardFor(UUID projectId) {
+        return shards[Math.floorMod(projectId.hashCode(), shards.length)];
+    }
+
+    // ================= SHARD =================
+
+    /**
+     * One single-threaded scheduler and its pending edits.
+     * A project always maps to the same shard, so its saves stay ordered.
+     */
+    private final class Shard {
+
+        private final ScheduledExecutorService executor;
+
+        /**
+         * projectId -> (path -> edit).
+         * Inner maps are only touched inside the outer map's compute, so
+         * taking a whole project out with remove() is atomic.
+         */
+        private final Map<UUID, Map<String, PendingEdit>> pendingEdits = new ConcurrentHashMap<>();
+
+        private final AtomicInteger depth = new AtomicInteger();
+        private final Timer lag;
+
+        Shard(int index) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "debounced-file-save-" + index);
+                t.setDaemon(true);
+                return t;
+            });
+
+            Gauge.builder("codeastras.file.save.shard.queue.depth", depth, AtomicInteger::get)
+                    .description("Dirty files waiting for a group commit")
+                    .tag("shard", String.valueOf(index))
+                    .register(meterRegistry);
+
+            this.lag = Timer.builder("codeastras.file.save.shard.lag")
+                    .description("How long a due edit waited before its shard picked it up")
+                    .tag("shard", String.valueOf(index))
+                    .register(meterRegistry);
+
+            executor.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return true if the file was clean until now
+         */
+        boolean schedule(CollaborativeDocument document, UUID userId) {
+
+            long now = System.nanoTime();
+            boolean[] first = new boolean[1];
+
+            pendingEdits.compute(document.getProjectId(), (projectId, files) -> {
+                if (files == null) files = new HashMap<>();
+
+                PendingEdit previous = files.get(document.getPath());
+                long queuedAt = previous == null ? now : previous.queuedAt();
+                long dueAt = Math.min(
+                        now + TimeUnit.MILLISECONDS.toNanos(debounceMs),
+                        queuedAt + TimeUnit.MILLISECONDS.toNanos(maxLatencyMs)
                 );
-                log.info("Flushed and saved: {}", edit.path());
+
+                // typing past the latency cap changes nothing
+                if (previous != null
+                        && previous.dueAt() == dueAt
+                        && previous.document() == document
+                        && userId.equals(previous.userId())) {
+                    return files;
+                }
+
+                files.put(document.getPath(), new PendingEdit(
+                        projectId,
+                        document.getPath(),
+                        document,
+                        userId,
+                        queuedAt,
+                        dueAt
+                ));
+                if (previous == null) {
+                    depth.incrementAndGet();
+                    first[0] = true;
+                }
+                return files;
+            });
+
+            return first[0];
+        }
+
+        void flush(UUID projectId) {
+
+            Map<String, PendingEdit> files = pendingEdits.remove(projectId);
+            if (files == null) return;
+
+            depth.addAndGet(-files.size());
+            commitAll(new ArrayList<>(files.values()));
+        }
+
+        // GROUP COMMIT TICK
+        private void tick() {
+            try {
+                List<PendingEdit> batch;
+                do {
+                    batch = collectDue(System.nanoTime());
+                    if (!batch.isEmpty()) {
+                        commit(batch, this::requeue);
+                    }
+                } while (batch.size() == maxBatchSize);
             } catch (Exception e) {
-                log.error("Flush failed for {}", key, e);
+                log.error("Group commit tick failed", e);
+            }
+        }
+
+        private List<PendingEdit> collectDue(long now) {
+
+            List<PendingEdit> batch = new ArrayList<>();
+
+            for (UUID projectId : pendingEdits.keySet()) {
+                if (batch.size() >= maxBatchSize) break;
+
+                pendingEdits.computeIfPresent(projectId, (id, files) -> {
+                    Iterator<PendingEdit> it = files.values().iterator();
+                    while (it.hasNext() && batch.size() < maxBatchSize) {
+                        PendingEdit edit = it.next();
+                        if (edit.dueAt() - now > 0) continue;
+
+                        it.remove();
+                        depth.decrementAndGet();
+                        lag.record(now - edit.dueAt(), TimeUnit.NANOSECONDS);
+                        batch.add(edit);
+                    }
+                    return files.isEmpty() ? null : files;
+                });
+            }
+            return batch;
+        }
+
+        private void commitAll(List<PendingEdit> edits) {
+            for (int from = 0; from < edits.size(); from += maxBatchSize) {
+                commit(edits.subList(from, Math.min(edits.size(), from + maxBatchSize)), this::requeue);
+            }
+        }
+
+        private void requeue(PendingEdit failed) {
+            long retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMs);
+
+            pendingEdits.compute(failed.projectId(), (projectId, files) -> {
+                if (files == null) files = new HashMap<>();
+
+                // a newer edit of the same file already supersedes it
+                if (files.putIfAbsent(failed.path(), new PendingEdit(
+                        projectId,
+                        failed.path(),
+                        failed.document(),
+                        failed.userId(),
+                        failed.queuedAt(),
+                        retryAt
+                )) == null) {
+                    depth.incrementAndGet();
+                }
+                return files;
+            });
+        }
+
+        void shutdown() {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+
+            // last chance for whatever is still dirty
+            for (UUID projectId : List.copyOf(pendingEdits.keySet())) {
+                flush(projectId);
             }
         }
     }
 
-    @PreDestroy
-    public void shutdown() {
-        scheduler.shutdown();
+    // ================= COMMIT =================
+
+    private record Editor(UUID projectId, UUID userId) {}
+
+    private void commit(List<PendingEdit> edits, Consumer<PendingEdit> onFailure) {
+
+        List<PendingEdit> batch = new ArrayList<>(edits.size());
+        List<CollaborativeDocument.Snapshot> snapshots = new ArrayList<>(edits.size());
+        List<ContentUpdate> updates = new ArrayList<>(edits.size());
+        Map<Editor, Boolean> mayWrite = new HashMap<>();
+
+        for (PendingEdit edit : edits) {
+            Boolean allowed;
+            try {
+                allowed = mayWrite.computeIfAbsent(new Editor(edit.projectId(), edit.userId()), this::canWrite);
+            } catch (RuntimeException e) {
+                log.error("Access check failed for {}:{}, requeueing", edit.projectId(), edit.path(), e);
+                onFailure.accept(edit);
+                continue;
+            }
+
+            if (!allowed) {
+                revert(edit, onFailure);
+                continue;
+            }
+
+            CollaborativeDocument.Snapshot snapshot = edit.document().snapshot();
+
+            String hash = ProjectFile.hashOf(snapshot.content());
+
+            // typed and undone, or a resend of the same buffer
+            if (hashCache.isUnchanged(edit.projectId(), edit.path(), hash)) {
+                edit.document().markPersisted(snapshot.revision());
+                journal.markCommitted(edit.document(), snapshot.revision());
+                hashCache.recordSkip(snapshot.content().length());
+                continue;
+            }
+
+            batch.add(edit);
+            snapshots.add(snapshot);
+            updates.add(new ContentUpdate(edit.projectId(), edit.path(), snapshot.content(), hash));
+        }
+
+        if (batch.isEmpty()) return;
+
+        int[] counts;
         try {
-            if (!scheduler.awaitTermination(2, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
+            counts = commitTimer.recordCallable(() -> fileService.persistBatch(updates));
+        } catch (Exception e) {
+            log.error("Group commit of {} files failed, requeueing", batch.size(), e);
+            batch.forEach(onFailure);
+            return;
+        }
+
+        batchSize.record(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEdit edit = batch.get(i);
+            CollaborativeDocument.Snapshot snapshot = snapshots.get(i);
+
+            edit.document().markPersisted(snapshot.revision());
+            journal.markCommitted(edit.document(), snapshot.revision());
+
+            // the row is gone (deleted / renamed) → nothing left to save
+            if (i < counts.length && counts[i] == 0) {
+                log.warn("Dropped save for missing file {}:{}", edit.projectId(), edit.path());
+                hashCache.forget(edit.projectId(), edit.path());
+                continue;
             }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+
+            fileService.writeThrough(edit.projectId(), edit.path(), snapshot.content());
+            hashCache.remember(edit.projectId(), edit.path(), updates.get(i).contentHash());
+        }
+    }
+
+    // the edit's author lost UPDATE_FILE: back to the stored content, for everyone
+    private void revert(PendingEdit edit, Consumer<PendingEdit> onFailure) {
+        Optional<String> stored;
+        try {
+            stored = fileService.storedContent(edit.projectId(), edit.path());
+        } catch (RuntimeException e) {
+            log.error("Could not load {}:{} to revert it, requeueing", edit.projectId(), edit.path(), e);
+            onFailure.accept(edit);
+            return;
+        }
+
+        CollaborativeDocument doc = edit.document();
+        long clean;
+        if (stored.isPresent()) {
+            clean = doc.revert(stored.get(), applied ->
+                    documentBroadcaster.publish(edit.projectId(), null, edit.path(), applied, null));
+        } else {
+            // the row is gone (deleted / renamed) → nothing to save or revert to
+            clean = doc.snapshot().revision();
+            doc.markPersisted(clean);
+        }
+        journal.markCommitted(doc, clean);
+
+        log.warn("Reverted unsaved edits of {}:{}, user {} may no longer edit the project",
+                edit.projectId(), edit.path(), edit.userId());
+    }
+
+    private boolean canWrite(Editor editor) {
+        try {
+            accessManager.require(editor.projectId(), editor.userId(), ProjectPermission.UPDATE_FILE);
+            return true;
+        } catch (ForbiddenException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.shutdown();
         }
     }
 }
@@ -0,0 +1,469 @@
+package com.codeastras.backend.codeastras.service.file;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileBatchRepository.ContentUpdate;
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.TextOperation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal for edits that are accepted but not yet committed.
+ *
+ * Records are appended to memory-mapped segment files and forced to disk
+ * every {@code fsync-ms}. When a file first becomes dirty its full content
+ * is journaled (BASE); every later edit only journals the operation (OP).
+ * A group commit journals a COMMIT mark, and a segment is deleted once
+ * every file it mentions is committed past what it holds.
+ *
+ * On startup, leftover segments are replayed: newest BASE per file, then
+ * its operations in revision order, unless a COMMIT already covers them.
+ * Replay runs once all beans exist but before the web server and the STOMP
+ * broker start, so no document can be opened (and edited) from the stale
+ * DB content it is about to overwrite.
+ *
+ * Record layout:
+ *   int length | int crc32 | byte type | long revision
+ *   | uuid projectId | short pathLen | path | payload
+ */
+@Component
+@RequiredArgsConstructor
+public class EditJournal implements SmartInitializingSingleton {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(EditJournal.class);
+
+    private static final byte BASE = 1;
+    private static final byte OP = 2;
+    private static final byte COMMIT = 3;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private final FileService fileService;
+    private final NodeScope nodeScope;
+
+    @Value("${code.editor.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${code.editor.journal.path:${codeastras.storage.root:${user.home}/codeastras}/journal}")
+    private String journalPath;
+
+    @Value("${code.editor.journal.segment-bytes:16777216}")
+    private int segmentBytes;
+
+    private Path dir;
+
+    // segments left over from the previous run, replayed before traffic is accepted
+    private List<Path> recovered = List.of();
+
+    // closed segments still holding uncommitted edits
+    private final Deque<Segment> closed = new ArrayDeque<>();
+    private Segment active;
+    private long nextSequence;
+
+    // "projectId:path" -> highest committed revision
+    private final Map<String, Long> committed = new HashMap<>();
+
+    private static final class Segment {
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // "projectId:path" -> highest revision journaled here
+        final Map<String, Long> revisions = new HashMap<>();
+        boolean dirty;
+
+        Segment(Path file, int size) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) return;
+
+        // per node, so nodes sharing a host never replay each other's edits
+        dir = Paths.get(journalPath).toAbsolutePath().normalize().resolve(nodeScope.nodeId());
+        Files.createDirectories(dir);
+
+        recovered = listSegments();
+        nextSequence = recovered.isEmpty() ? 0 : sequenceOf(recovered.get(recovered.size() - 1)) + 1;
+
+        active = newSegment(segmentBytes);
+    }
+
+    // ================= APPEND =================
+
+    /**
+     * Full content of a file that just became dirty.
+     */
+    public void appendBase(CollaborativeDocument document) {
+        if (!enabled) return;
+
+        CollaborativeDocument.Snapshot snapshot = document.snapshot();
+        append(BASE, document, snapshot.revision(), snapshot.content().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void appendOperation(CollaborativeDocument document, CollaborativeDocument.Applied applied) {
+        if (!enabled || applied == null) return;
+
+        append(OP, document, applied.revision(), encode(applied.operation()));
+    }
+
+    /**
+     * Everything up to {@code revision} is in the DB; segments only holding
+     * older state can go.
+     */
+    public void markCommitted(CollaborativeDocument document, long revision) {
+        if (!enabled) return;
+
+        append(COMMIT, document, revision, new byte[0]);
+
+        synchronized (this) {
+            committed.merge(keyOf(document), revision, Math::max);
+            releaseClosedSegments();
+        }
+    }
+
+    private void append(byte type, CollaborativeDocument document, long revision, byte[] payload) {
+
+        byte[] path = document.getPath().getBytes(StandardCharsets.UTF_8);
+        int length = 4 + 1 + 8 + 16 + 2 + path.length + payload.length;
+
+        ByteBuffer body = ByteBuffer.allocate(length - 4)
+                .put(type)
+                .putLong(revision)
+                .putLong(document.getProjectId().getMostSignificantBits())
+                .putLong(document.getProjectId().getLeastSignificantBits())
+                .putShort((short) path.length)
+                .put(path)
+                .put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+
+        synchronized (this) {
+            try {
+                // + 4 for the zero length that marks the end of a segment
+                if (active.buffer.remaining() < 4 + length + 4) {
+                    roll(4 + length + 4);
+                }
+
+                active.buffer
+                        .putInt(length)
+                        .putInt((int) crc.getValue())
+                        .put(body.array());
+
+                active.revisions.merge(keyOf(document), revision, Math::max);
+                active.dirty = true;
+            } catch (IOException e) {
+                log.error("Edit journal append failed for {}", document.getPath(), e);
+            }
+        }
+    }
+
+    // ================= DURABILITY =================
+
+    @Scheduled(fixedDelayString = "${code.editor.journal.fsync-ms:200}")
+    public void sync() {
+        Segment segment;
+        synchronized (this) {
+            if (!enabled || active == null || !active.dirty) return;
+            segment = active;
+            segment.dirty = false;
+        }
+        segment.buffer.force();
+    }
+
+    private void roll(int minSize) throws IOException {
+        active.buffer.force();
+        closed.addLast(active);
+        active = newSegment(Math.max(segmentBytes, minSize));
+        releaseClosedSegments();
+    }
+
+    private void releaseClosedSegments() {
+        Iterator<Segment> it = closed.iterator();
+        while (it.hasNext()) {
+            Segment segment = it.next();
+
+            boolean clean = segment.revisions.entrySet().stream()
+                    .allMatch(e -> committed.getOrDefault(e.getKey(), Long.MIN_VALUE) >= e.getValue());
+
+            if (clean) {
+                it.remove();
+                close(segment);
+                delete(segment.file);
+            }
+        }
+
+        // forget commit marks no remaining segment refers to
+        committed.keySet().removeIf(key ->
+                !active.revisions.containsKey(key)
+                        && closed.stream().noneMatch(s -> s.revisions.containsKey(key))
+        );
+    }
+
+    // ================= REPLAY =================
+
+    private record FileKey(UUID projectId, String path) {}
+
+    private static final class FileState {
+        long baseRevision = Long.MIN_VALUE;
+        String base;
+        long committedRevision = Long.MIN_VALUE;
+        final TreeMap<Long, byte[]> operations = new TreeMap<>();
+    }
+
+    /**
+     * Not ApplicationReadyEvent: by then the web server and the broker take
+     * traffic, and an edit could open a document from the stale DB row
+     * before replay writes the journaled content over it, losing one or
+     * the other. Singletons are instantiated before any of that starts.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        replay();
+    }
+
+    public void replay() {
+        if (!enabled || recovered.isEmpty()) return;
+
+        Map<FileKey, FileState> files = new LinkedHashMap<>();
+
+        for (Path segment : recovered) {
+            try {
+                read(segment, files);
+            } catch (IOException e) {
+                log.error("Unreadable journal segment {}", segment, e);
+            }
+        }
+
+        List<ContentUpdate> updates = new ArrayList<>();
+
+        files.forEach((key, state) -> {
+            if (state.base == null) return;
+
+            String content = state.base;
+            long revision = state.baseRevision;
+
+            for (Map.Entry<Long, byte[]> op : state.operations.tailMap(revision, false).entrySet()) {
+                if (op.getKey() != revision + 1) {
+                    log.warn("Journal gap for {} after revision {}", key.path(), revision);
+                    break;
+                }
+                try {
+                    content = decode(op.getValue()).apply(content);
+                    revision = op.getKey();
+                } catch (IllegalArgumentException e) {
+                    log.warn("Journal operation does not apply to {} at {}", key.path(), op.getKey());
+                    break;
+                }
+            }
+
+            if (state.committedRevision >= revision) return;
+
+            updates.add(new ContentUpdate(key.projectId(), key.path(), content, ProjectFile.hashOf(content)));
+        });
+
+        try {
+            if (!updates.isEmpty()) {
+                int[] counts = fileService.persistBatch(updates);
+                for (int i = 0; i < updates.size(); i++) {
+                    if (i < counts.length && counts[i] == 0) continue;
+                    ContentUpdate u = updates.get(i);
+                    fileService.writeThrough(u.projectId(), u.path(), u.content());
+                }
+            }
+
+            log.info("Recovered {} unsaved files from the edit journal", updates.size());
+        } catch (Exception e) {
+            // keep the segments so the next start can try again
+            log.error("Edit journal replay failed", e);
+            return;
+        }
+
+        recovered.forEach(this::delete);
+        recovered = List.of();
+    }
+
+    private void read(Path segment, Map<FileKey, FileState> files) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            while (buf.remaining() >= 8) {
+                int length = buf.getInt();
+                if (length <= 4 || length > buf.remaining()) break; // end or torn tail
+
+                int crc = buf.getInt();
+                byte[] body = new byte[length - 4];
+                buf.get(body);
+
+                CRC32 check = new CRC32();
+                check.update(body);
+                if ((int) check.getValue() != crc) break;
+
+                ByteBuffer r = ByteBuffer.wrap(body);
+                byte type = r.get();
+                long revision = r.getLong();
+                UUID projectId = new UUID(r.getLong(), r.getLong());
+                byte[] path = new byte[r.getShort() & 0xFFFF];
+                r.get(path);
+                byte[] payload = new byte[r.remaining()];
+                r.get(payload);
+
+                FileState state = files.computeIfAbsent(
+                        new FileKey(projectId, new String(path, StandardCharsets.UTF_8)),
+                        k -> new FileState()
+                );
+
+                switch (type) {
+                    case BASE -> {
+                        if (revision > state.baseRevision) {
+                            state.baseRevision = revision;
+                            state.base = new String(payload, StandardCharsets.UTF_8);
+                        }
+                    }
+                    case OP -> state.operations.put(revision, payload);
+                    case COMMIT -> state.committedRevision = Math.max(state.committedRevision, revision);
+                    default -> log.warn("Unknown journal record type {} in {}", type, segment);
+                }
+            }
+        }
+    }
+
+    // ================= OPERATION CODEC =================
+
+    private static byte[] encode(TextOperation op) {
+        List<Object> wire = op.toWire();
+
+        int size = 4;
+        List<byte[]> inserts = new ArrayList<>();
+        for (Object c : wire) {
+            if (c instanceof String s) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                inserts.add(b);
+                size += 1 + 4 + b.length;
+            } else {
+                size += 1 + 4;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size).putInt(wire.size());
+        int next = 0;
+        for (Object c : wire) {
+            if (c instanceof String) {
+                byte[] b = inserts.get(next++);
+                out.put((byte) 'I').putInt(b.length).put(b);
+            } else {
+                out.put((byte) 'N').putInt((Integer) c);
+            }
+        }
+        return out.array();
+    }
+
+    private static TextOperation decode(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        int count = in.getInt();
+
+        List<Object> wire = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.get() == 'I') {
+                byte[] b = new byte[in.getInt()];
+                in.get(b);
+                wire.add(new String(b, StandardCharsets.UTF_8));
+            } else {
+                wire.add(in.getInt());
+            }
+        }
+        return TextOperation.fromWire(wire);
+    }
+
+    // ================= FILES =================
+
+    private Segment newSegment(int size) throws IOException {
+        Path file = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        return new Segment(file, size);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(EditJournal::sequenceOf))
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String keyOf(CollaborativeDocument document) {
+        return document.getProjectId() + ":" + document.getPath();
+    }
+
+    private void close(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close journal segment {}", segment.file);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete journal segment {}", file);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!enabled || active == null) return;
+
+        active.buffer.force();
+        close(active);
+        closed.forEach(this::close);
+
+        // everything reached the DB → nothing to replay next time
+        boolean clean = Stream.concat(Stream.of(active), closed.stream())
+                .flatMap(segment -> segment.revisions.entrySet().stream())
+                .allMatch(e -> committed.getOrDefault(e.getKey(), Long.MIN_VALUE) >= e.getValue());
+
+        if (clean) {
+            delete(active.file);
+            closed.forEach(segment -> delete(segment.file));
+        }
+    }
+}
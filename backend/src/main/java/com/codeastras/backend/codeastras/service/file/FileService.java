@@ -1,15 +1,21 @@
 package com.codeastras.backend.codeastras.service.file;
 
 import com.codeastras.backend.codeastras.config.StorageProperties;
+import com.codeastras.backend.codeastras.dto.project.ProjectFileContentDto;
 import com.codeastras.backend.codeastras.entity.file.ProjectFile;
 import com.codeastras.backend.codeastras.exception.ResourceNotFoundException;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileBatchRepository;
 import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
 import com.codeastras.backend.codeastras.security.ProjectAccessManager;
 import com.codeastras.backend.codeastras.security.ProjectPermission;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.DocumentBroadcaster;
+import com.codeastras.backend.codeastras.service.document.DocumentStore;
 import com.codeastras.backend.codeastras.store.SessionRegistry;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -28,10 +35,16 @@ public class FileService {
             LoggerFactory.getLogger(FileService.class);
 
     private final ProjectFileRepository fileRepo;
+    private final ProjectFileBatchRepository batchRepo;
     private final ProjectAccessManager accessManager;
     private final FileSyncService fileSyncService;
     private final SessionRegistry sessionRegistry;
     private final StorageProperties storageProperties;
+    private final DocumentStore documentStore;
+    private final DocumentBroadcaster documentBroadcaster;
+    private final ContentHashCache contentHashCache;
+    // lazy: the save manager commits through this service
+    private final ObjectProvider<DebouncedFileSaveManager> saveManager;
 
     // READS
     public List<ProjectFile> findAll(UUID projectId, UUID userId) {
@@ -44,6 +57,12 @@ public class FileService {
 
         String safePath = fileSyncService.sanitizeUserPath(path);
 
+        // Hot file → served from memory, no DB round-trip
+        Optional<CollaborativeDocument> live = documentStore.find(projectId, safePath);
+        if (live.isPresent()) {
+            return live.get().toProjectFile();
+        }
+
         ProjectFile file =
                 fileRepo.findByProjectIdAndPath(projectId, safePath);
 
@@ -53,6 +72,40 @@ public class FileService {
         return file;
     }
 
+    /**
+     * Content plus the live revision clients base delta edits on.
+     * Opening the document makes the file hot for follow-up reads.
+     */
+    public ProjectFileContentDto readFile(UUID projectId, String path, UUID userId) {
+        accessManager.require(projectId, userId, ProjectPermission.READ_FILE);
+
+        String safePath = fileSyncService.sanitizeUserPath(path);
+
+        CollaborativeDocument doc = documentStore.find(projectId, safePath).orElse(null);
+
+        if (doc == null) {
+            ProjectFile file =
+                    fileRepo.findByProjectIdAndPath(projectId, safePath);
+
+            if (file == null) {
+                throw new ResourceNotFoundException("File not found: " + safePath);
+            }
+            if (!"FILE".equalsIgnoreCase(file.getType())) {
+                return ProjectFileContentDto.from(file);
+            }
+            doc = documentStore.open(file);
+        }
+
+        ProjectFile view = doc.toProjectFile();
+        return ProjectFileContentDto.from(view, doc.getRevision());
+    }
+
+    // STORED CONTENT (DB only, bypasses the live document)
+    public Optional<String> storedContent(UUID projectId, String safePath) {
+        return Optional.ofNullable(fileRepo.findByProjectIdAndPath(projectId, safePath))
+                .map(ProjectFile::getContent);
+    }
+
     // CREATE
     @Transactional
     public ProjectFile createFile(
@@ -128,8 +181,8 @@ public class FileService {
         return pf;
     }
 
-    // UPDATE
-    @Transactional
+    // UPDATE (EXPLICIT SAVE)
+    // not transactional itself: a hot save waits for the shard thread, which needs its own connection
     public ProjectFile save(
             UUID projectId,
             String path,
@@ -141,6 +194,38 @@ public class FileService {
 
         String safePath = fileSyncService.sanitizeUserPath(path);
 
+        Optional<CollaborativeDocument> live = documentStore.find(projectId, safePath);
+        if (live.isEmpty()) {
+            return persist(projectId, safePath, content, userId);
+        }
+
+        // Hot file → the save is just another edit of the live document
+        DocumentStore.Edited edited = documentStore.edit(projectId, safePath, d -> d.replace(content, a ->
+                documentBroadcaster.publish(projectId, userId, safePath, a, null)));
+        CollaborativeDocument doc = edited.document();
+        CollaborativeDocument.Applied applied = edited.applied();
+        if (applied == null && !doc.isDirty()) {
+            // identical to what is already stored everywhere
+            contentHashCache.recordSkip(content == null ? 0 : content.length());
+            return doc.toProjectFile();
+        }
+        // on the project's save shard, so a group commit of an older snapshot cannot land after it
+        return saveManager.getObject().saveNow(doc, userId);
+    }
+
+    // UPDATE (RAW WRITE-THROUGH, live document already up to date)
+    @Transactional
+    public ProjectFile persist(
+            UUID projectId,
+            String path,
+            String content,
+            UUID userId
+    ) {
+
+        accessManager.require(projectId, userId, ProjectPermission.UPDATE_FILE);
+
+        String safePath = fileSyncService.sanitizeUserPath(path);
+
         ProjectFile file =
                 fileRepo.findByProjectIdAndPath(projectId, safePath);
 
@@ -152,11 +237,34 @@ public class FileService {
             throw new IllegalArgumentException("Not a file");
         }
 
+        // ---------------- Unchanged → skip DB, disk and session alike
+        String hash = ProjectFile.hashOf(content);
+        if (hash.equals(file.getContentHash())) {
+            contentHashCache.remember(projectId, safePath, hash);
+            contentHashCache.recordSkip(content == null ? 0 : content.length());
+            return file;
+        }
+
         // ---------------- DB FIRST (authoritative)
         file.setContent(content);
         file.setUpdatedAt(Instant.now());
         fileRepo.saveAndFlush(file);
 
+        writeThrough(projectId, safePath, content);
+        contentHashCache.remember(projectId, safePath, hash);
+
+        return file;
+    }
+
+    // UPDATE (GROUP COMMIT, the caller re-checks UPDATE_FILE per editor)
+    @Transactional
+    public int[] persistBatch(List<ProjectFileBatchRepository.ContentUpdate> updates) {
+        return batchRepo.updateContents(updates);
+    }
+
+    // FILESYSTEM + SESSION, only once the DB row is committed
+    public void writeThrough(UUID projectId, String safePath, String content) {
+
         // ---------------- Filesystem SECOND
         Path resolved = resolveProjectPath(projectId, safePath);
 
@@ -187,8 +295,6 @@ public class FileService {
                         log.warn("Session sync failed", e);
                     }
                 });
-
-        return file;
     }
 
     // HELPERS
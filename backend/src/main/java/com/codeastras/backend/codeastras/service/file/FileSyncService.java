@@ -1,20 +1,30 @@
 package com.codeastras.backend.codeastras.service.file;
 
 import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileMetadata;
 import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.DocumentStore;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.Comparator;
-import java.util.List;
-import java.util.UUID;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 public class FileSyncService {
@@ -22,18 +32,35 @@ public class FileSyncService {
     private static final Logger log =
             LoggerFactory.getLogger(FileSyncService.class);
 
+    // hash<TAB>path per line, later lines win
+    private static final String MANIFEST = ".codeastras-manifest";
+    private static final String WARM_DIR = ".warm";
+    private static final String SNAPSHOT_DIR = ".snapshots";
+
     private final ProjectFileRepository fileRepo;
+    private final DocumentStore documentStore;
+    private final ContentStore contentStore;
     private final Path basePath;
+    private final boolean incremental;
+    private final Duration warmRetention;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     public FileSyncService(
             ProjectFileRepository fileRepo,
-            @Value("${code.runner.base-path:/var/code_sessions}") String basePath
+            DocumentStore documentStore,
+            ContentStore contentStore,
+            NodeScope nodeScope,
+            @Value("${code.session.incremental-sync:true}") boolean incremental,
+            @Value("${code.session.warm-retention-hours:24}") long warmRetentionHours
     ) {
         this.fileRepo = fileRepo;
-        this.basePath = Paths.get(basePath).toAbsolutePath().normalize();
+        this.documentStore = documentStore;
+        this.contentStore = contentStore;
+        this.basePath = nodeScope.basePath();
+        this.incremental = incremental;
+        this.warmRetention = Duration.ofHours(warmRetentionHours);
 
         try {
             Files.createDirectories(this.basePath);
@@ -74,36 +101,10 @@ public class FileSyncService {
             throws IOException {
 
         Path sessionDir = getSessionDir(sessionId);
-        Files.createDirectories(sessionDir);
 
         log.info("🔁 Syncing project {} → session {}", projectId, sessionDir);
 
-        List<ProjectFile> files = fileRepo.findByProjectId(projectId);
-
-        for (ProjectFile f : files) {
-
-            String safePath = sanitizeUserPath(f.getPath());
-            Path resolved = resolvePathSafely(sessionDir, safePath);
-
-            try {
-                if ("FOLDER".equalsIgnoreCase(f.getType())) {
-                    Files.createDirectories(resolved);
-                    continue;
-                }
-
-                Files.createDirectories(resolved.getParent());
-
-                Files.writeString(
-                        resolved,
-                        f.getContent() == null ? "" : f.getContent(),
-                        StandardCharsets.UTF_8,
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING
-                );
-            } catch (IOException e) {
-                log.error("Failed to sync file {} to session {}", safePath, sessionId, e);
-            }
-        }
+        syncIncremental(projectId, sessionDir, false, Map.of());
     }
 
     // ==================================================
@@ -120,6 +121,7 @@ public class FileSyncService {
         String safePath = sanitizeUserPath(userPath);
         Path resolved = resolvePathSafely(sessionDir, safePath);
 
+        clearWay(sessionDir, resolved);
         Files.createDirectories(resolved.getParent());
 
         Files.writeString(
@@ -130,6 +132,15 @@ public class FileSyncService {
                 StandardOpenOption.TRUNCATE_EXISTING
         );
 
+        // keep the manifest honest so a later incremental sync trusts this copy
+        Files.writeString(
+                sessionDir.resolve(MANIFEST),
+                manifestLine(safePath, stamp(ProjectFile.hashOf(content), resolved)),
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+        );
+
         log.debug("✍ Updated {} in session {}", safePath, sessionId);
     }
 
@@ -137,45 +148,401 @@ public class FileSyncService {
     // EXECUTION SNAPSHOT (IMMUTABLE)
     // ==================================================
 
-    public void writeProjectSnapshot(UUID projectId, Path snapshotDir)
+    /**
+     * Brings the project's reusable snapshot tree up to date and returns it.
+     * File bodies are hard links into the {@link ContentStore}, so only files
+     * that changed since the last run cost anything. The tree shares inodes
+     * with the store and must be mounted read-only.
+     *
+     * Callers hold the project's execution lock, so one run owns the tree at a time.
+     *
+     * @param extras additional generated files (path → content), e.g. the runner bootstrap
+     */
+    public Path prepareSnapshot(UUID projectId, Map<String, String> extras)
             throws IOException {
 
-        Files.createDirectories(snapshotDir);
-
         // 🔥 Ensure no stale entities
         entityManager.clear();
 
-        List<ProjectFile> files = fileRepo.findByProjectId(projectId);
+        Path snapshotDir = getSnapshotDir(projectId);
+
+        syncIncremental(projectId, snapshotDir, true, extras); // snapshot must be correct or fail hard
+        Files.setLastModifiedTime(snapshotDir, FileTime.from(Instant.now()));
+
+        return snapshotDir;
+    }
 
-        if (files.isEmpty()) {
+    /**
+     * Same as {@link #prepareSnapshot(UUID, Map)}, into a directory the caller
+     * owns (e.g. a pooled runner's slot).
+     */
+    public Path prepareSnapshot(UUID projectId, Path targetDir, Map<String, String> extras)
+            throws IOException {
+
+        entityManager.clear();
+
+        syncIncremental(projectId, targetDir, true, extras);
+        return targetDir;
+    }
+
+    // ==================================================
+    // INCREMENTAL SYNC
+    // ==================================================
+
+    /**
+     * Brings {@code targetDir} in line with the project.
+     * Files whose hash matches the manifest, and whose size and mtime are
+     * still what the sync left, are left alone; changed ones are rewritten
+     * (content is only loaded for those), anything else on disk is removed.
+     * Session folders are writable by runs, so a file a run modified is
+     * rewritten even though the project did not change.
+     *
+     * @param snapshot run snapshot: hard-link bodies from the content store
+     *                 instead of writing them, and fail on any error
+     */
+    private void syncIncremental(UUID projectId, Path targetDir, boolean snapshot, Map<String, String> extras)
+            throws IOException {
+
+        Files.createDirectories(targetDir);
+
+        List<ProjectFileMetadata> files = fileRepo.findMetadataByProjectId(projectId);
+
+        if (snapshot && files.isEmpty()) {
             throw new IllegalStateException("Project has no files");
         }
 
-        for (ProjectFile f : files) {
+        Map<String, Stamp> manifest = incremental ? readManifest(targetDir) : Map.of();
+        Map<String, Stamp> next = new LinkedHashMap<>();
+        Set<Path> keep = new HashSet<>();
+        Map<UUID, Path> toLoad = new HashMap<>();
+        int skipped = 0;
+
+        for (ProjectFileMetadata f : files) {
 
             String safePath = sanitizeUserPath(f.getPath());
-            Path resolved = resolvePathSafely(snapshotDir, safePath);
+            if (MANIFEST.equals(safePath) || extras.containsKey(safePath)) continue;
+
+            Path resolved = resolvePathSafely(targetDir, safePath);
+            keepWithParents(keep, targetDir, resolved);
+
+            if ("FOLDER".equalsIgnoreCase(f.getType())) {
+                Files.createDirectories(resolved);
+                continue;
+            }
+
+            // hot files may be ahead of the debounced DB row
+            Optional<CollaborativeDocument> live = documentStore.find(projectId, f.getPath());
+            if (live.isPresent()) {
+                String content = live.get().snapshot().content();
+                String hash = ProjectFile.hashOf(content);
+
+                if (upToDate(manifest, safePath, hash, resolved)) {
+                    skipped++;
+                } else if (!place(targetDir, resolved, hash, content, snapshot, snapshot)) {
+                    continue;
+                }
+                next.put(safePath, stamp(hash, resolved));
+                continue;
+            }
+
+            String hash = f.getContentHash();
 
-            try {
-                if ("FOLDER".equalsIgnoreCase(f.getType())) {
-                    Files.createDirectories(resolved);
+            if (upToDate(manifest, safePath, hash, resolved)) {
+                next.put(safePath, manifest.get(safePath));
+                skipped++;
+                continue;
+            }
+
+            // same bytes already stored (revert, or another project) → no content load;
+            // if the store no longer has them, load the content like any other change
+            if (snapshot && hash != null && contentStore.contains(hash)) {
+                clearWay(targetDir, resolved);
+                if (contentStore.linkInto(hash, resolved)) {
+                    next.put(safePath, stamp(hash, resolved));
                     continue;
                 }
+            }
+
+            toLoad.put(f.getId(), resolved);
+        }
+
+        // only changed files pay for their content
+        for (ProjectFile f : fileRepo.findAllById(toLoad.keySet())) {
+            String content = f.getContent() == null ? "" : f.getContent();
+            String hash = f.getContentHash();
+            if (hash == null) {
+                hash = ProjectFile.hashOf(content);
+                backfillHash(f, hash);
+            }
+
+            Path resolved = toLoad.get(f.getId());
+            if (place(targetDir, resolved, hash, content, snapshot, snapshot)) {
+                next.put(sanitizeUserPath(f.getPath()), stamp(hash, resolved));
+            }
+        }
+
+        for (Map.Entry<String, String> extra : extras.entrySet()) {
+            Path resolved = resolvePathSafely(targetDir, extra.getKey());
+            keepWithParents(keep, targetDir, resolved);
+
+            String hash = ProjectFile.hashOf(extra.getValue());
+            if (upToDate(manifest, extra.getKey(), hash, resolved)) {
+                skipped++;
+            } else {
+                place(targetDir, resolved, hash, extra.getValue(), snapshot, true);
+            }
+            next.put(extra.getKey(), stamp(hash, resolved));
+        }
+
+        prune(targetDir, keep);
+        writeManifest(targetDir, next);
+
+        log.info("Synced project {} → {} ({} written, {} unchanged)",
+                projectId, targetDir, next.size() - skipped, skipped);
+    }
+
+    private boolean place(Path root, Path resolved, String hash, String content, boolean linked, boolean strict)
+            throws IOException {
+
+        try {
+            clearWay(root, resolved);
+        } catch (IOException e) {
+            log.error("Failed to clear {}", resolved, e);
+            if (strict) throw e;
+            return false;
+        }
+
+        if (!linked) {
+            return write(resolved, content, strict);
+        }
+
+        try {
+            contentStore.linkInto(hash, content, resolved);
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to link {}", resolved, e);
+            if (strict) throw e;
+            return false;
+        }
+    }
+
+    // without it the row never matches a manifest and is reloaded on every sync
+    private void backfillHash(ProjectFile f, String hash) {
+        try {
+            fileRepo.backfillContentHash(f.getId(), hash);
+        } catch (RuntimeException e) {
+            log.warn("Could not store content hash of {}: {}", f.getPath(), e.getMessage());
+        }
+    }
+
+    private boolean upToDate(Map<String, Stamp> manifest, String safePath, String hash, Path resolved) {
+        Stamp known = manifest.get(safePath);
+        if (hash == null || known == null || !hash.equals(known.hash())) return false;
+
+        try {
+            BasicFileAttributes attrs =
+                    Files.readAttributes(resolved, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return attrs.isRegularFile()
+                    && attrs.size() == known.size()
+                    && attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS) == known.mtime();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * What the sync left on disk for a path: the content hash plus size and
+     * mtime, which any write to the file changes.
+     */
+    private record Stamp(String hash, long size, long mtime) {
+    }
+
+    private Stamp stamp(String hash, Path resolved) {
+        try {
+            BasicFileAttributes attrs =
+                    Files.readAttributes(resolved, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new Stamp(hash, attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        } catch (IOException e) {
+            // never matches, so the next sync rewrites it
+            return new Stamp(hash, -1, -1);
+        }
+    }
+
+    // a run may have swapped the file or a parent folder for a symlink; never write through one
+    private void clearWay(Path root, Path resolved) throws IOException {
+        Path relative = root.relativize(resolved);
+        Path p = root;
+        for (Path part : relative) {
+            p = p.resolve(part);
+            if (Files.isSymbolicLink(p)) {
+                Files.delete(p);
+                return;
+            }
+        }
+        if (Files.isDirectory(resolved, LinkOption.NOFOLLOW_LINKS)) {
+            deleteTree(resolved);
+        }
+    }
+
+    private boolean write(Path resolved, String content, boolean strict) throws IOException {
+        try {
+            Files.createDirectories(resolved.getParent());
+            Files.writeString(
+                    resolved,
+                    content,
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING
+            );
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to write {}", resolved, e);
+            if (strict) throw e;
+            return false;
+        }
+    }
+
+    private void keepWithParents(Set<Path> keep, Path root, Path resolved) {
+        for (Path p = resolved; p != null && !p.equals(root); p = p.getParent()) {
+            if (!keep.add(p)) break;
+        }
+    }
+
+    // removes whatever the project does not know about (old files, __pycache__, run leftovers)
+    private void prune(Path root, Set<Path> keep) throws IOException {
+        Path manifest = root.resolve(MANIFEST);
+
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder())
+                    .filter(p -> !p.equals(root) && !p.equals(manifest) && !keep.contains(p))
+                    .forEach(p -> {
+                        try {
+                            Files.deleteIfExists(p);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete {}", p);
+                        }
+                    });
+        }
+    }
+
+    // line: hash \t size \t mtime-ns \t path; older manifests have hash \t path
+    private Map<String, Stamp> readManifest(Path dir) {
+        Path file = dir.resolve(MANIFEST);
+        Map<String, Stamp> manifest = new HashMap<>();
+        if (!Files.isRegularFile(file)) return manifest;
+
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] f = line.split("\t", 4);
+                if (f.length < 2 || f[0].isEmpty()) continue;
+
+                if (f.length == 4 && isNumber(f[1]) && isNumber(f[2])) {
+                    manifest.put(f[3], new Stamp(f[0], Long.parseLong(f[1]), Long.parseLong(f[2])));
+                } else {
+                    manifest.put(line.substring(f[0].length() + 1), new Stamp(f[0], -1, -1));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unreadable manifest in {}, doing a full sync", dir);
+            manifest.clear();
+        }
+        return manifest;
+    }
+
+    private void writeManifest(Path dir, Map<String, Stamp> entries) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        entries.forEach((path, stamp) -> sb.append(manifestLine(path, stamp)));
+
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(MANIFEST),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String manifestLine(String path, Stamp stamp) {
+        return stamp.hash() + "\t" + stamp.size() + "\t" + stamp.mtime() + "\t" + path + "\n";
+    }
+
+    private static boolean isNumber(String s) {
+        return !s.isEmpty() && s.chars().allMatch(c -> c == '-' || Character.isDigit(c));
+    }
+
+    // ==================================================
+    // WARM FOLDERS (REUSED ACROSS SESSION RESTARTS)
+    // ==================================================
+
+    /**
+     * Keeps a stopped session's folder around so the next session of the
+     * project only has to sync the diff.
+     */
+    public void parkSessionFolder(UUID projectId, String sessionId) throws IOException {
+
+        Path sessionDir = getSessionDir(sessionId);
+        if (!Files.exists(sessionDir)) return;
+
+        Path warm = getWarmDir(projectId);
+        deleteTree(warm);
+        Files.createDirectories(warm.getParent());
+
+        Files.move(sessionDir, warm, StandardCopyOption.ATOMIC_MOVE);
+        Files.setLastModifiedTime(warm, FileTime.from(Instant.now()));
+
+        log.info("🅿 Parked session folder {} → {}", sessionDir, warm);
+    }
+
+    /**
+     * @return true if a parked folder became the new session's folder
+     */
+    public boolean adoptWarmFolder(UUID projectId, String sessionId) {
+
+        Path warm = getWarmDir(projectId);
+        Path sessionDir = getSessionDir(sessionId);
+
+        if (!Files.isDirectory(warm)) return false;
+
+        try {
+            if (!Files.exists(sessionDir)) {
+                Files.move(warm, sessionDir, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            }
+
+            // a pre-warmed container already binds this (empty) folder: keep the
+            // directory itself, or the mount would point at a dead inode
+            try (Stream<Path> existing = Files.list(sessionDir)) {
+                if (existing.findAny().isPresent()) return false;
+            }
+            try (Stream<Path> children = Files.list(warm)) {
+                for (Path child : children.toList()) {
+                    Files.move(child, sessionDir.resolve(child.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            Files.delete(warm);
+            return true;
 
-                Files.createDirectories(resolved.getParent());
+        } catch (IOException e) {
+            log.warn("Could not adopt warm folder {}", warm, e);
+            return false;
+        }
+    }
+
+    // parked session folders and run snapshots nobody used for a while
+    @Scheduled(fixedDelay = 3_600_000)
+    public void purgeWarmFolders() {
+        Instant cutoff = Instant.now().minus(warmRetention);
 
-                String content = f.getContent() == null ? "" : f.getContent();
+        for (String parent : List.of(WARM_DIR, SNAPSHOT_DIR)) {
+            Path root = basePath.resolve(parent);
+            if (!Files.isDirectory(root)) continue;
 
-                Files.writeString(
-                        resolved,
-                        content,
-                        StandardCharsets.UTF_8,
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING
-                );
+            try (Stream<Path> dirs = Files.list(root)) {
+                for (Path dir : dirs.toList()) {
+                    if (Files.getLastModifiedTime(dir).toInstant().isBefore(cutoff)) {
+                        deleteTree(dir);
+                    }
+                }
             } catch (IOException e) {
-                log.error("Snapshot write failed for {}", safePath, e);
-                throw e; // snapshot must be correct or fail hard
+                log.warn("Purge of {} failed", root, e);
             }
         }
     }
@@ -191,23 +558,59 @@ public class FileSyncService {
 
         log.info("🗑 Removing session folder {}", sessionDir);
 
-        Files.walk(sessionDir)
-                .sorted(Comparator.reverseOrder())
-                .forEach(p -> {
-                    try {
-                        Files.deleteIfExists(p);
-                    } catch (IOException e) {
-                        log.warn("Failed to delete {}", p);
-                    }
-                });
+        deleteTree(sessionDir);
     }
 
     // ==================================================
     // INTERNAL HELPERS
     // ==================================================
 
-    private Path getSessionDir(String sessionId) {
-        return basePath.resolve(sessionId).normalize();
+    /**
+     * @throws IllegalArgumentException unless {@code sessionId} is a canonical
+     *         UUID, so the folder is always a direct child of the base path
+     */
+    public Path getSessionDir(String sessionId) {
+        if (!isSessionId(sessionId)) {
+            throw new IllegalArgumentException("Not a session id: " + sessionId);
+        }
+
+        Path dir = basePath.resolve(sessionId).normalize();
+        if (!basePath.equals(dir.getParent())) {
+            throw new IllegalArgumentException("Path traversal detected");
+        }
+        return dir;
+    }
+
+    public static boolean isSessionId(String sessionId) {
+        if (sessionId == null) return false;
+        try {
+            return UUID.fromString(sessionId).toString().equals(sessionId);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Path getSnapshotDir(UUID projectId) {
+        return basePath.resolve(SNAPSHOT_DIR).resolve(projectId.toString());
+    }
+
+    private Path getWarmDir(UUID projectId) {
+        return basePath.resolve(WARM_DIR).resolve(projectId.toString());
+    }
+
+    private void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder())
+                    .forEach(p -> {
+                        try {
+                            Files.deleteIfExists(p);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete {}", p);
+                        }
+                    });
+        }
     }
 
     private Path resolvePathSafely(Path baseDir, String safePath) {
@@ -1,42 +1,120 @@
 package com.codeastras.backend.codeastras.service.session;
 
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.container.ContainerRuntime;
+import com.codeastras.backend.codeastras.service.file.FileSyncService;
+import com.codeastras.backend.codeastras.store.SessionRegistry;
+import com.codeastras.backend.codeastras.store.SessionRegistryStore;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Deals with the session containers a previous run left behind, off the
+ * startup path.
+ *
+ * {@code reconcile} (default): sessions persisted by {@link SessionRegistryStore}
+ * whose container is still running and whose folder still exists are put
+ * back into the registry; every other session container of this node is
+ * an orphan and is removed. {@code cleanup}: remove them all.
+ *
+ * Only names under {@link NodeScope#sessionContainerPrefix()} are looked
+ * at: another node on the same Docker daemon keeps its containers.
+ */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class SessionContainerCleanup {
 
+    private final ContainerRuntime containerRuntime;
+    private final SessionRegistry sessionRegistry;
+    private final SessionRegistryStore registryStore;
+    private final FileSyncService fileSyncService;
+    private final ExecutorService blockingExecutor;
+    private final NodeScope nodeScope;
+
+    @Value("${code.session.startup:reconcile}")
+    private String startupMode;
+
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
     @PostConstruct
-    public void cleanupOrphanContainers() {
+    public void start() {
+        blockingExecutor.execute(() -> {
+            try {
+                if ("cleanup".equalsIgnoreCase(startupMode)) {
+                    cleanupOrphanContainers();
+                } else {
+                    reconcile();
+                }
+            } finally {
+                done.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Completes once leftover containers are adopted or removed. Session
+     * starts and the warm pool wait for it so their containers are never
+     * mistaken for orphans.
+     */
+    public CompletableFuture<Void> reconciled() {
+        return done;
+    }
+
+    public void reconcile() {
         try {
-            List<String> cmd = List.of(
-                    "docker", "ps",
-                    "--filter", "name=session_",
-                    "--format", "{{.Names}}"
-            );
-
-            Process process = new ProcessBuilder(cmd)
-                    .redirectErrorStream(true)
-                    .start();
-
-            try (BufferedReader reader =
-                         new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-
-                String container;
-                while ((container = reader.readLine()) != null) {
-                    log.warn("🧹 Removing orphan container {}", container);
-                    removeContainer(container);
+            String prefix = nodeScope.sessionContainerPrefix();
+            List<String> existing = containerRuntime.listNames(prefix);
+            Set<String> adopted = new HashSet<>();
+
+            for (SessionRegistryStore.Entry entry : registryStore.load()) {
+                String name = entry.containerName();
+
+                boolean healthy = FileSyncService.isSessionId(entry.sessionId())
+                        && existing.contains(name)
+                        && containerRuntime.isRunning(name)
+                        && Files.isDirectory(fileSyncService.getSessionDir(entry.sessionId()));
+
+                if (healthy && sessionRegistry.restore(entry)) {
+                    adopted.add(name);
+                } else {
+                    log.warn("Dropping session {} for project {}", entry.sessionId(), entry.projectId());
+                    removeFolder(entry.sessionId());
                 }
             }
 
-            process.waitFor();
+            for (String container : existing) {
+                if (adopted.contains(container)) continue;
+
+                log.warn("🧹 Removing orphan container {}", container);
+                removeContainer(container);
+                removeFolder(container.substring(prefix.length()));
+            }
+
+            log.info("Session reconciliation: {} adopted, {} removed",
+                    adopted.size(), existing.size() - adopted.size());
+
+        } catch (Exception e) {
+            log.error("Failed to reconcile session containers", e);
+        }
+    }
 
+    public void cleanupOrphanContainers() {
+        try {
+            for (String container : containerRuntime.listNames(nodeScope.sessionContainerPrefix())) {
+                log.warn("🧹 Removing orphan container {}", container);
+                removeContainer(container);
+            }
         } catch (Exception e) {
             log.error("Failed to cleanup orphan session containers", e);
         }
@@ -44,12 +122,23 @@ public class SessionContainerCleanup {
 
     private void removeContainer(String name) {
         try {
-            new ProcessBuilder("docker", "rm", "-f", name)
-                    .redirectErrorStream(true)
-                    .start()
-                    .waitFor();
+            containerRuntime.remove(name);
         } catch (Exception e) {
             log.error("Failed to remove container {}", name, e);
         }
     }
+
+    // only folders named like a session id; anything else under the base path is not ours to delete
+    private void removeFolder(String sessionId) {
+        if (!FileSyncService.isSessionId(sessionId)) {
+            log.warn("Not removing folder for {}: not a session id", sessionId);
+            return;
+        }
+
+        try {
+            fileSyncService.removeSessionFolder(sessionId);
+        } catch (Exception e) {
+            log.warn("Failed to remove session folder {}", sessionId, e);
+        }
+    }
 }
@@ -0,0 +1,235 @@
+package com.codeastras.backend.codeastras.service.session;
+
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.container.ContainerRuntime;
+import com.codeastras.backend.codeastras.service.file.FileSyncService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Idle session containers, started ahead of demand, per image.
+ *
+ * A bind mount cannot be added to a running container, so each warm
+ * container is created for a future session id: its (empty) session folder
+ * is already mounted at /workspace. Claiming one means syncing the project
+ * into that folder and registering the session; no container is created on
+ * the start path. Images are pulled at boot.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionContainerPool {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(SessionContainerPool.class);
+
+    private final ContainerRuntime containerRuntime;
+    private final FileSyncService fileSyncService;
+    private final ExecutorService blockingExecutor;
+    private final SessionContainerCleanup containerCleanup;
+    private final NodeScope nodeScope;
+
+    @Value("${code.session.image-name:codeastras-collab}")
+    private String sessionImage;
+
+    // additional images to keep warm, comma separated
+    @Value("${code.session.prewarm.images:}")
+    private List<String> extraImages;
+
+    @Value("${code.session.prewarm.count:2}")
+    private int warmCount;
+
+    @Value("${code.session.cpus:0.5}")
+    private double sessionCpus;
+
+    @Value("${code.session.memory:256MB}")
+    private DataSize sessionMemory;
+
+    @Value("${code.session.scratch-size:64m}")
+    private String sessionScratchSize;
+
+    // session-mode runs are exec'd in here, so this is their network too
+    @Value("${code.session.network-disabled:true}")
+    private boolean sessionNetworkDisabled;
+
+    public record WarmContainer(String image, String sessionId, String containerName) {}
+
+    private final Map<String, Deque<WarmContainer>> idle = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> starting = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        // new containers must not be taken for last run's orphans
+        containerCleanup.reconciled().thenRun(() -> {
+            for (String image : images()) {
+                blockingExecutor.execute(() -> {
+                    try {
+                        ensureImage(image);
+                        refill(image);
+                    } catch (Exception e) {
+                        LOG.warn("Could not pre-warm sessions for {}: {}", image, e.getMessage());
+                    }
+                });
+            }
+        });
+    }
+
+    // retries after failed starts
+    @Scheduled(fixedDelay = 30_000)
+    public void maintain() {
+        images().forEach(this::refill);
+    }
+
+    // ================= CLAIM =================
+
+    /**
+     * @return a running idle container for {@code image}, now owned by the
+     *         caller; idle containers that died while waiting are thrown away
+     */
+    public Optional<WarmContainer> claim(String image) {
+        Deque<WarmContainer> queue = idle.get(image);
+        WarmContainer warm = null;
+
+        while (queue != null && (warm = queue.pollFirst()) != null) {
+            if (isAlive(warm)) break;
+
+            LOG.warn("Warm session container {} is not running, discarding it", warm.containerName());
+            WarmContainer dead = warm;
+            blockingExecutor.execute(() -> discard(dead.sessionId(), dead.containerName()));
+        }
+
+        blockingExecutor.execute(() -> refill(image));
+        return Optional.ofNullable(warm);
+    }
+
+    /**
+     * Whether a claimed container can still be used; the caller starts a
+     * cold one under the same name if not.
+     */
+    public boolean isAlive(WarmContainer warm) {
+        try {
+            return containerRuntime.isRunning(warm.containerName());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns an unused claim.
+     */
+    public void giveBack(WarmContainer warm) {
+        idle.computeIfAbsent(warm.image(), k -> new ConcurrentLinkedDeque<>()).addFirst(warm);
+    }
+
+    public void ensureImage(String image) {
+        if (!containerRuntime.imageExists(image)) {
+            LOG.info("Docker image missing. Pulling {}...", image);
+            containerRuntime.pull(image);
+        }
+    }
+
+    /**
+     * Runs are exec'd into this container, so it carries the same limits the
+     * one-off runner containers have. /tmp is a small tmpfs that holds the
+     * per-run scratch directories.
+     *
+     * An exec cannot get a network of its own, so keeping runs offline means
+     * keeping the whole session offline (no pip install from the terminal).
+     * {@code code.session.network-disabled=false} gives both network back.
+     */
+    public ContainerRuntime.ContainerSpec containerSpec(String image, String containerName, String sessionId) {
+        return ContainerRuntime.ContainerSpec.builder()
+                .name(containerName)
+                .image(image)
+                .cmd(List.of("tail", "-f", "/dev/null"))
+                .cpus(sessionCpus)
+                .memoryBytes(sessionMemory.toBytes())
+                .networkDisabled(sessionNetworkDisabled)
+                .tmpfs(Map.of("/tmp", "rw,exec,size=" + sessionScratchSize))
+                .binds(List.of(fileSyncService.getSessionDir(sessionId) + ":/workspace"))
+                .build();
+    }
+
+    public double cpusPerSession() {
+        return sessionCpus;
+    }
+
+    public long memoryBytesPerSession() {
+        return sessionMemory.toBytes();
+    }
+
+    // ================= INTERNAL =================
+
+    private void refill(String image) {
+        if (warmCount <= 0 || !containerCleanup.reconciled().isDone()) return;
+
+        Deque<WarmContainer> queue = idle.computeIfAbsent(image, k -> new ConcurrentLinkedDeque<>());
+        AtomicInteger inFlight = starting.computeIfAbsent(image, k -> new AtomicInteger());
+
+        while (true) {
+            int n = inFlight.get();
+            if (queue.size() + n >= warmCount) return;
+
+            if (inFlight.compareAndSet(n, n + 1)) {
+                blockingExecutor.execute(() -> startOne(image, queue, inFlight));
+            }
+        }
+    }
+
+    private void startOne(String image, Deque<WarmContainer> queue, AtomicInteger inFlight) {
+        String sessionId = UUID.randomUUID().toString();
+        String containerName = nodeScope.sessionContainerPrefix() + sessionId;
+
+        try {
+            Files.createDirectories(fileSyncService.getSessionDir(sessionId));
+            containerRuntime.run(containerSpec(image, containerName, sessionId));
+
+            queue.addLast(new WarmContainer(image, sessionId, containerName));
+            LOG.info("🔥 Warm session container {} ready ({})", containerName, image);
+
+        } catch (Exception e) {
+            LOG.warn("Could not start warm session container for {}: {}", image, e.getMessage());
+            discard(sessionId, containerName);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void discard(String sessionId, String containerName) {
+        try { containerRuntime.remove(containerName); } catch (Exception ignored) {}
+        try { fileSyncService.removeSessionFolder(sessionId); } catch (Exception ignored) {}
+    }
+
+    private Set<String> images() {
+        Set<String> images = new LinkedHashSet<>();
+        images.add(sessionImage);
+        for (String image : extraImages) {
+            if (!image.isBlank()) images.add(image.trim());
+        }
+        return images;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        idle.values().forEach(queue -> {
+            WarmContainer warm;
+            while ((warm = queue.pollFirst()) != null) {
+                discard(warm.sessionId(), warm.containerName());
+            }
+        });
+    }
+}
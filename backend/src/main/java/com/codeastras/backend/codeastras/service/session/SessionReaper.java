@@ -0,0 +1,95 @@
+package com.codeastras.backend.codeastras.service.session;
+
+import com.codeastras.backend.codeastras.service.execution.ExecutionLockService;
+import com.codeastras.backend.codeastras.store.SessionRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Stops sessions nobody has used for {@code code.session.idle-ttl}.
+ *
+ * "Used" means an edit, a run or a presence ping; each of them calls
+ * {@link SessionRegistry#touch}. A reaped session loses its container and
+ * its folder; the next start syncs the project again.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionReaper {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(SessionReaper.class);
+
+    private final SessionRegistry sessionRegistry;
+    private final SessionService sessionService;
+    private final SessionContainerPool containerPool;
+    private final ExecutionLockService executionLockService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${code.session.idle-ttl:30m}")
+    private Duration idleTtl;
+
+    private Counter reaped;
+    private Counter reclaimedMemory;
+    private Counter reclaimedCpus;
+
+    @PostConstruct
+    public void registerMetrics() {
+        reaped = Counter.builder("codeastras.session.reaped")
+                .description("Sessions stopped for inactivity")
+                .register(meterRegistry);
+        reclaimedMemory = Counter.builder("codeastras.session.reclaimed.memory")
+                .description("Container memory limit released by reaped sessions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        reclaimedCpus = Counter.builder("codeastras.session.reclaimed.cpus")
+                .description("Container CPU quota released by reaped sessions")
+                .register(meterRegistry);
+
+        Gauge.builder("codeastras.session.active", sessionRegistry, r -> r.getAllSessions().size())
+                .description("Running session containers")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${code.session.reaper-interval-ms:60000}")
+    public void reap() {
+        Instant cutoff = Instant.now().minus(idleTtl);
+
+        for (SessionRegistry.SessionInfo info : sessionRegistry.getAllSessions()) {
+            if (!info.getLastSeen().isBefore(cutoff)) continue;
+
+            // a run in progress is activity; holding the lock keeps new runs out
+            if (!executionLockService.tryLock(info.getProjectId())) continue;
+
+            try {
+                // touched after the snapshot was taken
+                if (!info.getLastSeen().isBefore(cutoff)) continue;
+
+                sessionService.stopIdleSession(info);
+
+                reaped.increment();
+                reclaimedMemory.increment(containerPool.memoryBytesPerSession());
+                reclaimedCpus.increment(containerPool.cpusPerSession());
+
+                LOG.info("💤 Reaped idle session {} for project {} (idle since {}, freed {} CPU / {} MB)",
+                        info.getSessionId(), info.getProjectId(), info.getLastSeen(),
+                        containerPool.cpusPerSession(), containerPool.memoryBytesPerSession() >> 20);
+
+            } catch (Exception e) {
+                LOG.warn("Could not reap session {}", info.getSessionId(), e);
+            } finally {
+                executionLockService.unlock(info.getProjectId());
+            }
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package com.codeastras.backend.codeastras.service.session;
 
+import com.codeastras.backend.codeastras.dto.session.SessionEventType;
 import com.codeastras.backend.codeastras.entity.project.Project;
 import com.codeastras.backend.codeastras.exception.ResourceNotFoundException;
 import com.codeastras.backend.codeastras.repository.project.ProjectRepository;
 import com.codeastras.backend.codeastras.security.ProjectAccessManager;
 import com.codeastras.backend.codeastras.security.ProjectPermission;
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.container.ContainerRuntime;
 import com.codeastras.backend.codeastras.service.file.FileSyncService;
 import com.codeastras.backend.codeastras.store.SessionRegistry;
+import com.codeastras.backend.codeastras.websocket.publisher.SessionEventPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class SessionService {
@@ -24,15 +30,20 @@ public class SessionService {
     private static final Logger LOG =
             LoggerFactory.getLogger(SessionService.class);
 
-    private static final int DOCKER_TIMEOUT_SEC = 120;
-
     private final ProjectRepository projectRepo;
     private final FileSyncService fileSyncService;
     private final SessionRegistry sessionRegistry;
     private final ProjectAccessManager accessManager;
+    private final ContainerRuntime containerRuntime;
+    private final SessionContainerPool containerPool;
+    private final SessionContainerCleanup containerCleanup;
+    private final SessionEventPublisher sessionEvents;
+    private final ExecutorService blockingExecutor;
+    private final NodeScope nodeScope;
 
-    @Value("${code.runner.base-path}")
-    private String sessionBasePath;
+    // projectId → start in progress
+    private final Map<UUID, StartHandle> starting =
+            new ConcurrentHashMap<>();
 
     @Value("${code.session.image-name:codeastras-collab}")
     private String sessionImage;
@@ -41,91 +52,168 @@ public class SessionService {
             ProjectRepository projectRepo,
             FileSyncService fileSyncService,
             SessionRegistry sessionRegistry,
-            ProjectAccessManager accessManager
+            ProjectAccessManager accessManager,
+            ContainerRuntime containerRuntime,
+            SessionContainerPool containerPool,
+            SessionContainerCleanup containerCleanup,
+            SessionEventPublisher sessionEvents,
+            ExecutorService blockingExecutor,
+            NodeScope nodeScope
     ) {
         this.projectRepo = projectRepo;
         this.fileSyncService = fileSyncService;
         this.sessionRegistry = sessionRegistry;
         this.accessManager = accessManager;
+        this.containerRuntime = containerRuntime;
+        this.containerPool = containerPool;
+        this.containerCleanup = containerCleanup;
+        this.sessionEvents = sessionEvents;
+        this.blockingExecutor = blockingExecutor;
+        this.nodeScope = nodeScope;
     }
 
-    // START SESSION (IDEMPOTENT)
-    public String startSession(UUID projectId, UUID userId) throws Exception {
+    /**
+     * A session that is starting or already running; {@code ready} completes
+     * with the session id once the container is up.
+     */
+    public record StartHandle(String sessionId, CompletableFuture<String> ready) {
+
+        public boolean isReady() {
+            return ready.isDone() && !ready.isCompletedExceptionally();
+        }
+    }
+
+    // START SESSION (IDEMPOTENT, NON-BLOCKING)
+
+    /**
+     * Returns at once. Progress goes out on {@code /topic/projects/{id}/session}:
+     * SYNCING → [PULLING_IMAGE] → STARTING → READY, or FAILED.
+     */
+    public StartHandle startSessionAsync(UUID projectId, UUID userId) {
 
         accessManager.require(projectId, userId, ProjectPermission.START_SESSION);
 
         Project project = projectRepo.findById(projectId)
                 .orElseThrow(() -> new ResourceNotFoundException("Project not found"));
 
+        // only right after boot: the previous run's session may be about to be adopted
+        containerCleanup.reconciled().join();
+
         Optional<String> existing =
                 sessionRegistry.getSessionIdForProject(projectId);
         if (existing.isPresent()) {
-            return existing.get();
+            return new StartHandle(existing.get(), CompletableFuture.completedFuture(existing.get()));
+        }
+
+        // a warm container already has its session id (its folder is bound to it)
+        Optional<SessionContainerPool.WarmContainer> warm = containerPool.claim(sessionImage);
+        String sessionId = warm.map(SessionContainerPool.WarmContainer::sessionId)
+                .orElseGet(() -> UUID.randomUUID().toString());
+
+        // one start per project; concurrent callers join it, other projects are not blocked
+        StartHandle mine = new StartHandle(sessionId, new CompletableFuture<>());
+        StartHandle inFlight = starting.putIfAbsent(projectId, mine);
+        if (inFlight != null) {
+            warm.ifPresent(containerPool::giveBack);
+            LOG.info("Joining in-flight session start for project {}", projectId);
+            return inFlight;
         }
 
-        synchronized (this) {
+        // a start may have finished between the lookup and claiming the slot
+        Optional<String> second =
+                sessionRegistry.getSessionIdForProject(projectId);
+        if (second.isPresent()) {
+            starting.remove(projectId, mine);
+            warm.ifPresent(containerPool::giveBack);
+            return new StartHandle(second.get(), CompletableFuture.completedFuture(second.get()));
+        }
 
-            Optional<String> second =
-                    sessionRegistry.getSessionIdForProject(projectId);
-            if (second.isPresent()) {
-                return second.get();
+        blockingExecutor.execute(() -> {
+            try {
+                mine.ready().complete(launch(projectId, userId, sessionId, warm.orElse(null)));
+            } catch (Exception e) {
+                mine.ready().completeExceptionally(e);
+            } finally {
+                starting.remove(projectId, mine);
             }
+        });
 
-            String sessionId = UUID.randomUUID().toString();
-            String containerName = "session_" + sessionId;
+        return mine;
+    }
 
-            LOG.info("Starting session {} for project {}", sessionId, projectId);
+    // START SESSION (BLOCKING)
+    public String startSession(UUID projectId, UUID userId) throws Exception {
+        return await(startSessionAsync(projectId, userId).ready());
+    }
 
-            try {
-                fileSyncService.syncProjectToSession(projectId, sessionId);
-
-                String output;
-                try {
-                    output = runCommand(
-                            DOCKER_TIMEOUT_SEC,
-                            "docker", "run", "-d",
-                            "--name", containerName,
-                            "-v", sessionBasePath + "/" + sessionId + ":/workspace",
-                            sessionImage,
-                            "tail", "-f", "/dev/null"
-                    );
-                } catch (RuntimeException e) {
-                    if (e.getMessage().contains("Unable to find image")) {
-                        LOG.info("Docker image missing. Pulling {}...", sessionImage);
-                        runCommand(DOCKER_TIMEOUT_SEC * 2,
-                                "docker", "pull", sessionImage);
-                        output = runCommand(
-                                DOCKER_TIMEOUT_SEC,
-                                "docker", "run", "-d",
-                                "--name", containerName,
-                                "-v", sessionBasePath + "/" + sessionId + ":/workspace",
-                                sessionImage,
-                                "tail", "-f", "/dev/null"
-                        );
-                    } else {
-                        throw e;
-                    }
-                }
+    private String launch(
+            UUID projectId,
+            UUID userId,
+            String sessionId,
+            SessionContainerPool.WarmContainer warm
+    ) throws Exception {
 
-                LOG.info("Docker container started: {}", output);
+        String containerName = nodeScope.sessionContainerPrefix() + sessionId;
 
-                sessionRegistry.register(
-                        projectId,
-                        sessionId,
-                        containerName,
-                        userId
-                );
+        LOG.info("Starting session {} for project {} ({})", sessionId, projectId, warm != null ? "warm" : "cold");
 
-                return sessionId;
+        try {
+            sessionEvents.publish(projectId, sessionId, SessionEventType.SYNCING, null, userId);
 
-            } catch (Exception e) {
-                LOG.error("Session start failed for project {}", projectId, e);
+            // reuse the last session's folder → only the diff gets written
+            fileSyncService.adoptWarmFolder(projectId, sessionId);
+            fileSyncService.syncProjectToSession(projectId, sessionId);
 
-                try { fileSyncService.removeSessionFolder(sessionId); } catch (Exception ignored) {}
-                try { runCommand(10, "docker", "rm", "-f", containerName); } catch (Exception ignored) {}
+            // a warm container is already running with this folder at /workspace,
+            // unless it died since it was claimed: then start a cold one in its place
+            boolean running = warm != null && containerPool.isAlive(warm);
+            if (warm != null && !running) {
+                LOG.warn("Claimed warm container {} is gone, starting cold", containerName);
+                try { containerRuntime.remove(containerName); } catch (Exception ignored) {}
+            }
+
+            if (!running) {
+                if (!containerRuntime.imageExists(sessionImage)) {
+                    sessionEvents.publish(projectId, sessionId, SessionEventType.PULLING_IMAGE, null, userId);
+                    containerPool.ensureImage(sessionImage);
+                }
 
-                throw e;
+                sessionEvents.publish(projectId, sessionId, SessionEventType.STARTING, null, userId);
+
+                String containerId = containerRuntime.run(
+                        containerPool.containerSpec(sessionImage, containerName, sessionId));
+
+                LOG.info("Docker container started: {}", containerId);
             }
+
+            sessionRegistry.register(
+                    projectId,
+                    sessionId,
+                    containerName,
+                    userId
+            );
+
+            sessionEvents.publish(projectId, sessionId, SessionEventType.READY, null, userId);
+            return sessionId;
+
+        } catch (Exception e) {
+            LOG.error("Session start failed for project {}", projectId, e);
+
+            try { fileSyncService.removeSessionFolder(sessionId); } catch (Exception ignored) {}
+            try { containerRuntime.remove(containerName); } catch (Exception ignored) {}
+
+            sessionEvents.publish(projectId, sessionId, SessionEventType.FAILED,
+                    e.getMessage() != null ? e.getMessage() : "Session start failed", userId);
+            throw e;
+        }
+    }
+
+    private static String await(CompletableFuture<String> start) throws Exception {
+        try {
+            return start.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
         }
     }
 
@@ -143,43 +231,39 @@ public class SessionService {
                 ProjectPermission.STOP_SESSION
         );
 
-        runCommand(DOCKER_TIMEOUT_SEC,
-                "docker", "rm", "-f", info.getContainerName());
+        containerRuntime.remove(info.getContainerName());
 
-        fileSyncService.removeSessionFolder(info.getSessionId());
+        try {
+            fileSyncService.parkSessionFolder(info.getProjectId(), info.getSessionId());
+        } catch (Exception e) {
+            LOG.warn("Could not park session folder {}, removing it", sessionId, e);
+            fileSyncService.removeSessionFolder(info.getSessionId());
+        }
         sessionRegistry.remove(sessionId);
-    }
 
-    // INTERNAL
-    private String runCommand(int timeoutSec, String... cmd) throws Exception {
+        sessionEvents.publish(info.getProjectId(), sessionId, SessionEventType.STOPPED, null, requesterId);
+    }
 
-        Process p = new ProcessBuilder(cmd)
-                .redirectErrorStream(true)
-                .start();
+    // STOP IDLE SESSION (REAPER, NO REQUESTER)
+    public void stopIdleSession(SessionRegistry.SessionInfo info) throws Exception {
 
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader r =
-                     new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-            String line;
-            while ((line = r.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-        }
+        String sessionId = info.getSessionId();
 
-        boolean finished = p.waitFor(timeoutSec, TimeUnit.SECONDS);
-        if (!finished) {
-            p.destroyForcibly();
-            throw new RuntimeException("Command timed out: " + String.join(" ", cmd));
-        }
+        // unregister first so nothing new is routed to the container
+        sessionRegistry.remove(sessionId);
 
-        if (p.exitValue() != 0) {
-            throw new RuntimeException(
-                    "Command failed (" + p.exitValue() + "): "
-                            + String.join(" ", cmd)
-                            + "\nOutput:\n" + output
-            );
+        try {
+            containerRuntime.remove(info.getContainerName());
+        } finally {
+            // like a manual stop: the next session of the project only syncs the diff
+            try {
+                fileSyncService.parkSessionFolder(info.getProjectId(), sessionId);
+            } catch (Exception e) {
+                LOG.warn("Could not park session folder {}, removing it", sessionId, e);
+                fileSyncService.removeSessionFolder(sessionId);
+            }
         }
 
-        return output.toString().trim();
+        sessionEvents.publish(info.getProjectId(), sessionId, SessionEventType.STOPPED, "Stopped after inactivity", null);
     }
 }
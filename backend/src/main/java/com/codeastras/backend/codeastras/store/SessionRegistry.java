@@ -1,6 +1,7 @@
 package com.codeastras.backend.codeastras.store;
 
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
+@RequiredArgsConstructor
 public class SessionRegistry {
 
     private static final Logger log =
@@ -18,6 +20,8 @@ public class SessionRegistry {
 
     private static final long PRESENCE_TTL_SECONDS = 30;
 
+    private final SessionRegistryStore store;
+
     // ================= SESSION STATE =================
 
     // sessionId -> SessionInfo
@@ -56,7 +60,8 @@ public class SessionRegistry {
         private final UUID ownerUserId;
 
         private Instant createdAt;
-        private Instant lastSeen;
+        // last edit, run or presence ping; drives the idle reaper
+        private volatile Instant lastSeen;
 
         public SessionInfo(
                 String sessionId,
@@ -97,21 +102,73 @@ public class SessionRegistry {
 
         bySessionId.put(sessionId, info);
         byProjectId.put(projectId, info);
+        persist();
 
         log.info("✅ Registered session {} for project {}", sessionId, projectId);
     }
 
+    /**
+     * Re-adopts a session persisted by a previous run.
+     *
+     * @return false if the project already has a session
+     */
+    public boolean restore(SessionRegistryStore.Entry entry) {
+        SessionInfo info = new SessionInfo(
+                entry.sessionId(), entry.containerName(), entry.projectId(), entry.ownerUserId());
+        if (entry.createdAt() != null) {
+            info.setCreatedAt(entry.createdAt());
+        }
+
+        if (byProjectId.putIfAbsent(entry.projectId(), info) != null) {
+            return false;
+        }
+        bySessionId.put(entry.sessionId(), info);
+        persist();
+
+        log.info("♻️ Restored session {} for project {}", entry.sessionId(), entry.projectId());
+        return true;
+    }
+
     public void remove(String sessionId) {
         SessionInfo info = bySessionId.remove(sessionId);
         if (info != null) {
             byProjectId.remove(info.getProjectId());
             presence.remove(info.getProjectId());
+            persist();
             log.info("🗑 Removed session {}", sessionId);
         }
     }
 
+    private void persist() {
+        // snapshot under the store's lock so a stale snapshot never lands last
+        synchronized (store) {
+            store.save(bySessionId.values().stream()
+                    .map(i -> new SessionRegistryStore.Entry(
+                            i.getSessionId(),
+                            i.getContainerName(),
+                            i.getProjectId(),
+                            i.getOwnerUserId(),
+                            i.getCreatedAt()))
+                    .toList());
+        }
+    }
+
+    /**
+     * Marks the project's session as in use.
+     */
+    public void touch(UUID projectId) {
+        SessionInfo info = byProjectId.get(projectId);
+        if (info != null) {
+            info.setLastSeen(Instant.now());
+        }
+    }
+
     // ================= LOOKUPS =================
 
+    public Collection<SessionInfo> getAllSessions() {
+        return List.copyOf(bySessionId.values());
+    }
+
     public SessionInfo getBySessionId(String sessionId) {
         return bySessionId.get(sessionId);
     }
@@ -176,6 +233,7 @@ public class SessionRegistry {
 
         presence.get(projectId)
                 .put(userId, new PresenceInfo(userId, null, Instant.now()));
+        touch(projectId);
 
         return isNew;
     }
@@ -214,6 +272,7 @@ public class SessionRegistry {
 
         presence.get(projectId)
                 .put(userId, new PresenceInfo(userId, fileId, Instant.now()));
+        touch(projectId);
 
         return changed;
     }
@@ -227,6 +286,7 @@ public class SessionRegistry {
 
         presence.get(projectId)
                 .put(userId, new PresenceInfo(userId, null, Instant.now()));
+        touch(projectId);
     }
 
     public Collection<PresenceInfo> getPresenceSnapshot(UUID projectId) {
@@ -0,0 +1,79 @@
+package com.codeastras.backend.codeastras.store;
+
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Durable copy of the session → container mapping, so a restarted backend
+ * can adopt the containers it left running.
+ *
+ * One JSON file under {@code <base-path>/<node-id>/.registry}, rewritten whole
+ * (temp file + atomic rename) on every register/remove.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionRegistryStore {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(SessionRegistryStore.class);
+
+    private static final String REGISTRY_DIR = ".registry";
+    private static final String FILE_NAME = "sessions.json";
+
+    private final ObjectMapper objectMapper;
+    private final NodeScope nodeScope;
+
+    public record Entry(
+            String sessionId,
+            String containerName,
+            UUID projectId,
+            UUID ownerUserId,
+            Instant createdAt
+    ) {}
+
+    public synchronized void save(Collection<Entry> entries) {
+        Path file = file();
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+
+        try {
+            Files.createDirectories(file.getParent());
+            objectMapper.writeValue(tmp.toFile(), entries);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // in-memory state stays authoritative; worst case a restart loses adoption
+            log.warn("Could not persist session registry", e);
+        }
+    }
+
+    public synchronized List<Entry> load() {
+        Path file = file();
+        if (!Files.exists(file)) return List.of();
+
+        try {
+            return objectMapper.readValue(file.toFile(), new TypeReference<List<Entry>>() {});
+        } catch (IOException e) {
+            log.warn("Unreadable session registry {}, ignoring it", file, e);
+            return List.of();
+        }
+    }
+
+    private Path file() {
+        return nodeScope.basePath()
+                .resolve(REGISTRY_DIR)
+                .resolve(FILE_NAME);
+    }
+}
@@ -0,0 +1,33 @@
+package com.codeastras.backend.codeastras.websocket.publisher;
+
+import com.codeastras.backend.codeastras.dto.session.SessionEvent;
+import com.codeastras.backend.codeastras.dto.session.SessionEventType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class SessionEventPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Session lifecycle for everyone in the project
+     */
+    public void publish(
+            UUID projectId,
+            String sessionId,
+            SessionEventType type,
+            String message,
+            UUID triggeredBy
+    ) {
+        messagingTemplate.convertAndSend(
+                "/topic/projects/" + projectId + "/session",
+                new SessionEvent(type, projectId, sessionId, message, triggeredBy, Instant.now())
+        );
+    }
+}
@@ -0,0 +1,365 @@
+package com.codeastras.backend.codeastras.config;
+
+import com.codeastras.backend.codeastras.controller.cluster.ClusterController;
+import com.codeastras.backend.codeastras.service.cluster.ClusterClient;
+import com.codeastras.backend.codeastras.service.cluster.ConsistentHashSessionDirectory;
+import com.codeastras.backend.codeastras.service.cluster.SessionDirectory;
+import com.codeastras.backend.codeastras.service.session.SessionFacade;
+import com.codeastras.backend.codeastras.store.SessionRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.tomcat.autoconfigure.servlet.TomcatServletWebServerAutoConfiguration;
+import org.springframework.boot.webmvc.autoconfigure.DispatcherServletAutoConfiguration;
+import org.springframework.boot.webmvc.autoconfigure.WebMvcAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.Principal;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Two nodes in one JVM, each with its own web server, STOMP broker and the
+ * real cluster beans, wired to each other through {@code code.cluster.nodes}.
+ * No database: sessions and auth are stubbed, the rest is the real path.
+ */
+class ClusterTwoNodeTest {
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        int portA = freePort();
+        int portB = freePort();
+        String nodes = "a=http://localhost:" + portA + ",b=http://localhost:" + portB;
+
+        nodeA = start("a", portA, nodes);
+        nodeB = start("b", portB, nodes);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeA != null) nodeA.close();
+        if (nodeB != null) nodeB.close();
+    }
+
+    @Test
+    void bothNodesAgreeOnOwnershipAndShareTheProjects() {
+        SessionDirectory a = nodeA.getBean(SessionDirectory.class);
+        SessionDirectory b = nodeB.getBean(SessionDirectory.class);
+
+        int ownedByA = 0;
+        for (int i = 0; i < 1000; i++) {
+            UUID projectId = UUID.randomUUID();
+            assertThat(a.ownerOf(projectId).id()).isEqualTo(b.ownerOf(projectId).id());
+            assertThat(a.isLocal(projectId)).isNotEqualTo(b.isLocal(projectId));
+            if (a.isLocal(projectId)) ownedByA++;
+        }
+
+        assertThat(ownedByA).isBetween(350, 650);
+    }
+
+    @Test
+    void restCallForRemoteProjectIsAnsweredByItsOwner() throws Exception {
+        UUID ownedByB = projectOwnedBy("b");
+        UUID ownedByA = projectOwnedBy("a");
+
+        assertThat(get(nodeA, "/api/projects/" + ownedByB + "/whoami")).isEqualTo("b");
+        assertThat(get(nodeA, "/api/projects/" + ownedByA + "/whoami")).isEqualTo("a");
+        assertThat(get(nodeB, "/api/projects/" + ownedByA + "/whoami")).isEqualTo("a");
+    }
+
+    @Test
+    void stompSendIsHandledByOwnerAndItsBroadcastReachesTheSender() throws Exception {
+        UUID ownedByB = projectOwnedBy("b");
+        String user = UUID.randomUUID().toString();
+
+        StompSession session = connect(nodeA, user);
+        BlockingQueue<String> received = subscribe(nodeA, session, "/topic/projects/" + ownedByB + "/echo");
+
+        session.send("/app/projects/" + ownedByB + "/echo", "hello");
+
+        assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("b:" + user + ":hello");
+        session.disconnect();
+    }
+
+    @Test
+    void sendsFromOneConnectionReachTheOwnerInOrder() throws Exception {
+        UUID ownedByB = projectOwnedBy("b");
+        String user = UUID.randomUUID().toString();
+
+        StompSession session = connect(nodeA, user);
+        BlockingQueue<String> received = subscribe(nodeA, session, "/topic/projects/" + ownedByB + "/echo");
+
+        for (int i = 0; i < 20; i++) {
+            session.send("/app/projects/" + ownedByB + "/echo", "m" + i);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("b:" + user + ":m" + i);
+        }
+        session.disconnect();
+    }
+
+    @Test
+    void topicBroadcastOnOneNodeIsRelayedToThePeer() throws Exception {
+        UUID projectId = projectOwnedBy("a");
+
+        StompSession session = connect(nodeB, UUID.randomUUID().toString());
+        BlockingQueue<String> received = subscribe(nodeB, session, "/topic/projects/" + projectId + "/echo");
+
+        nodeA.getBean(SimpMessagingTemplate.class)
+                .convertAndSend("/topic/projects/" + projectId + "/echo", "from a");
+
+        assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("from a");
+        session.disconnect();
+    }
+
+    // ================= NODES =================
+
+    private static ConfigurableApplicationContext start(String id, int port, String nodes) {
+        return new SpringApplicationBuilder(NodeConfig.class)
+                .web(WebApplicationType.SERVLET)
+                // arguments, so they win over application.properties
+                .run(
+                        "--spring.main.banner-mode=off",
+                        "--server.port=" + port,
+                        "--code.cluster.node-id=" + id,
+                        "--code.cluster.nodes=" + nodes,
+                        "--code.cluster.secret=test-secret",
+                        "--code.cluster.timeout=5s"
+                );
+    }
+
+    @Configuration
+    @EnableWebSocketMessageBroker
+    @ImportAutoConfiguration({
+            PropertyPlaceholderAutoConfiguration.class,
+            TomcatServletWebServerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class
+    })
+    @Import({
+            NodeBeans.class,
+            ConsistentHashSessionDirectory.class,
+            ClusterClient.class,
+            ClusterRoutingInterceptor.class,
+            ClusterRelayInterceptor.class,
+            ClusterForwardingFilter.class,
+            ClusterController.class,
+            EchoController.class
+    })
+    static class NodeConfig implements WebSocketMessageBrokerConfigurer {
+
+        private final ClusterRoutingInterceptor routing;
+        private final ClusterRelayInterceptor relay;
+
+        NodeConfig(ClusterRoutingInterceptor routing, ClusterRelayInterceptor relay) {
+            this.routing = routing;
+            this.relay = relay;
+        }
+
+        @Override
+        public void configureMessageBroker(MessageBrokerRegistry config) {
+            config.enableSimpleBroker("/topic", "/queue");
+            config.setApplicationDestinationPrefixes("/app");
+            config.configureBrokerChannel().interceptors(relay);
+        }
+
+        @Override
+        public void registerStompEndpoints(StompEndpointRegistry registry) {
+            registry.addEndpoint("/ws");
+        }
+
+        @Override
+        public void configureClientInboundChannel(ChannelRegistration registration) {
+            // stands in for WebSocketPermissionInterceptor: the user comes from a CONNECT header
+            registration.interceptors(new ChannelInterceptor() {
+                @Override
+                public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                    StompHeaderAccessor accessor =
+                            MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                    if (accessor != null && accessor.getCommand() == StompCommand.CONNECT) {
+                        String user = accessor.getFirstNativeHeader("user");
+                        accessor.setUser((Principal) () -> user);
+                    }
+                    return message;
+                }
+            }, routing);
+        }
+    }
+
+    // apart from NodeConfig, which needs the interceptors these feed
+    @Configuration
+    static class NodeBeans {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean(destroyMethod = "shutdownNow")
+        ExecutorService blockingExecutor() {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+
+        @Bean
+        SessionRegistry sessionRegistry() {
+            return mock(SessionRegistry.class);
+        }
+
+        @Bean
+        SessionFacade sessionFacade() {
+            return mock(SessionFacade.class);
+        }
+    }
+
+    @RestController
+    static class EchoController {
+
+        private final SimpMessagingTemplate messagingTemplate;
+        private final String nodeId;
+
+        EchoController(
+                SimpMessagingTemplate messagingTemplate,
+                @Value("${code.cluster.node-id}") String nodeId
+        ) {
+            this.messagingTemplate = messagingTemplate;
+            this.nodeId = nodeId;
+        }
+
+        @MessageMapping("/projects/{projectId}/echo")
+        public void echo(@DestinationVariable String projectId, String body, Principal principal) {
+            messagingTemplate.convertAndSend(
+                    "/topic/projects/" + projectId + "/echo",
+                    nodeId + ":" + principal.getName() + ":" + body
+            );
+        }
+
+        @GetMapping("/api/projects/{projectId}/whoami")
+        public String whoami(@PathVariable UUID projectId) {
+            return nodeId;
+        }
+    }
+
+    // ================= CLIENT =================
+
+    private static UUID projectOwnedBy(String nodeId) {
+        SessionDirectory directory = nodeA.getBean(SessionDirectory.class);
+        while (true) {
+            UUID projectId = UUID.randomUUID();
+            if (directory.ownerOf(projectId).id().equals(nodeId)) return projectId;
+        }
+    }
+
+    private static String get(ConfigurableApplicationContext node, String path) throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port(node) + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response.body();
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, String user) throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new StringMessageConverter());
+
+        StompHeaders connect = new StompHeaders();
+        connect.add("user", user);
+
+        return client.connectAsync(
+                URI.create("ws://localhost:" + port(node) + "/ws"),
+                null,
+                connect,
+                new StompSessionHandlerAdapter() {}
+        ).get(10, TimeUnit.SECONDS);
+    }
+
+    private static BlockingQueue<String> subscribe(
+            ConfigurableApplicationContext node,
+            StompSession session,
+            String destination
+    ) throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((String) payload);
+            }
+        });
+
+        // the simple broker sends no receipts; wait until it knows the subscription
+        SimpMessageHeaderAccessor probe = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        probe.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], probe.getMessageHeaders());
+        SubscriptionRegistry subscriptions =
+                node.getBean(SimpleBrokerMessageHandler.class).getSubscriptionRegistry();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (subscriptions.findSubscriptions(message).isEmpty()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        return received;
+    }
+
+    private static int port(ConfigurableApplicationContext node) {
+        return Integer.parseInt(node.getEnvironment().getProperty("server.port"));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
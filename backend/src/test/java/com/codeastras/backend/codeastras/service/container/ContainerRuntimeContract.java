@@ -0,0 +1,157 @@
+package com.codeastras.backend.codeastras.service.container;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Scenarios every {@link ContainerRuntime} has to pass, so the fake behaves
+ * like the engine where the services depend on it.
+ */
+abstract class ContainerRuntimeContract {
+
+    private static final String IMAGE = "alpine:3.20";
+
+    private ContainerRuntime runtime;
+    private final String name = "contract_" + UUID.randomUUID();
+
+    protected abstract ContainerRuntime createRuntime() throws Exception;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        runtime = createRuntime();
+        if (!runtime.imageExists(IMAGE)) runtime.pull(IMAGE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (runtime != null) runtime.remove(name);
+    }
+
+    @Test
+    void exec_deliversOutputAndExitCode() throws Exception {
+        runtime.run(idleContainer());
+
+        try (ContainerProcess p = runtime.exec(name, ContainerRuntime.ExecSpec.builder()
+                .cmd(List.of("sh", "-c", "echo out; echo err >&2; exit 3"))
+                .build())) {
+
+            Output output = pump(p);
+
+            assertThat(p.waitFor(10, TimeUnit.SECONDS)).isEqualTo(OptionalInt.of(3));
+            assertThat(output.stdout()).isEqualTo("out\n");
+            assertThat(output.stderr()).isEqualTo("err\n");
+        }
+    }
+
+    @Test
+    void exec_closingStdinSendsEof() throws Exception {
+        runtime.run(idleContainer());
+
+        try (ContainerProcess p = runtime.exec(name, ContainerRuntime.ExecSpec.builder()
+                .cmd(List.of("cat"))
+                .attachStdin(true)
+                .build())) {
+
+            CompletableFuture<Output> output = CompletableFuture.supplyAsync(() -> pump(p));
+
+            try (OutputStream stdin = p.stdin()) {
+                stdin.write("hello\n".getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertThat(output.get(10, TimeUnit.SECONDS).stdout()).isEqualTo("hello\n");
+            assertThat(p.waitFor(10, TimeUnit.SECONDS)).isEqualTo(OptionalInt.of(0));
+        }
+    }
+
+    @Test
+    void exec_withoutStdinSeesEofAtOnce() throws Exception {
+        runtime.run(idleContainer());
+
+        try (ContainerProcess p = runtime.exec(name, ContainerRuntime.ExecSpec.builder()
+                .cmd(List.of("cat"))
+                .build())) {
+
+            assertThat(pump(p).stdout()).isEmpty();
+            assertThat(p.waitFor(10, TimeUnit.SECONDS)).isEqualTo(OptionalInt.of(0));
+        }
+    }
+
+    @Test
+    void runAttached_deliversOutputAndRemovesContainerOnClose() throws Exception {
+        ContainerProcess p = runtime.runAttached(ContainerRuntime.ContainerSpec.builder()
+                .name(name)
+                .image(IMAGE)
+                .cmd(List.of("sh", "-c", "read line; echo got $line; exit 4"))
+                .openStdin(true)
+                .build());
+
+        try (p) {
+            CompletableFuture<Output> output = CompletableFuture.supplyAsync(() -> pump(p));
+
+            try (OutputStream stdin = p.stdin()) {
+                stdin.write("input\n".getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertThat(output.get(10, TimeUnit.SECONDS).stdout()).isEqualTo("got input\n");
+            assertThat(p.waitFor(10, TimeUnit.SECONDS)).isEqualTo(OptionalInt.of(4));
+        }
+
+        assertThat(runtime.listNames(name)).isEmpty();
+    }
+
+    @Test
+    void remove_missingContainerIsNotAnError() {
+        assertThatCode(() -> runtime.remove(name)).doesNotThrowAnyException();
+        assertThatCode(() -> runtime.removeAsync(name).join()).doesNotThrowAnyException();
+        assertThat(runtime.isRunning(name)).isFalse();
+    }
+
+    @Test
+    void remove_stopsAndForgetsContainer() {
+        runtime.run(idleContainer());
+        assertThat(runtime.isRunning(name)).isTrue();
+        assertThat(runtime.listNames(name)).containsExactly(name);
+
+        runtime.remove(name);
+
+        assertThat(runtime.isRunning(name)).isFalse();
+        assertThat(runtime.listNames(name)).isEmpty();
+    }
+
+    // ================= HELPERS =================
+
+    private ContainerRuntime.ContainerSpec idleContainer() {
+        return ContainerRuntime.ContainerSpec.builder()
+                .name(name)
+                .image(IMAGE)
+                .cmd(List.of("tail", "-f", "/dev/null"))
+                .build();
+    }
+
+    private record Output(String stdout, String stderr) {}
+
+    private static Output pump(ContainerProcess p) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            p.pump((stream, data, off, len) ->
+                    (stream == ContainerProcess.Stream.STDOUT ? out : err).write(data, off, len));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return new Output(out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+}
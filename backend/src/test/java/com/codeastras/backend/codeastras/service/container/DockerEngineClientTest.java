@@ -0,0 +1,88 @@
+package com.codeastras.backend.codeastras.service.container;
+
+import com.codeastras.backend.codeastras.exception.DockerCommandException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DockerEngineClientTest {
+
+    private static final Path SOCKET = Path.of("/var/run/docker.sock");
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // the contract against a real engine, when this machine has one
+    @Nested
+    class AgainstEngine extends ContainerRuntimeContract {
+
+        @Override
+        protected ContainerRuntime createRuntime() {
+            assumeTrue(Files.exists(SOCKET), "no Docker engine");
+            return client(SOCKET, Duration.ofSeconds(30));
+        }
+    }
+
+    @AfterAll
+    static void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pullQuery_splitsTagsAndDigests() {
+        assertThat(DockerEngineClient.pullQuery("alpine"))
+                .isEqualTo("fromImage=alpine&tag=latest");
+        assertThat(DockerEngineClient.pullQuery("alpine:3.20"))
+                .isEqualTo("fromImage=alpine&tag=3.20");
+        assertThat(DockerEngineClient.pullQuery("registry:5000/team/app"))
+                .isEqualTo("fromImage=registry%3A5000%2Fteam%2Fapp&tag=latest");
+        assertThat(DockerEngineClient.pullQuery("alpine@sha256:abc"))
+                .isEqualTo("fromImage=alpine&tag=sha256%3Aabc");
+        assertThat(DockerEngineClient.pullQuery("registry:5000/app:1.0@sha256:abc"))
+                .isEqualTo("fromImage=registry%3A5000%2Fapp&tag=sha256%3Aabc");
+    }
+
+    @Test
+    void plainCall_timesOutWhenEngineStaysSilent(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("engine.sock");
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+
+            // accepts and reads, never answers
+            executor.execute(() -> {
+                try (SocketChannel ignored = server.accept()) {
+                    Thread.sleep(10_000);
+                } catch (Exception ignored) {
+                }
+            });
+
+            DockerEngineClient client = client(socket, Duration.ofMillis(200));
+            long start = System.nanoTime();
+
+            assertThatThrownBy(() -> client.isRunning("anything"))
+                    .isInstanceOf(DockerCommandException.class)
+                    .hasMessageContaining("did not answer in time");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        }
+    }
+
+    private static DockerEngineClient client(Path socket, Duration readTimeout) {
+        return new DockerEngineClient(
+                new ObjectMapper(), executor, socket.toString(), "1.41", readTimeout, Duration.ofMinutes(10));
+    }
+}
@@ -0,0 +1,240 @@
+package com.codeastras.backend.codeastras.service.container;
+
+import com.codeastras.backend.codeastras.exception.DockerCommandException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for Docker in tests.
+ *
+ * Containers are bookkeeping only; exec and attached runs start the command
+ * as a local process, with the working directory mapped through the
+ * container's binds. No isolation and no limits.
+ */
+class FakeContainerRuntime implements ContainerRuntime {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(FakeContainerRuntime.class);
+
+    private final Map<String, ContainerSpec> containers = new ConcurrentHashMap<>();
+    private final Set<String> missingImages = ConcurrentHashMap.newKeySet();
+
+    // ================= CONTAINERS =================
+
+    @Override
+    public String run(ContainerSpec spec) {
+        if (missingImages.contains(spec.image())) {
+            throw new DockerCommandException("No such image: " + spec.image());
+        }
+
+        String name = spec.name() != null ? spec.name() : UUID.randomUUID().toString();
+        if (containers.putIfAbsent(name, spec) != null) {
+            throw new DockerCommandException("Conflict. The container name \"" + name + "\" is already in use");
+        }
+
+        log.debug("Fake container {} started ({})", name, spec.image());
+        return name;
+    }
+
+    @Override
+    public ContainerProcess runAttached(ContainerSpec spec) {
+        String name = run(spec);
+
+        List<String> cmd = new ArrayList<>();
+        if (spec.entrypoint() != null) cmd.addAll(spec.entrypoint());
+        cmd.addAll(spec.cmd());
+
+        return start(spec, cmd, spec.workingDir(), spec.env(), spec.openStdin(), () -> containers.remove(name));
+    }
+
+    @Override
+    public ContainerProcess exec(String container, ExecSpec spec) {
+        ContainerSpec owner = containers.get(container);
+        if (owner == null) {
+            throw new DockerCommandException("No such container: " + container);
+        }
+
+        String workingDir = spec.workingDir() != null ? spec.workingDir() : owner.workingDir();
+        List<String> env = new ArrayList<>(owner.env());
+        env.addAll(spec.env());
+
+        return start(owner, spec.cmd(), workingDir, env, spec.attachStdin(), () -> {});
+    }
+
+    @Override
+    public void remove(String container) {
+        containers.remove(container);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(String container) {
+        remove(container);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public List<String> listNames(String prefix) {
+        return containers.keySet().stream()
+                .filter(n -> n.startsWith(prefix))
+                .sorted()
+                .toList();
+    }
+
+    @Override
+    public boolean isRunning(String container) {
+        return containers.containsKey(container);
+    }
+
+    @Override
+    public String logs(String container) {
+        return "";
+    }
+
+    // ================= IMAGES =================
+
+    @Override
+    public boolean imageExists(String image) {
+        return !missingImages.contains(image);
+    }
+
+    @Override
+    public void pull(String image) {
+        missingImages.remove(image);
+    }
+
+    /**
+     * Makes {@link #imageExists} report false until the image is pulled.
+     */
+    public void markImageMissing(String image) {
+        missingImages.add(image);
+    }
+
+    // ================= INTERNAL =================
+
+    private ContainerProcess start(
+            ContainerSpec container,
+            List<String> cmd,
+            String workingDir,
+            List<String> env,
+            boolean stdin,
+            Runnable onClose
+    ) {
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+
+        hostPath(container, workingDir).ifPresent(dir -> pb.directory(dir.toFile()));
+        for (String e : env) {
+            int eq = e.indexOf('=');
+            if (eq > 0) pb.environment().put(e.substring(0, eq), e.substring(eq + 1));
+        }
+
+        try {
+            Process process = pb.start();
+            if (!stdin) {
+                // like an engine process without stdin attached: immediate EOF
+                process.getOutputStream().close();
+            }
+            return new LocalProcess(process, onClose);
+        } catch (IOException e) {
+            throw new DockerCommandException("exec failed: " + e.getMessage());
+        }
+    }
+
+    // container path → host path through the longest matching bind
+    private Optional<Path> hostPath(ContainerSpec container, String containerPath) {
+        if (containerPath == null) return Optional.empty();
+
+        String best = null;
+        Path host = null;
+        for (String bind : container.binds()) {
+            String[] parts = bind.split(":");
+            if (parts.length < 2) continue;
+
+            String target = parts[1];
+            if ((containerPath.equals(target) || containerPath.startsWith(target + "/"))
+                    && (best == null || target.length() > best.length())) {
+                best = target;
+                host = Path.of(parts[0]).resolve(containerPath.substring(target.length()).replaceFirst("^/", ""));
+            }
+        }
+        return Optional.ofNullable(host);
+    }
+
+    private static final class LocalProcess implements ContainerProcess {
+
+        private final Process process;
+        private final Runnable onClose;
+
+        LocalProcess(Process process, Runnable onClose) {
+            this.process = process;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void pump(OutputHandler handler) throws IOException {
+            // handler calls are serialized, as with the engine's single multiplexed stream
+            Object lock = new Object();
+            Thread stderr = Thread.ofVirtual().start(() -> {
+                try {
+                    copy(process.getErrorStream(), Stream.STDERR, handler, lock);
+                } catch (IOException e) {
+                    log.debug("Fake stderr closed: {}", e.getMessage());
+                }
+            });
+
+            try {
+                copy(process.getInputStream(), Stream.STDOUT, handler, lock);
+            } finally {
+                try {
+                    stderr.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private static void copy(InputStream from, Stream stream, OutputHandler handler, Object lock)
+                throws IOException {
+            byte[] buf = new byte[8192];
+            try (from) {
+                int n;
+                while ((n = from.read(buf)) != -1) {
+                    synchronized (lock) {
+                        handler.onOutput(stream, buf, 0, n);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public OutputStream stdin() {
+            return process.getOutputStream();
+        }
+
+        @Override
+        public OptionalInt waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+            return process.waitFor(timeout, unit)
+                    ? OptionalInt.of(process.exitValue())
+                    : OptionalInt.empty();
+        }
+
+        @Override
+        public void kill() {
+            process.destroyForcibly();
+        }
+
+        @Override
+        public void close() {
+            process.destroyForcibly();
+            onClose.run();
+        }
+    }
+}
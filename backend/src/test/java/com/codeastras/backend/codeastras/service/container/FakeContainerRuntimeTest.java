@@ -0,0 +1,9 @@
+package com.codeastras.backend.codeastras.service.container;
+
+class FakeContainerRuntimeTest extends ContainerRuntimeContract {
+
+    @Override
+    protected ContainerRuntime createRuntime() {
+        return new FakeContainerRuntime();
+    }
+}
@@ -0,0 +1,98 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CollaborativeDocumentTest {
+
+    @Test
+    void listenersSeeConcurrentOperationsInRevisionOrder() throws Exception {
+        CollaborativeDocument doc = new CollaborativeDocument(
+                new ProjectFile(UUID.randomUUID(), UUID.randomUUID(), "main.py", "", "FILE"), 0, 10_000);
+
+        List<Long> published = new ArrayList<>();
+        int threads = 8;
+        int perThread = 200;
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        // every op is based on revision 0 and has to be transformed over the rest
+                        doc.apply(0, new TextOperation().insert("x"), Integer.MAX_VALUE, applied -> {
+                            published.add(applied.revision());
+                            Thread.yield();
+                        });
+                    }
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(published).hasSize(threads * perThread);
+        for (int i = 0; i < published.size(); i++) {
+            assertThat(published.get(i)).isEqualTo(i + 1L);
+        }
+        assertThat(doc.snapshot().content()).hasSize(threads * perThread);
+    }
+
+    @Test
+    void replaceNotifiesOnlyWhenSomethingChanged() {
+        CollaborativeDocument doc = new CollaborativeDocument(
+                new ProjectFile(UUID.randomUUID(), UUID.randomUUID(), "main.py", "a", "FILE"), 3, 100);
+
+        List<Long> published = new ArrayList<>();
+        doc.replace("a", applied -> published.add(applied.revision()));
+        doc.replace("ab", applied -> published.add(applied.revision()));
+
+        assertThat(published).containsExactly(4L);
+    }
+
+    @Test
+    void idleCleanDocumentClosesAndRejectsEdits() {
+        CollaborativeDocument doc = new CollaborativeDocument(
+                new ProjectFile(UUID.randomUUID(), UUID.randomUUID(), "main.py", "a", "FILE"), 0, 100);
+
+        assertThat(doc.closeIfIdle(Instant.now().plusSeconds(1))).isTrue();
+
+        assertThatThrownBy(() -> doc.apply(0, new TextOperation().retain(1).insert("b"), Integer.MAX_VALUE))
+                .isInstanceOf(CollaborativeDocument.ClosedException.class);
+        assertThatThrownBy(() -> doc.replace("ab"))
+                .isInstanceOf(CollaborativeDocument.ClosedException.class);
+        assertThat(doc.snapshot()).isEqualTo(new CollaborativeDocument.Snapshot("a", 0));
+    }
+
+    @Test
+    void dirtyOrRecentlyUsedDocumentStaysOpen() {
+        CollaborativeDocument doc = new CollaborativeDocument(
+                new ProjectFile(UUID.randomUUID(), UUID.randomUUID(), "main.py", "a", "FILE"), 0, 100);
+
+        assertThat(doc.closeIfIdle(Instant.now().minusSeconds(60))).isFalse();
+
+        doc.replace("ab");
+        assertThat(doc.closeIfIdle(Instant.now().plusSeconds(1))).isFalse();
+
+        doc.markPersisted(1);
+        assertThat(doc.closeIfIdle(Instant.now().plusSeconds(1))).isTrue();
+    }
+}
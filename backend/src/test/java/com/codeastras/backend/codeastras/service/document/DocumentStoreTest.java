@@ -0,0 +1,82 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentStoreTest {
+
+    private static final UUID PROJECT = UUID.randomUUID();
+
+    private final ProjectFileRepository fileRepo = mock(ProjectFileRepository.class);
+    private final DocumentStore store = new DocumentStore(fileRepo);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "historySize", 100);
+        when(fileRepo.findByProjectIdAndPath(PROJECT, "main.py"))
+                .thenAnswer(inv -> new ProjectFile(UUID.randomUUID(), PROJECT, "main.py", "a", "FILE"));
+    }
+
+    @Test
+    void editOfAnEvictedInstanceGoesToTheReloadedOne() {
+        CollaborativeDocument stale = store.open(PROJECT, "main.py");
+        evictEverything();
+
+        // a caller still holding the old instance cannot edit it
+        assertThatThrownBy(() -> stale.replace("ab"))
+                .isInstanceOf(CollaborativeDocument.ClosedException.class);
+
+        DocumentStore.Edited edited = store.edit(PROJECT, "main.py", d -> d.replace("ab"));
+
+        assertThat(edited.document()).isNotSameAs(stale);
+        assertThat(edited.applied()).isNotNull();
+        assertThat(store.find(PROJECT, "main.py")).containsSame(edited.document());
+        assertThat(edited.document().isDirty()).isTrue();
+    }
+
+    @Test
+    void editRetriesWhenTheInstanceIsClosedUnderIt() {
+        CollaborativeDocument first = store.open(PROJECT, "main.py");
+        int[] attempts = new int[1];
+
+        DocumentStore.Edited edited = store.edit(PROJECT, "main.py", d -> {
+            if (attempts[0]++ == 0) {
+                // evicted between lookup and edit
+                evictEverything();
+            }
+            return d.replace("ab");
+        });
+
+        assertThat(attempts[0]).isEqualTo(2);
+        assertThat(edited.document()).isNotSameAs(first);
+        assertThat(edited.document().snapshot().content()).isEqualTo("ab");
+    }
+
+    @Test
+    void dirtyDocumentIsNotEvicted() {
+        DocumentStore.Edited edited = store.edit(PROJECT, "main.py", d -> d.replace("ab"));
+        evictEverything();
+
+        assertThat(store.find(PROJECT, "main.py")).containsSame(edited.document());
+        assertThat(store.edit(PROJECT, "main.py", d -> d.replace("abc")).document())
+                .isSameAs(edited.document());
+    }
+
+    // ================= HELPERS =================
+
+    // a negative idle time puts the cutoff in the future
+    private void evictEverything() {
+        ReflectionTestUtils.setField(store, "idleSeconds", -60L);
+        store.evictIdle();
+    }
+}
@@ -0,0 +1,122 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PieceTableTest {
+
+    @Test
+    void insertsAtStartMiddleAndEnd() {
+        PieceTable table = new PieceTable("hello world");
+
+        table.apply(new TextOperation().insert(">> ").retain(11));
+        table.apply(new TextOperation().retain(8).insert(",").retain(6));
+        table.apply(new TextOperation().retain(15).insert("!"));
+
+        assertThat(table.toString()).isEqualTo(">> hello, world!");
+        assertThat(table.length()).isEqualTo(16);
+    }
+
+    @Test
+    void typingAtTheEndOfAnInsertGrowsThatPiece() {
+        PieceTable table = new PieceTable("ab");
+
+        table.apply(new TextOperation().retain(1).insert("x").retain(1));
+        int pieces = table.pieceCount();
+        table.apply(new TextOperation().retain(2).insert("y").retain(1));
+        table.apply(new TextOperation().retain(3).insert("z").retain(1));
+
+        assertThat(table.toString()).isEqualTo("axyzb");
+        assertThat(table.pieceCount()).isEqualTo(pieces);
+    }
+
+    @Test
+    void deletesWithinAndAcrossPieces() {
+        PieceTable table = new PieceTable("0123456789");
+        table.apply(new TextOperation().retain(5).insert("abc").retain(5));   // 01234abc56789
+
+        table.apply(new TextOperation().retain(1).delete(2).retain(10));       // 034abc56789
+        assertThat(table.toString()).isEqualTo("034abc56789");
+
+        table.apply(new TextOperation().retain(2).delete(5).retain(4));        // 036789
+        assertThat(table.toString()).isEqualTo("036789");
+
+        table.apply(new TextOperation().delete(6));
+        assertThat(table.toString()).isEmpty();
+        assertThat(table.length()).isZero();
+    }
+
+    @Test
+    void rejectsOperationForAnotherLength() {
+        PieceTable table = new PieceTable("abc");
+
+        assertThatThrownBy(() -> table.apply(new TextOperation().retain(4)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void compactsOncePastFiveHundredTwelvePieces() {
+        PieceTable table = new PieceTable("x".repeat(2000));
+        String expected = table.toString();
+
+        // every insert lands away from the last one, so each splits a piece
+        int maxPieces = 0;
+        for (int i = 0; i < 400; i++) {
+            int pos = (i * 7) % expected.length();
+            TextOperation op = new TextOperation()
+                    .retain(pos).insert("y").retain(expected.length() - pos);
+
+            table.apply(op);
+            expected = op.apply(expected);
+            maxPieces = Math.max(maxPieces, table.pieceCount());
+
+            assertThat(table.pieceCount()).isLessThanOrEqualTo(512);
+        }
+
+        assertThat(maxPieces).isGreaterThan(256);
+        assertThat(table.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    void compactionKeepsTheTextAndLaterEditsWorkOnIt() {
+        PieceTable table = new PieceTable("");
+        String expected = "";
+
+        for (int i = 0; i < 600; i++) {
+            // alternate ends so pieces never merge
+            TextOperation op = i % 2 == 0
+                    ? new TextOperation().insert("a" + i).retain(expected.length())
+                    : new TextOperation().retain(expected.length()).insert("b" + i);
+            table.apply(op);
+            expected = op.apply(expected);
+        }
+
+        assertThat(table.pieceCount()).isLessThan(512);
+        assertThat(table.toString()).isEqualTo(expected);
+
+        TextOperation delete = new TextOperation().retain(10).delete(20).retain(expected.length() - 30);
+        table.apply(delete);
+        assertThat(table.toString()).isEqualTo(delete.apply(expected));
+    }
+
+    @Test
+    void matchesStringApplyUnderRandomEdits() {
+        Random random = new Random(3);
+        PieceTable table = new PieceTable("seed text");
+        String expected = "seed text";
+
+        for (int i = 0; i < 3000; i++) {
+            TextOperation op = TextOperationTest.randomOperation(random, expected);
+            table.apply(op);
+            expected = op.apply(expected);
+
+            assertThat(table.length()).isEqualTo(expected.length());
+        }
+
+        assertThat(table.toString()).isEqualTo(expected);
+    }
+}
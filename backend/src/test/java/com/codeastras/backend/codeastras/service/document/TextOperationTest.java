@@ -0,0 +1,216 @@
+package com.codeastras.backend.codeastras.service.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextOperationTest {
+
+    private static final String ALPHABET = "abcdefgh \n";
+
+    // ================= APPLY =================
+
+    @Test
+    void applyRetainsInsertsAndDeletes() {
+        TextOperation op = new TextOperation().retain(6).delete(5).insert("there");
+
+        assertThat(op.apply("hello world")).isEqualTo("hello there");
+        assertThat(op.getBaseLength()).isEqualTo(11);
+        assertThat(op.getTargetLength()).isEqualTo(11);
+    }
+
+    @Test
+    void applyRejectsWrongBaseLength() {
+        TextOperation op = new TextOperation().retain(3).insert("x");
+
+        assertThatThrownBy(() -> op.apply("ab"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void builderMergesAdjacentComponentsAndPutsInsertsBeforeDeletes() {
+        TextOperation op = new TextOperation()
+                .retain(1).retain(2)
+                .delete(1).insert("a").insert("b").delete(2);
+
+        assertThat(op.toWire()).containsExactly(3, "ab", -3);
+    }
+
+    @Test
+    void wireFormatRoundTrips() {
+        TextOperation op = TextOperation.fromWire(List.of(2, "xy", -1, 3));
+
+        assertThat(op.toWire()).containsExactly(2, "xy", -1, 3);
+        assertThat(op.apply("abcdef")).isEqualTo("abxydef");
+    }
+
+    @Test
+    void wireFormatRejectsZeroAndUnknownComponents() {
+        assertThatThrownBy(() -> TextOperation.fromWire(List.of(0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TextOperation.fromWire(List.of(true)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TextOperation.fromWire(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ================= DIFF =================
+
+    @Test
+    void diffIsOneHunkBetweenCommonPrefixAndSuffix() {
+        TextOperation op = TextOperation.diff("hello world", "hello brave world");
+
+        assertThat(op.toWire()).containsExactly(6, "brave ", 5);
+        assertThat(op.apply("hello world")).isEqualTo("hello brave world");
+    }
+
+    @Test
+    void diffOfEqualTextsIsNoop() {
+        assertThat(TextOperation.diff("same", "same").isNoop()).isTrue();
+        assertThat(TextOperation.diff(null, "").isNoop()).isTrue();
+    }
+
+    @Test
+    void diffTurnsAnyTextIntoAnyOther() {
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            String from = randomText(random, 20);
+            String to = randomText(random, 20);
+
+            assertThat(TextOperation.diff(from, to).apply(from)).isEqualTo(to);
+        }
+    }
+
+    // ================= TRANSFORM =================
+
+    @Test
+    void transformOfConcurrentInsertsPutsFirstOperandFirst() {
+        TextOperation a = new TextOperation().retain(1).insert("A").retain(1);
+        TextOperation b = new TextOperation().retain(1).insert("B").retain(1);
+
+        TextOperation[] t = TextOperation.transform(a, b);
+
+        assertThat(t[1].apply(a.apply("xy"))).isEqualTo("xABy");
+        assertThat(t[0].apply(b.apply("xy"))).isEqualTo("xABy");
+    }
+
+    @Test
+    void transformOfOverlappingDeletesRemovesTheUnionOnce() {
+        TextOperation a = new TextOperation().retain(1).delete(3).retain(2);
+        TextOperation b = new TextOperation().retain(2).delete(3).retain(1);
+
+        TextOperation[] t = TextOperation.transform(a, b);
+
+        assertThat(t[1].apply(a.apply("abcdef"))).isEqualTo("af");
+        assertThat(t[0].apply(b.apply("abcdef"))).isEqualTo("af");
+    }
+
+    @Test
+    void transformRejectsDifferentBases() {
+        TextOperation a = new TextOperation().retain(2);
+        TextOperation b = new TextOperation().retain(3);
+
+        assertThatThrownBy(() -> TextOperation.transform(a, b))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void transformConverges() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String s = randomText(random, 30);
+            TextOperation a = randomOperation(random, s);
+            TextOperation b = randomOperation(random, s);
+
+            TextOperation[] t = TextOperation.transform(a, b);
+
+            assertThat(t[1].apply(a.apply(s)))
+                    .as("apply(apply(s,a),b') == apply(apply(s,b),a') for s=%s a=%s b=%s",
+                            s, a.toWire(), b.toWire())
+                    .isEqualTo(t[0].apply(b.apply(s)));
+        }
+    }
+
+    // ================= COMPOSE =================
+
+    @Test
+    void composeHasTheEffectOfBothOperations() {
+        TextOperation a = new TextOperation().retain(5).insert(" there").retain(6);
+        TextOperation b = new TextOperation().delete(5).insert("hi").retain(12);
+
+        TextOperation c = a.compose(b);
+
+        assertThat(c.apply("hello world")).isEqualTo("hi there world");
+    }
+
+    @Test
+    void composeDropsTextInsertedAndThenDeleted() {
+        TextOperation a = new TextOperation().retain(2).insert("xyz");
+        TextOperation b = new TextOperation().retain(2).delete(3);
+
+        TextOperation c = a.compose(b);
+
+        assertThat(c.isNoop()).isTrue();
+        assertThat(c.apply("ab")).isEqualTo("ab");
+    }
+
+    @Test
+    void composeRejectsOperationsThatDoNotChain() {
+        TextOperation a = new TextOperation().retain(2).insert("x");
+        TextOperation b = new TextOperation().retain(2);
+
+        assertThatThrownBy(() -> a.compose(b))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void composeMatchesSequentialApply() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            String s = randomText(random, 30);
+            TextOperation a = randomOperation(random, s);
+            TextOperation b = randomOperation(random, a.apply(s));
+
+            assertThat(a.compose(b).apply(s)).isEqualTo(b.apply(a.apply(s)));
+        }
+    }
+
+    // ================= INTERNAL =================
+
+    static String randomText(Random random, int maxLength) {
+        int n = random.nextInt(maxLength + 1);
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    static TextOperation randomOperation(Random random, String doc) {
+        TextOperation op = new TextOperation();
+        int left = doc.length();
+
+        while (left > 0) {
+            int n = 1 + random.nextInt(Math.min(left, 5));
+            switch (random.nextInt(4)) {
+                case 0 -> op.insert(randomText(random, 4));
+                case 1 -> {
+                    op.delete(n);
+                    left -= n;
+                }
+                default -> {
+                    op.retain(n);
+                    left -= n;
+                }
+            }
+        }
+        if (random.nextBoolean()) {
+            op.insert(randomText(random, 4));
+        }
+        return op;
+    }
+}
@@ -0,0 +1,314 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ExecutionSchedulerTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(T0);
+    private final ManualExecutor workers = new ManualExecutor();
+    private final ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+
+    private final List<String> started = new ArrayList<>();
+
+    // ================= CONCURRENCY =================
+
+    @Test
+    void oneRunPerProjectAtATime() {
+        ExecutionScheduler scheduler = scheduler(4, 100, 10);
+        UUID project = UUID.randomUUID();
+
+        submit(scheduler, project, UUID.randomUUID(), "a1");
+        submit(scheduler, project, UUID.randomUUID(), "a2");
+
+        assertThat(workers.pending()).isEqualTo(1);
+
+        workers.runNext();
+        assertThat(started).containsExactly("a1");
+        assertThat(workers.pending()).isEqualTo(1);
+
+        workers.runNext();
+        assertThat(started).containsExactly("a1", "a2");
+    }
+
+    @Test
+    void globalCapLimitsRunsAcrossProjects() {
+        ExecutionScheduler scheduler = scheduler(2, 100, 10);
+
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "a");
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "b");
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "c");
+
+        assertThat(workers.pending()).isEqualTo(2);
+
+        workers.runNext();
+        assertThat(workers.pending()).isEqualTo(2);
+
+        workers.runAll();
+        assertThat(started).containsExactlyInAnyOrder("a", "b", "c");
+    }
+
+    @Test
+    void fullGlobalQueueRejects() {
+        ExecutionScheduler scheduler = scheduler(1, 2, 10);
+
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "running");
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "queued-1");
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "queued-2");
+
+        assertThatThrownBy(() -> submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "one-too-many"))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("queue is full");
+    }
+
+    @Test
+    void fullProjectQueueRejectsOnlyThatProject() {
+        ExecutionScheduler scheduler = scheduler(1, 100, 2);
+        UUID project = UUID.randomUUID();
+
+        submit(scheduler, project, UUID.randomUUID(), "running");
+        submit(scheduler, project, UUID.randomUUID(), "queued-1");
+        submit(scheduler, project, UUID.randomUUID(), "queued-2");
+
+        assertThatThrownBy(() -> submit(scheduler, project, UUID.randomUUID(), "one-too-many"))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("this project");
+
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "other-project");
+    }
+
+    // ================= FAIRNESS =================
+
+    @Test
+    void heavyProjectDoesNotStarveLightOne() {
+        ExecutionScheduler scheduler = scheduler(1, 100, 10);
+        UUID heavy = UUID.randomUUID();
+        UUID light = UUID.randomUUID();
+
+        for (int i = 1; i <= 5; i++) {
+            submit(scheduler, heavy, UUID.randomUUID(), "heavy-" + i);
+        }
+        submit(scheduler, light, UUID.randomUUID(), "light-1");
+        submit(scheduler, light, UUID.randomUUID(), "light-2");
+
+        workers.runAll();
+
+        assertThat(started).hasSize(7);
+        // the light project joins at the current virtual time and goes next, then alternates
+        assertThat(started.indexOf("light-1")).isEqualTo(1);
+        assertThat(started.indexOf("light-2")).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void usersShareTheirProjectsTurns() {
+        ExecutionScheduler scheduler = scheduler(1, 100, 10);
+        UUID project = UUID.randomUUID();
+        UUID busy = UUID.randomUUID();
+        UUID quiet = UUID.randomUUID();
+
+        submit(scheduler, project, busy, "busy-1");
+        submit(scheduler, project, busy, "busy-2");
+        submit(scheduler, project, busy, "busy-3");
+        submit(scheduler, project, quiet, "quiet-1");
+
+        workers.runAll();
+
+        assertThat(started.indexOf("quiet-1")).isLessThanOrEqualTo(2);
+    }
+
+    // ================= RATE LIMIT =================
+
+    @Test
+    void runOverTheRateLimitWaitsForTheTimer() {
+        ExecutionScheduler scheduler = scheduler(4, 100, 10);
+        UUID project = UUID.randomUUID();
+
+        for (int i = 1; i <= 6; i++) {
+            submit(scheduler, project, UUID.randomUUID(), "run-" + i);
+        }
+        workers.runAll();
+
+        assertThat(started).containsExactly("run-1", "run-2", "run-3", "run-4", "run-5");
+
+        ArgumentCaptor<Runnable> wakeUp = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer, atLeastOnce())
+                .schedule(wakeUp.capture(), eq(60_000L), eq(TimeUnit.MILLISECONDS));
+
+        // too early: nothing to start yet
+        clock.advance(Duration.ofSeconds(30));
+        wakeUp.getValue().run();
+        assertThat(workers.pending()).isZero();
+
+        clock.advance(Duration.ofSeconds(30));
+        wakeUp.getValue().run();
+        workers.runAll();
+
+        assertThat(started).endsWith("run-6");
+    }
+
+    @Test
+    void noTimerWithoutHeldRuns() {
+        ExecutionScheduler scheduler = scheduler(4, 100, 10);
+
+        submit(scheduler, UUID.randomUUID(), UUID.randomUUID(), "a");
+        workers.runAll();
+
+        verify(timer, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    // ================= POSITIONS =================
+
+    @Test
+    void positionsFollowTheStrideOrder() {
+        ExecutionScheduler scheduler = scheduler(1, 100, 10);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        Positions a1 = submit(scheduler, a, UUID.randomUUID(), "a1");
+        Positions a2 = submit(scheduler, a, UUID.randomUUID(), "a2");
+        assertThat(a1.seen).isEmpty();
+        assertThat(a2.seen).containsExactly(1);
+
+        // project b has not had a turn yet, so it overtakes a's second run
+        Positions b1 = submit(scheduler, b, UUID.randomUUID(), "b1");
+        assertThat(b1.seen).containsExactly(1);
+        assertThat(a2.seen).containsExactly(1, 2);
+    }
+
+    @Test
+    void cancelRemovesTheRunAndMovesTheRestUp() {
+        ExecutionScheduler scheduler = scheduler(1, 100, 10);
+        UUID project = UUID.randomUUID();
+        UUID user = UUID.randomUUID();
+
+        submit(scheduler, project, user, "running");
+        UUID second = UUID.randomUUID();
+        Positions p2 = submit(scheduler, second, project, user, "second");
+        Positions p3 = submit(scheduler, project, user, "third");
+        assertThat(p3.seen).containsExactly(2);
+
+        assertThat(scheduler.cancel(project, second)).isTrue();
+
+        assertThat(p2.cancelled).isTrue();
+        assertThat(p3.seen).containsExactly(2, 1);
+        assertThat(scheduler.isQueued(second)).isFalse();
+
+        workers.runAll();
+        assertThat(started).containsExactly("running", "third");
+    }
+
+    @Test
+    void cancelIgnoresRunsOfOtherProjects() {
+        ExecutionScheduler scheduler = scheduler(1, 100, 10);
+        UUID project = UUID.randomUUID();
+
+        submit(scheduler, project, UUID.randomUUID(), "running");
+        UUID queued = UUID.randomUUID();
+        submit(scheduler, queued, project, UUID.randomUUID(), "queued");
+
+        assertThat(scheduler.cancel(UUID.randomUUID(), queued)).isFalse();
+        assertThat(scheduler.isQueued(queued)).isTrue();
+    }
+
+    // ================= HELPERS =================
+
+    private ExecutionScheduler scheduler(int maxConcurrent, int queueCapacity, int maxQueuedPerProject) {
+        ExecutionScheduler scheduler = new ExecutionScheduler(
+                new RunRateLimiter(clock), new SimpleMeterRegistry(), workers,
+                maxConcurrent, queueCapacity, maxQueuedPerProject, clock, timer);
+        scheduler.start();
+        return scheduler;
+    }
+
+    private Positions submit(ExecutionScheduler scheduler, UUID project, UUID user, String label) {
+        return submit(scheduler, UUID.randomUUID(), project, user, label);
+    }
+
+    private Positions submit(ExecutionScheduler scheduler, UUID runId, UUID project, UUID user, String label) {
+        Positions positions = new Positions();
+        scheduler.submit(runId, project, user, () -> started.add(label), positions);
+        return positions;
+    }
+
+    private static final class Positions implements ExecutionScheduler.RunListener {
+        final List<Integer> seen = new ArrayList<>();
+        boolean cancelled;
+
+        @Override
+        public void onQueued(int position) {
+            seen.add(position);
+        }
+
+        @Override
+        public void onCancelled() {
+            cancelled = true;
+        }
+    }
+
+    // worker threads the test runs by hand, in submission order
+    private static final class ManualExecutor extends AbstractExecutorService {
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runNext() {
+            tasks.pollFirst().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) runNext();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.addLast(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.service.container.ContainerProcess.Stream;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputCoalescerTest {
+
+    private record Frame(Stream stream, String text, boolean partial) {}
+
+    // records frames; notices arrive with a null stream
+    private static class Recorder implements RunOutputSink {
+        final List<Frame> frames = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onOutput(String output) {
+            frames.add(new Frame(null, output, false));
+        }
+
+        @Override
+        public void onOutput(Stream stream, String output, boolean partial) {
+            frames.add(new Frame(stream, output, partial));
+        }
+
+        // the program's output as a viewer would reassemble it
+        String text(Stream stream) {
+            StringBuilder out = new StringBuilder();
+            for (Frame f : frames) {
+                if (f.stream() != stream) continue;
+                out.append(f.text());
+                if (!f.partial()) out.append('\n');
+            }
+            return out.toString();
+        }
+
+        List<String> notices() {
+            return frames.stream().filter(f -> f.stream() == null).map(Frame::text).toList();
+        }
+    }
+
+    // ================= FRAMING =================
+
+    @Test
+    void completeLinesGoOutAsOneFrame() throws Exception {
+        Recorder sink = new Recorder();
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 4096, 1024, 1_000, 1_000, "t");
+
+        write(out, Stream.STDOUT, "a\nb\nc\n");
+        out.close();
+
+        assertThat(sink.frames).containsExactly(new Frame(Stream.STDOUT, "a\nb\nc", false));
+    }
+
+    @Test
+    void streamsKeepTheirOwnFrames() throws Exception {
+        Recorder sink = new Recorder();
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 4096, 1024, 1_000, 1_000, "t");
+
+        write(out, Stream.STDOUT, "out 1\n");
+        write(out, Stream.STDERR, "err 1\n");
+        write(out, Stream.STDOUT, "out 2\n");
+        out.close();
+
+        assertThat(sink.text(Stream.STDOUT)).isEqualTo("out 1\nout 2\n");
+        assertThat(sink.text(Stream.STDERR)).isEqualTo("err 1\n");
+    }
+
+    @Test
+    void ringRefillsKeepOrder() throws Exception {
+        Recorder sink = new Recorder();
+        // a ring a fraction of the output, drained and refilled many times over
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 32, 16, 5, 5_000, "t");
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String line = "line " + i + "\n";
+            expected.append(line);
+            write(out, Stream.STDOUT, line);
+        }
+        out.close();
+
+        assertThat(sink.text(Stream.STDOUT)).isEqualTo(expected.toString());
+        assertThat(sink.notices()).isEmpty();
+    }
+
+    @Test
+    void longLinesAreCutOnCharacterBoundaries() throws Exception {
+        Recorder sink = new Recorder();
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 4096, 7, 1_000, 1_000, "t");
+
+        String line = "é€😀".repeat(20);
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        // 7-byte chunks end mid-character at every offset; each one is a full frame
+        for (int off = 0, n = 0; off < bytes.length; off += 7) {
+            out.write(Stream.STDOUT, bytes, off, Math.min(7, bytes.length - off));
+            int frames = ++n;
+            await(() -> sink.frames.size() == frames);
+        }
+        write(out, Stream.STDOUT, "\n");
+        out.close();
+
+        assertThat(sink.frames).allSatisfy(f -> assertThat(f.partial() || f == sink.frames.getLast()).isTrue());
+        assertThat(sink.frames).allSatisfy(f -> assertThat(f.text()).doesNotContain("�"));
+        assertThat(sink.text(Stream.STDOUT)).isEqualTo(line + "\n");
+    }
+
+    @Test
+    void stalledLineGoesOutAsPartialFrame() throws Exception {
+        Recorder sink = new Recorder();
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 4096, 1024, 20, 1_000, "t");
+
+        write(out, Stream.STDOUT, "Name? ");
+        await(() -> !sink.frames.isEmpty());
+
+        assertThat(sink.frames).containsExactly(new Frame(Stream.STDOUT, "Name? ", true));
+
+        write(out, Stream.STDOUT, "Ada\n");
+        out.close();
+
+        assertThat(sink.text(Stream.STDOUT)).isEqualTo("Name? Ada\n");
+    }
+
+    // ================= BACKPRESSURE =================
+
+    @Test
+    void slowSinkDropsAndSaysHowMuch() throws Exception {
+        CountDownLatch inSink = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder sink = new Recorder() {
+            @Override
+            public void onOutput(Stream stream, String output, boolean partial) {
+                super.onOutput(stream, output, partial);
+                inSink.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 16, 8, 1_000, 10, "t");
+
+        write(out, Stream.STDOUT, "first!\n");
+        assertThat(inSink.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 16 fit in the ring, the writer waits 10 ms, the other 24 are dropped
+        write(out, Stream.STDOUT, "x".repeat(39) + "\n");
+        release.countDown();
+        out.close();
+
+        assertThat(sink.notices()).containsExactly("[24 bytes of output dropped: viewers could not keep up]");
+        assertThat(out.transcript()).isEqualTo("first!\n" + "x".repeat(39) + "\n");
+    }
+
+    @Test
+    void outputPastMaxBytesIsTruncated() throws Exception {
+        Recorder sink = new Recorder();
+        OutputCoalescer out = new OutputCoalescer(sink, 10, 4096, 1024, 1_000, 1_000, "t");
+
+        write(out, Stream.STDOUT, "0123\n56789abcdef\n");
+        write(out, Stream.STDOUT, "ignored\n");
+        out.close();
+
+        assertThat(sink.text(Stream.STDOUT)).isEqualTo("0123\n56789\n");
+        assertThat(sink.notices()).containsExactly(OutputCoalescer.TRUNCATED_NOTICE);
+        assertThat(out.transcript()).isEqualTo("0123\n56789\n" + OutputCoalescer.TRUNCATED_NOTICE + "\n");
+    }
+
+    @Test
+    void failingSinkOnlyLosesThatFrame() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        Recorder sink = new Recorder() {
+            @Override
+            public void onOutput(Stream stream, String output, boolean partial) {
+                if (failed.getCount() > 0) {
+                    failed.countDown();
+                    throw new IllegalStateException("broker unavailable");
+                }
+                super.onOutput(stream, output, partial);
+            }
+        };
+        OutputCoalescer out = new OutputCoalescer(sink, 1 << 20, 4096, 4, 1_000, 1_000, "t");
+
+        write(out, Stream.STDOUT, "lost\n");
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        write(out, Stream.STDOUT, "kept\n");
+        out.close();
+
+        assertThat(sink.text(Stream.STDOUT)).isEqualTo("kept\n");
+        assertThat(out.transcript()).isEqualTo("lost\nkept\n");
+    }
+
+    @Test
+    void chunksSplitTheTranscriptByStreamInWriteOrder() throws Exception {
+        OutputCoalescer out = new OutputCoalescer(new Recorder(), 1 << 20, 4096, 1024, 1_000, 1_000, "t");
+
+        write(out, Stream.STDOUT, "a\n");
+        write(out, Stream.STDOUT, "b\n");
+        write(out, Stream.STDERR, "boom\n");
+        write(out, Stream.STDOUT, "c\n");
+        out.close();
+
+        assertThat(out.chunks())
+                .extracting(c -> c.stream() + ":" + new String(c.data(), StandardCharsets.UTF_8))
+                .containsExactly("stdout:a\nb\n", "stderr:boom\n", "stdout:c\n");
+    }
+
+    // ================= HELPERS =================
+
+    private static void write(OutputCoalescer out, Stream stream, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(stream, bytes, 0, bytes.length);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition within 5 s").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
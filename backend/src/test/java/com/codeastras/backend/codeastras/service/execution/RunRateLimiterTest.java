@@ -0,0 +1,60 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RunRateLimiterTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(T0);
+    private final RunRateLimiter limiter = new RunRateLimiter(clock);
+    private final UUID project = UUID.randomUUID();
+
+    @Test
+    void reserve_startsAtOnceInsideTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.reserve(project)).isEqualTo(T0);
+        }
+    }
+
+    @Test
+    void reserve_beyondTheLimitBooksWhenTheWindowFrees() {
+        for (int i = 0; i < 5; i++) limiter.reserve(project);
+
+        clock.advance(Duration.ofSeconds(20));
+
+        assertThat(limiter.reserve(project)).isEqualTo(T0.plusSeconds(60));
+    }
+
+    @Test
+    void reserve_isPerProject() {
+        for (int i = 0; i < 5; i++) limiter.reserve(project);
+
+        assertThat(limiter.reserve(UUID.randomUUID())).isEqualTo(T0);
+    }
+
+    @Test
+    void reserve_oldStartsLeaveTheWindow() {
+        for (int i = 0; i < 5; i++) limiter.reserve(project);
+
+        clock.advance(Duration.ofSeconds(61));
+
+        assertThat(limiter.reserve(project)).isEqualTo(T0.plusSeconds(61));
+    }
+
+    @Test
+    void release_givesTheSlotBack() {
+        for (int i = 0; i < 4; i++) limiter.reserve(project);
+        Instant fifth = limiter.reserve(project);
+
+        limiter.release(project, fifth);
+
+        assertThat(limiter.reserve(project)).isEqualTo(T0);
+    }
+}
@@ -0,0 +1,349 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.dto.execution.CommandResult;
+import com.codeastras.backend.codeastras.dto.execution.OutputChunk;
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileMetadata;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileRepository;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RunResultCacheTest {
+
+    private static final String RUNNER = "python:3.12";
+
+    private final ProjectFileRepository fileRepo = mock(ProjectFileRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    // ================= KEY =================
+
+    @Test
+    void key_doesNotDependOnListingOrder() {
+        RunResultCache cache = cache(1024);
+        UUID a = project(file("main.py", "print(1)"), file("lib/util.py", "X = 1"), folder("lib"));
+        UUID b = project(folder("lib"), file("lib/util.py", "X = 1"), file("main.py", "print(1)"));
+
+        assertThat(cache.key(a, "main.py", RUNNER)).isPresent().isEqualTo(cache.key(b, "main.py", RUNNER));
+    }
+
+    @Test
+    void key_changesWithContentPathEntryAndRunner() {
+        RunResultCache cache = cache(1024);
+        UUID base = project(file("main.py", "print(1)"));
+
+        String key = cache.key(base, "main.py", RUNNER).orElseThrow();
+
+        assertThat(cache.key(project(file("main.py", "print(2)")), "main.py", RUNNER)).get().isNotEqualTo(key);
+        assertThat(cache.key(project(file("app.py", "print(1)")), "main.py", RUNNER)).get().isNotEqualTo(key);
+        assertThat(cache.key(base, "other.py", RUNNER)).get().isNotEqualTo(key);
+        assertThat(cache.key(base, "main.py", "python:3.13")).get().isNotEqualTo(key);
+    }
+
+    @Test
+    void key_isEmptyForUnhashedFilesOrWhenDisabled() {
+        ProjectFileMetadata unhashed = meta("main.py", "FILE", null);
+        UUID project = UUID.randomUUID();
+        when(fileRepo.findMetadataByProjectId(project)).thenReturn(List.of(unhashed));
+
+        assertThat(cache(1024).key(project, "main.py", RUNNER)).isEmpty();
+
+        UUID hashed = project(file("main.py", "print(1)"));
+        RunResultCache disabled = new RunResultCache(fileRepo, meters, false, DataSize.ofBytes(1024));
+        assertThat(disabled.key(hashed, "main.py", RUNNER)).isEmpty();
+    }
+
+    // ================= LRU =================
+
+    @Test
+    void evictsLeastRecentlyUsedOnceOverBudget() {
+        RunResultCache cache = cache(10);
+        String k1 = store(cache, "1111");
+        String k2 = store(cache, "2222");
+
+        cache.get(k1); // k2 is now the eldest
+        String k3 = store(cache, "3333");
+
+        assertThat(cache.get(k1)).isPresent();
+        assertThat(cache.get(k2)).isEmpty();
+        assertThat(cache.get(k3)).isPresent();
+    }
+
+    @Test
+    void countsBytesNotCharacters() {
+        RunResultCache cache = cache(10);
+        String k1 = store(cache, "ab");
+        // 4 characters, 8 bytes: together 10 bytes still fit
+        String k2 = store(cache, "éééé");
+
+        assertThat(cache.get(k1)).isPresent();
+        assertThat(cache.get(k2)).isPresent();
+
+        // one more byte than the budget evicts the eldest
+        String k3 = store(cache, "c");
+        assertThat(cache.get(k1)).isEmpty();
+        assertThat(cache.get(k3)).isPresent();
+    }
+
+    @Test
+    void replacingAnEntryReleasesItsOldBytes() {
+        RunResultCache cache = cache(10);
+        UUID project = project(file("main.py", "print(1)"));
+        String key = cache.key(project, "main.py", RUNNER).orElseThrow();
+
+        cache.put(key, project, "main.py", RUNNER, new CommandResult(0, "12345678"));
+        cache.put(key, project, "main.py", RUNNER, new CommandResult(0, "12345678"));
+        String other = store(cache, "ab");
+
+        assertThat(cache.get(key)).isPresent();
+        assertThat(cache.get(other)).isPresent();
+    }
+
+    @Test
+    void outputLargerThanTheBudgetIsNotStored() {
+        RunResultCache cache = cache(4);
+        assertThat(cache.get(store(cache, "12345"))).isEmpty();
+    }
+
+    // ================= VERDICTS =================
+
+    @Test
+    void storesDeterministicRuns() {
+        RunResultCache cache = cache(1024);
+        String key = store(cache, project(file("main.py", "print(sorted({'b', 'a'}))")), "['a', 'b']");
+
+        assertThat(cache.get(key)).get().extracting(RunResultCache.Entry::output).isEqualTo("['a', 'b']");
+    }
+
+    @Test
+    void refusesNondeterministicSources() {
+        List<String> sources = List.of(
+                "import random\nprint(random.random())",
+                "from datetime import datetime\nprint(datetime.now())",
+                "import numpy as np\nprint(np.random.rand())",
+                "name = input()\nprint(name)",
+                "import sys\nprint(sys.stdin.read())",
+                "import os\nprint(os.listdir('.'))",
+                "open('out.txt', 'w').write('x')",
+                "print(id(object()))",
+                "print(hash(object()))",
+                "import subprocess\nsubprocess.run(['ls'])"
+        );
+
+        for (String source : sources) {
+            RunResultCache cache = cache(1024);
+            String key = store(cache, project(file("main.py", source)), "out");
+            assertThat(cache.get(key)).as(source).isEmpty();
+        }
+        assertThat(meters.counter("codeastras.runner.cache.uncacheable").count()).isEqualTo(sources.size());
+    }
+
+    @Test
+    void anyNondeterministicModuleSpoilsTheProject() {
+        RunResultCache cache = cache(1024);
+        String key = store(cache,
+                project(file("main.py", "import helper\nprint(helper.roll())"),
+                        file("helper.py", "import random\ndef roll(): return random.randint(1, 6)")),
+                "4");
+
+        assertThat(cache.get(key)).isEmpty();
+    }
+
+    @Test
+    void ignoresNonPythonFiles() {
+        RunResultCache cache = cache(1024);
+        String key = store(cache,
+                project(file("main.py", "print(open('notes.txt').read())"), file("notes.txt", "import random")),
+                "import random");
+
+        assertThat(cache.get(key)).isPresent();
+    }
+
+    @Test
+    void scansEachContentHashOnce() {
+        RunResultCache cache = cache(1024);
+        UUID project = project(file("main.py", "print(1)"));
+
+        store(cache, project, "1");
+        store(cache, project, "1");
+
+        verify(fileRepo, times(1)).findSourcesByProjectIdAndContentHashIn(eq(project), anyCollection());
+        verify(fileRepo, never()).findByProjectId(any());
+    }
+
+    @Test
+    void loadsOnlySourcesWithoutAVerdict() {
+        RunResultCache cache = cache(1024);
+        ProjectFile lib = file("lib.py", "X = 1");
+        store(cache, project(lib, file("main.py", "print(1)")), "1");
+
+        ProjectFile edited = file("main.py", "print(2)");
+        UUID project = project(lib, edited, file("notes.txt", "hello"));
+        store(cache, project, "2");
+
+        verify(fileRepo).findSourcesByProjectIdAndContentHashIn(project, List.of(edited.getContentHash()));
+    }
+
+    // ================= STREAMS =================
+
+    @Test
+    void keepsStdoutAndStderrApartInWriteOrder() {
+        RunResultCache cache = cache(1024);
+        UUID project = project(file("main.py", "print(1)"));
+        String key = cache.key(project, "main.py", RUNNER).orElseThrow();
+
+        CommandResult result = new CommandResult(1, "a\nboom\nb\n");
+        result.setChunks(List.of(
+                chunk("stdout", "a\n"),
+                chunk("stderr", "boom\n"),
+                chunk("stdout", "b\n")));
+        cache.put(key, project, "main.py", RUNNER, result);
+
+        RunResultCache.Entry entry = cache.get(key).orElseThrow();
+        assertThat(entry.exitCode()).isEqualTo(1);
+        assertThat(entry.chunks()).extracting(OutputChunk::stream).containsExactly("stdout", "stderr", "stdout");
+        assertThat(entry.output()).isEqualTo("a\nboom\nb\n");
+    }
+
+    @Test
+    void resultsWithoutStreamsReplayAsStdout() {
+        RunResultCache cache = cache(1024);
+        String key = store(cache, "plain");
+
+        assertThat(cache.get(key).orElseThrow().chunks())
+                .singleElement()
+                .satisfies(c -> {
+                    assertThat(c.stream()).isEqualTo("stdout");
+                    assertThat(new String(c.data(), StandardCharsets.UTF_8)).isEqualTo("plain");
+                });
+    }
+
+    @Test
+    void refusesKilledTruncatedOrChangedRuns() {
+        RunResultCache cache = cache(1024);
+        UUID project = project(file("main.py", "print(1)"));
+        String key = cache.key(project, "main.py", RUNNER).orElseThrow();
+
+        cache.put(key, project, "main.py", RUNNER, new CommandResult(-1, "killed"));
+        cache.put(key, project, "main.py", RUNNER, new CommandResult(0, "x\n" + OutputCoalescer.TRUNCATED_NOTICE));
+        assertThat(cache.get(key)).isEmpty();
+
+        // edited while it ran: the key no longer matches the sources
+        project(project, file("main.py", "print(2)"));
+        cache.put(key, project, "main.py", RUNNER, new CommandResult(0, "1"));
+        assertThat(cache.get(key)).isEmpty();
+    }
+
+    // ================= HELPERS =================
+
+    private RunResultCache cache(long maxBytes) {
+        return new RunResultCache(fileRepo, meters, true, DataSize.ofBytes(maxBytes));
+    }
+
+    // a project of its own, so every call gets a different key
+    private String store(RunResultCache cache, String output) {
+        return store(cache, project(file("main.py", "print('" + UUID.randomUUID() + "')")), output);
+    }
+
+    private String store(RunResultCache cache, UUID project, String output) {
+        String key = cache.key(project, "main.py", RUNNER).orElseThrow();
+        cache.put(key, project, "main.py", RUNNER, new CommandResult(0, output));
+        return key;
+    }
+
+    private UUID project(ProjectFile... files) {
+        return project(UUID.randomUUID(), files);
+    }
+
+    private UUID project(UUID project, ProjectFile... files) {
+        List<ProjectFile> all = new ArrayList<>();
+        List<ProjectFileMetadata> metadata = new ArrayList<>();
+        for (ProjectFile f : files) {
+            all.add(f);
+            metadata.add(meta(f.getPath(), f.getType(), f.getContentHash()));
+        }
+        when(fileRepo.findMetadataByProjectId(project)).thenReturn(metadata);
+        when(fileRepo.findSourcesByProjectIdAndContentHashIn(eq(project), anyCollection())).thenAnswer(inv -> {
+            Collection<String> hashes = inv.getArgument(1);
+            return all.stream()
+                    .filter(f -> hashes.contains(f.getContentHash()))
+                    .map(f -> source(f.getContentHash(), f.getContent()))
+                    .toList();
+        });
+        return project;
+    }
+
+    private static OutputChunk chunk(String stream, String text) {
+        return new OutputChunk(stream, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ProjectFileSource source(String contentHash, String content) {
+        return new ProjectFileSource() {
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+
+            @Override
+            public String getContent() {
+                return content;
+            }
+        };
+    }
+
+    private static ProjectFile file(String path, String content) {
+        return new ProjectFile(UUID.randomUUID(), null, path, content, "FILE");
+    }
+
+    private static ProjectFile folder(String path) {
+        return new ProjectFile(UUID.randomUUID(), null, path, null, "FOLDER");
+    }
+
+    private static ProjectFileMetadata meta(String path, String type, String contentHash) {
+        UUID id = UUID.randomUUID();
+        return new ProjectFileMetadata() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getPath() {
+                return path;
+            }
+
+            @Override
+            public String getType() {
+                return type;
+            }
+
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+
+            @Override
+            public Instant getUpdatedAt() {
+                return Instant.EPOCH;
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package com.codeastras.backend.codeastras.service.execution;
+
+import com.codeastras.backend.codeastras.dto.execution.RunUsage;
+import com.codeastras.backend.codeastras.service.container.ContainerProcess.Stream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageTrailerTest {
+
+    private static final String MARKER = "@@usage-7f3a91@@";
+
+    private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    private final UsageTrailer trailer = new UsageTrailer(MARKER, (stream, data, off, len) ->
+            (stream == Stream.STDOUT ? stdout : stderr).write(data, off, len));
+
+    @Test
+    void reportIsTakenOutOfStderr() {
+        feed(Stream.STDOUT, "hello\n");
+        feed(Stream.STDERR, "warning\n" + MARKER + " 120 4096000 0\n");
+        trailer.finish();
+
+        assertThat(text(stdout)).isEqualTo("hello\n");
+        assertThat(text(stderr)).isEqualTo("warning\n");
+        assertThat(trailer.usage(900)).isEqualTo(new RunUsage(900, 120L, 4_096_000L, 14, false));
+    }
+
+    @Test
+    void markerSplitAcrossFramesAtAnyPoint() {
+        String stream = "traceback line\n" + MARKER + " 7 2048 1\n";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+
+        for (int cut = 1; cut < bytes.length; cut++) {
+            stderr.reset();
+            UsageTrailer split = new UsageTrailer(MARKER, (s, data, off, len) -> stderr.write(data, off, len));
+
+            split.onOutput(Stream.STDERR, bytes, 0, cut);
+            split.onOutput(Stream.STDERR, bytes, cut, bytes.length - cut);
+            split.finish();
+
+            assertThat(text(stderr)).as("cut at %d", cut).isEqualTo("traceback line\n");
+            assertThat(split.usage(0)).as("cut at %d", cut).isEqualTo(new RunUsage(0, 7L, 2048L, 15, true));
+        }
+    }
+
+    @Test
+    void markerFedOneByteAtATime() {
+        byte[] bytes = ("a" + MARKER + " 1 2 0\nb").getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            trailer.onOutput(Stream.STDERR, new byte[]{b}, 0, 1);
+        }
+        trailer.finish();
+
+        assertThat(text(stderr)).isEqualTo("ab");
+        assertThat(trailer.usage(0).cpuMillis()).isEqualTo(1L);
+    }
+
+    @Test
+    void missingTrailerPassesEverythingThrough() {
+        // ends in what could have been the start of the marker
+        String partial = MARKER.substring(0, 5);
+        feed(Stream.STDERR, "Killed\n" + partial);
+        trailer.finish();
+
+        assertThat(text(stderr)).isEqualTo("Killed\n" + partial);
+        assertThat(trailer.usage(5_000)).isEqualTo(new RunUsage(5_000, null, null, 7 + partial.length(), false));
+    }
+
+    @Test
+    void unterminatedReportIsReleasedAsOutput() {
+        // the runner died while writing the line
+        feed(Stream.STDERR, MARKER + " 12 34");
+        trailer.finish();
+
+        assertThat(text(stderr)).isEqualTo(MARKER + " 12 34");
+        assertThat(trailer.usage(0).cpuMillis()).isNull();
+    }
+
+    @Test
+    void malformedReportOnlyCostsTheNumbers() {
+        feed(Stream.STDERR, MARKER + " 12 lots\n");
+        trailer.finish();
+
+        RunUsage usage = trailer.usage(10);
+        assertThat(text(stderr)).isEmpty();
+        assertThat(usage.peakMemoryBytes()).isNull();
+        assertThat(usage.oomKilled()).isFalse();
+        assertThat(usage.wallMillis()).isEqualTo(10);
+    }
+
+    @Test
+    void shortReportIsTolerated() {
+        feed(Stream.STDERR, MARKER + "\n");
+        trailer.finish();
+
+        assertThat(trailer.usage(0)).isEqualTo(new RunUsage(0, null, null, 0, false));
+    }
+
+    @Test
+    void markerOnStdoutIsNotAReport() {
+        feed(Stream.STDOUT, MARKER + " 1 2 1\n");
+        trailer.finish();
+
+        assertThat(text(stdout)).isEqualTo(MARKER + " 1 2 1\n");
+        assertThat(trailer.usage(0).cpuMillis()).isNull();
+    }
+
+    @Test
+    void onlyTheFirstReportCounts() {
+        feed(Stream.STDERR, MARKER + " 1 2 0\n");
+        feed(Stream.STDERR, MARKER + " 9 9 1\n");
+        trailer.finish();
+
+        assertThat(trailer.usage(0).cpuMillis()).isEqualTo(1L);
+        assertThat(text(stderr)).isEqualTo(MARKER + " 9 9 1\n");
+    }
+
+    // ================= HELPERS =================
+
+    private void feed(Stream stream, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        trailer.onOutput(stream, bytes, 0, bytes.length);
+    }
+
+    private static String text(ByteArrayOutputStream out) {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,195 @@
+package com.codeastras.backend.codeastras.service.file;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.exception.ForbiddenException;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileBatchRepository.ContentUpdate;
+import com.codeastras.backend.codeastras.security.ProjectAccessManager;
+import com.codeastras.backend.codeastras.security.ProjectPermission;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.DocumentBroadcaster;
+import com.codeastras.backend.codeastras.service.document.TextOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DebouncedFileSaveManagerTest {
+
+    private static final UUID PROJECT = UUID.randomUUID();
+    private static final UUID MEMBER = UUID.randomUUID();
+    private static final UUID REMOVED = UUID.randomUUID();
+
+    private final FileService fileService = mock(FileService.class);
+    private final EditJournal journal = mock(EditJournal.class);
+    private final ContentHashCache hashCache = mock(ContentHashCache.class);
+    private final ProjectAccessManager accessManager = mock(ProjectAccessManager.class);
+    private final DocumentBroadcaster broadcaster = mock(DocumentBroadcaster.class);
+
+    private DebouncedFileSaveManager saves;
+
+    @BeforeEach
+    void setUp() {
+        when(fileService.persistBatch(anyList())).thenAnswer(inv -> {
+            int[] counts = new int[((List<?>) inv.getArgument(0)).size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        });
+        doThrow(new ForbiddenException("No access to project"))
+                .when(accessManager).require(PROJECT, REMOVED, ProjectPermission.UPDATE_FILE);
+
+        saves = new DebouncedFileSaveManager(fileService, journal, hashCache, new SimpleMeterRegistry(), accessManager, broadcaster);
+        // only explicit flushes commit
+        ReflectionTestUtils.setField(saves, "debounceMs", 60_000L);
+        ReflectionTestUtils.setField(saves, "maxLatencyMs", 60_000L);
+        ReflectionTestUtils.setField(saves, "maxBatchSize", 200);
+        ReflectionTestUtils.setField(saves, "tickMs", 60_000L);
+        ReflectionTestUtils.setField(saves, "shardCount", 1);
+        saves.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        saves.shutdown();
+    }
+
+    @Test
+    void editsOfEditorsWhoLostAccessAreReverted() {
+        when(fileService.storedContent(PROJECT, "dropped.py")).thenReturn(Optional.of("stored"));
+
+        CollaborativeDocument kept = edit("kept.py", MEMBER);
+        CollaborativeDocument dropped = edit("dropped.py", REMOVED);
+
+        saves.flushProject(PROJECT);
+
+        assertThat(persisted()).extracting(ContentUpdate::path).containsExactly("kept.py");
+        verify(fileService).writeThrough(PROJECT, "kept.py", "x");
+        verify(fileService, never()).writeThrough(eq(PROJECT), eq("dropped.py"), any());
+
+        assertThat(kept.isDirty()).isFalse();
+
+        // back to what the DB holds, for every client, and clean again
+        assertThat(dropped.snapshot().content()).isEqualTo("stored");
+        assertThat(dropped.isDirty()).isFalse();
+        verify(broadcaster).publish(eq(PROJECT), isNull(), eq("dropped.py"), any(), isNull());
+
+        // nothing of the refused edit is replayed after a restart either
+        verify(journal).markCommitted(dropped, dropped.getRevision());
+    }
+
+    @Test
+    void revertOfADeletedFileOnlyMarksItClean() {
+        when(fileService.storedContent(PROJECT, "gone.py")).thenReturn(Optional.empty());
+
+        CollaborativeDocument doc = edit("gone.py", REMOVED);
+
+        saves.flushProject(PROJECT);
+
+        verify(fileService, never()).persistBatch(anyList());
+        verify(broadcaster, never()).publish(any(), any(), any(), any(), any());
+        assertThat(doc.isDirty()).isFalse();
+        verify(journal).markCommitted(doc, doc.getRevision());
+    }
+
+    @Test
+    void accessIsCheckedOncePerProjectAndUser() {
+        edit("a.py", MEMBER);
+        edit("b.py", MEMBER);
+        edit("c.py", MEMBER);
+
+        saves.flushProject(PROJECT);
+
+        verify(accessManager, times(1)).require(PROJECT, MEMBER, ProjectPermission.UPDATE_FILE);
+        assertThat(persisted()).hasSize(3);
+    }
+
+    @Test
+    void failedAccessCheckRequeuesTheEdit() {
+        UUID flaky = UUID.randomUUID();
+        doThrow(new IllegalStateException("db down"))
+                .doNothing()
+                .when(accessManager).require(PROJECT, flaky, ProjectPermission.UPDATE_FILE);
+
+        CollaborativeDocument doc = edit("a.py", flaky);
+
+        saves.flushProject(PROJECT);
+        verify(fileService, never()).persistBatch(anyList());
+        assertThat(doc.isDirty()).isTrue();
+
+        saves.flushProject(PROJECT);
+        assertThat(persisted()).extracting(ContentUpdate::path).containsExactly("a.py");
+        assertThat(doc.isDirty()).isFalse();
+    }
+
+    @Test
+    void explicitSaveWaitsForAGroupCommitInProgress() throws Exception {
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileService.persistBatch(anyList())).thenAnswer(inv -> {
+            committing.countDown();
+            release.await();
+            return new int[]{1};
+        });
+
+        CollaborativeDocument doc = edit("a.py", MEMBER);
+        CompletableFuture<Void> tick = CompletableFuture.runAsync(() -> saves.flushProject(PROJECT));
+        assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        doc.replace("xy");
+        CompletableFuture<ProjectFile> save = CompletableFuture.supplyAsync(() -> saves.saveNow(doc, MEMBER));
+
+        // the older snapshot is still being written
+        verify(fileService, after(200).never()).persist(any(), any(), any(), any());
+
+        release.countDown();
+        tick.get(5, TimeUnit.SECONDS);
+        save.get(5, TimeUnit.SECONDS);
+
+        InOrder order = inOrder(fileService);
+        order.verify(fileService).persistBatch(anyList());
+        order.verify(fileService).persist(PROJECT, "a.py", "xy", MEMBER);
+        assertThat(doc.isDirty()).isFalse();
+        verify(journal).markCommitted(doc, doc.getRevision());
+    }
+
+    // ================= HELPERS =================
+
+    private CollaborativeDocument edit(String path, UUID user) {
+        CollaborativeDocument doc = new CollaborativeDocument(
+                new ProjectFile(UUID.randomUUID(), PROJECT, path, "", "FILE"), 0, 100);
+        CollaborativeDocument.Applied applied = doc.apply(0, new TextOperation().insert("x"), Integer.MAX_VALUE);
+        saves.scheduleSave(doc, applied, user);
+        return doc;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ContentUpdate> persisted() {
+        ArgumentCaptor<List<ContentUpdate>> updates = ArgumentCaptor.forClass(List.class);
+        verify(fileService).persistBatch(updates.capture());
+        return updates.getValue();
+    }
+}
@@ -0,0 +1,267 @@
+package com.codeastras.backend.codeastras.service.file;
+
+import com.codeastras.backend.codeastras.entity.file.ProjectFile;
+import com.codeastras.backend.codeastras.repository.file.ProjectFileBatchRepository.ContentUpdate;
+import com.codeastras.backend.codeastras.service.cluster.NodeScope;
+import com.codeastras.backend.codeastras.service.document.CollaborativeDocument;
+import com.codeastras.backend.codeastras.service.document.TextOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EditJournalTest {
+
+    private static final UUID PROJECT = UUID.randomUUID();
+
+    @TempDir
+    Path tmp;
+
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() {
+        fileService = mock(FileService.class);
+        when(fileService.persistBatch(anyList()))
+                .thenAnswer(inv -> filled(((List<?>) inv.getArgument(0)).size()));
+    }
+
+    // ================= REPLAY =================
+
+    @Test
+    void replay_restoresBaseAndOperations() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument doc = document("main.py", "hello", 0);
+
+        journal.appendBase(doc);
+        journal.appendOperation(doc, doc.apply(0, new TextOperation().retain(5).insert(" world"), Integer.MAX_VALUE));
+        journal.appendOperation(doc, doc.apply(1, new TextOperation().retain(11).insert(" ✓ ünïcode"), Integer.MAX_VALUE));
+        journal.shutdown();
+
+        assertThat(replayed()).containsExactly(
+                new ContentUpdate(PROJECT, "main.py", "hello world ✓ ünïcode", ProjectFile.hashOf("hello world ✓ ünïcode")));
+        verify(fileService).writeThrough(PROJECT, "main.py", "hello world ✓ ünïcode");
+    }
+
+    @Test
+    void replay_appliesOperationsInRevisionOrder() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument doc = document("a.txt", "", 0);
+
+        journal.appendBase(doc);
+        // journaled out of order: the second edit only applies after the first
+        journal.appendOperation(doc, new CollaborativeDocument.Applied(new TextOperation().retain(1).insert("b"), 2));
+        journal.appendOperation(doc, new CollaborativeDocument.Applied(new TextOperation().insert("a"), 1));
+        journal.shutdown();
+
+        assertThat(replayed()).extracting(ContentUpdate::content).containsExactly("ab");
+    }
+
+    @Test
+    void replay_stopsAtARevisionGap() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument doc = document("a.txt", "", 0);
+
+        journal.appendBase(doc);
+        journal.appendOperation(doc, new CollaborativeDocument.Applied(new TextOperation().insert("a"), 1));
+        journal.appendOperation(doc, new CollaborativeDocument.Applied(new TextOperation().retain(2).insert("c"), 3));
+        journal.shutdown();
+
+        assertThat(replayed()).extracting(ContentUpdate::content).containsExactly("a");
+    }
+
+    @Test
+    void replay_skipsFilesACommitCovers() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument saved = document("saved.txt", "", 0);
+        CollaborativeDocument unsaved = document("unsaved.txt", "", 0);
+
+        journal.appendBase(saved);
+        journal.appendOperation(saved, saved.apply(0, new TextOperation().insert("s"), Integer.MAX_VALUE));
+        journal.markCommitted(saved, 1);
+
+        journal.appendBase(unsaved);
+        journal.appendOperation(unsaved, unsaved.apply(0, new TextOperation().insert("u"), Integer.MAX_VALUE));
+        journal.shutdown();
+
+        assertThat(replayed()).extracting(ContentUpdate::path).containsExactly("unsaved.txt");
+    }
+
+    @Test
+    void replay_dropsATornTailRecord() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument doc = document("a.txt", "", 0);
+
+        journal.appendBase(doc);
+        journal.appendOperation(doc, doc.apply(0, new TextOperation().insert("one"), Integer.MAX_VALUE));
+        journal.appendOperation(doc, doc.apply(1, new TextOperation().retain(3).insert(" two"), Integer.MAX_VALUE));
+        journal.shutdown();
+
+        // the last record only half reached the disk: its length is there, its CRC no longer matches
+        Path segment = segments().get(0);
+        List<int[]> records = records(segment);
+        int[] last = records.get(records.size() - 1);
+        zero(segment, last[0] + last[1] / 2, last[0] + 4 + last[1]);
+
+        assertThat(replayed()).extracting(ContentUpdate::content).containsExactly("one");
+    }
+
+    @Test
+    void replay_deletesReplayedSegments() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument doc = document("a.txt", "x", 0);
+        journal.appendBase(doc);
+        journal.shutdown();
+
+        Path left = segments().get(0);
+        replayed();
+
+        assertThat(segments()).doesNotContain(left);
+    }
+
+    @Test
+    void replay_keepsSegmentsWhenPersistingFails() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        journal.appendBase(document("a.txt", "x", 0));
+        journal.shutdown();
+
+        Path left = segments().get(0);
+        when(fileService.persistBatch(anyList())).thenThrow(new IllegalStateException("db down"));
+        journal(16 * 1024).replay();
+
+        assertThat(segments()).contains(left);
+    }
+
+    // ================= SEGMENTS =================
+
+    @Test
+    void commit_releasesSegmentsItCovers() throws IOException {
+        EditJournal journal = journal(256);
+        CollaborativeDocument doc = document("a.txt", "", 0);
+
+        journal.appendBase(doc);
+        for (int i = 0; i < 20; i++) {
+            journal.appendOperation(doc, doc.apply(i, new TextOperation().retain(i).insert("x"), Integer.MAX_VALUE));
+        }
+        assertThat(segments()).hasSizeGreaterThan(2);
+
+        journal.markCommitted(doc, 20);
+
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    void commit_keepsSegmentsWithOtherUncommittedFiles() throws IOException {
+        EditJournal journal = journal(256);
+        CollaborativeDocument other = document("other.txt", "pending", 0);
+        CollaborativeDocument doc = document("a.txt", "", 0);
+
+        journal.appendBase(other);
+        journal.appendBase(doc);
+        for (int i = 0; i < 20; i++) {
+            journal.appendOperation(doc, doc.apply(i, new TextOperation().retain(i).insert("x"), Integer.MAX_VALUE));
+        }
+        Path first = segments().get(0);
+
+        journal.markCommitted(doc, 20);
+
+        assertThat(segments()).contains(first).hasSizeLessThan(3);
+    }
+
+    @Test
+    void shutdown_removesEverythingOnceCommitted() throws IOException {
+        EditJournal journal = journal(16 * 1024);
+        CollaborativeDocument doc = document("a.txt", "", 0);
+
+        journal.appendBase(doc);
+        journal.appendOperation(doc, doc.apply(0, new TextOperation().insert("a"), Integer.MAX_VALUE));
+        journal.markCommitted(doc, 1);
+        journal.shutdown();
+
+        assertThat(segments()).isEmpty();
+
+        journal(16 * 1024).replay();
+        verify(fileService, never()).persistBatch(anyList());
+        verify(fileService, never()).writeThrough(any(), eq("a.txt"), any());
+    }
+
+    // ================= HELPERS =================
+
+    private EditJournal journal(int segmentBytes) throws IOException {
+        EditJournal journal = new EditJournal(fileService, new NodeScope("node-a", tmp.resolve("base").toString()));
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "journalPath", tmp.resolve("journal").toString());
+        ReflectionTestUtils.setField(journal, "segmentBytes", segmentBytes);
+        journal.open();
+        return journal;
+    }
+
+    // what a fresh journal on the same directory writes back to the DB
+    @SuppressWarnings("unchecked")
+    private List<ContentUpdate> replayed() throws IOException {
+        journal(16 * 1024).replay();
+
+        ArgumentCaptor<List<ContentUpdate>> updates = ArgumentCaptor.forClass(List.class);
+        verify(fileService).persistBatch(updates.capture());
+        return updates.getValue();
+    }
+
+    private static CollaborativeDocument document(String path, String content, long revision) {
+        return new CollaborativeDocument(
+                new ProjectFile(UUID.randomUUID(), PROJECT, path, content, "FILE"), revision, 100);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(tmp.resolve("journal").resolve("node-a"))) {
+            return files.sorted().toList();
+        }
+    }
+
+    // [offset, length] of every record up to the zero length that ends the segment
+    private static List<int[]> records(Path segment) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<int[]> records = new ArrayList<>();
+        while (buf.remaining() >= 4) {
+            int offset = buf.position();
+            int length = buf.getInt();
+            if (length == 0) break;
+            records.add(new int[]{offset, length});
+            buf.position(offset + 4 + length);
+        }
+        return records;
+    }
+
+    private static void zero(Path file, int from, int to) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(to - from), from);
+        }
+    }
+
+    private static int[] filled(int n) {
+        int[] counts = new int[n];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+}